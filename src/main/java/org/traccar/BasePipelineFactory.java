@@ -22,6 +22,7 @@ import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOutboundHandler;
 import io.netty.channel.ChannelPipeline;
 import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.concurrent.EventExecutorGroup;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.traccar.config.Keys;
@@ -36,6 +37,7 @@ import org.traccar.handler.events.IgnitionEventHandler;
 import org.traccar.handler.events.MaintenanceEventHandler;
 import org.traccar.handler.events.MotionEventHandler;
 import org.traccar.handler.events.OverspeedEventHandler;
+import org.traccar.handler.BackpressureHandler;
 import org.traccar.handler.ComputedAttributesHandler;
 import org.traccar.handler.CopyAttributesHandler;
 import org.traccar.handler.DistanceHandler;
@@ -60,6 +62,8 @@ public abstract class BasePipelineFactory extends ChannelInitializer<Channel> {
     private final String protocol;
     private boolean eventsEnabled;
     private int timeout;
+    private String executorSplit;
+    private int executorQueueSize;
 
     public BasePipelineFactory(TrackerServer server, String protocol) {
         this.server = server;
@@ -69,17 +73,36 @@ public abstract class BasePipelineFactory extends ChannelInitializer<Channel> {
         if (timeout == 0) {
             timeout = Context.getConfig().getInteger(Keys.SERVER_TIMEOUT);
         }
+        executorSplit = Context.getConfig().getString(Keys.SERVER_EXECUTOR_SPLIT, FilterHandler.class.getSimpleName());
+        executorQueueSize = Context.getConfig().getInteger(
+                Keys.SERVER_EXECUTOR_QUEUE_SIZE, EventLoopGroupFactory.DEFAULT_HANDLER_QUEUE_SIZE);
     }
 
     protected abstract void addProtocolHandlers(PipelineBuilder pipeline);
 
+    private EventExecutorGroup selectGroup(ChannelPipeline pipeline, EventExecutorGroup group, Class<?> handlerClass) {
+        if (group == null && handlerClass.getSimpleName().equals(executorSplit)) {
+            group = EventLoopGroupFactory.getHandlerGroup();
+            if (group != null) {
+                pipeline.addLast(new BackpressureHandler(executorQueueSize / 2, executorQueueSize / 4));
+            }
+        }
+        return group;
+    }
+
     @SafeVarargs
-    private final void addHandlers(ChannelPipeline pipeline, Class<? extends ChannelHandler>... handlerClasses) {
+    private final EventExecutorGroup addHandlers(
+            ChannelPipeline pipeline, EventExecutorGroup group, Class<? extends ChannelHandler>... handlerClasses) {
         for (Class<? extends ChannelHandler> handlerClass : handlerClasses) {
             if (handlerClass != null) {
-                pipeline.addLast(Main.getInjector().getInstance(handlerClass));
+                group = selectGroup(pipeline, group, handlerClass);
+                ChannelHandler handler = Main.getInjector().getInstance(handlerClass);
+                if (handler != null) {
+                    pipeline.addLast(group, handler);
+                }
             }
         }
+        return group;
     }
 
     public static <T extends ChannelHandler> T getHandler(ChannelPipeline pipeline, Class<T> clazz) {
@@ -119,18 +142,20 @@ public abstract class BasePipelineFactory extends ChannelInitializer<Channel> {
             pipeline.addLast(handler);
         });
 
-        addHandlers(
+        EventExecutorGroup group = addHandlers(
                 pipeline,
+                null,
                 TimeHandler.class,
                 GeolocationHandler.class,
                 HemisphereHandler.class,
                 DistanceHandler.class,
                 RemoteAddressHandler.class);
 
-        addDynamicHandlers(pipeline);
+        group = addDynamicHandlers(pipeline, group);
 
-        addHandlers(
+        group = addHandlers(
                 pipeline,
+                group,
                 FilterHandler.class,
                 GeocoderHandler.class,
                 MotionHandler.class,
@@ -141,8 +166,9 @@ public abstract class BasePipelineFactory extends ChannelInitializer<Channel> {
                 DefaultDataHandler.class);
 
         if (eventsEnabled) {
-            addHandlers(
+            group = addHandlers(
                     pipeline,
+                    group,
                     CommandResultEventHandler.class,
                     OverspeedEventHandler.class,
                     FuelDropEventHandler.class,
@@ -154,20 +180,23 @@ public abstract class BasePipelineFactory extends ChannelInitializer<Channel> {
                     DriverEventHandler.class);
         }
 
-        pipeline.addLast(new MainEventHandler());
+        pipeline.addLast(selectGroup(pipeline, group, MainEventHandler.class), new MainEventHandler());
     }
 
-    private void addDynamicHandlers(ChannelPipeline pipeline) {
+    private EventExecutorGroup addDynamicHandlers(ChannelPipeline pipeline, EventExecutorGroup group) {
         String handlers = Context.getConfig().getString(Keys.EXTRA_HANDLERS);
         if (handlers != null) {
             for (String handler : handlers.split(",")) {
                 try {
-                    pipeline.addLast((ChannelHandler) Class.forName(handler).getDeclaredConstructor().newInstance());
+                    Class<?> handlerClass = Class.forName(handler);
+                    group = selectGroup(pipeline, group, handlerClass);
+                    pipeline.addLast(group, (ChannelHandler) handlerClass.getDeclaredConstructor().newInstance());
                 } catch (ReflectiveOperationException error) {
                     LOGGER.warn("Dynamic handler error", error);
                 }
             }
         }
+        return group;
     }
 
 }
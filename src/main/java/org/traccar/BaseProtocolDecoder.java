@@ -1,5 +1,5 @@
 /*
- * Copyright 2012 - 2018 Anton Tananaev (anton@traccar.org)
+ * Copyright 2012 - 2019 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -24,6 +24,7 @@ import org.traccar.config.Config;
 import org.traccar.database.ConnectionManager;
 import org.traccar.database.IdentityManager;
 import org.traccar.database.StatisticsManager;
+import org.traccar.database.UnknownDeviceFilter;
 import org.traccar.handler.FilterHandler;
 import org.traccar.helper.UnitsConverter;
 import org.traccar.model.Device;
@@ -47,11 +48,14 @@ public abstract class BaseProtocolDecoder extends ExtendedObjectDecoder {
     private final IdentityManager identityManager = Context.getIdentityManager();
     private final ConnectionManager connectionManager = Context.getConnectionManager();
     private final StatisticsManager statisticsManager;
+    private final UnknownDeviceFilter unknownDeviceFilter;
     private final Protocol protocol;
 
     public BaseProtocolDecoder(Protocol protocol) {
         this.protocol = protocol;
         statisticsManager = Main.getInjector() != null ? Main.getInjector().getInstance(StatisticsManager.class) : null;
+        unknownDeviceFilter = Main.getInjector() != null
+                ? Main.getInjector().getInstance(UnknownDeviceFilter.class) : null;
     }
 
     public String getProtocolName() {
@@ -103,29 +107,48 @@ public abstract class BaseProtocolDecoder extends ExtendedObjectDecoder {
     private DeviceSession channelDeviceSession; // connection-based protocols
     private Map<SocketAddress, DeviceSession> addressDeviceSessions = new HashMap<>(); // connectionless protocols
 
+    private Device findDevice(boolean cacheOnly, String... uniqueIds) throws Exception {
+        for (String uniqueId : uniqueIds) {
+            if (uniqueId != null) {
+                Device device = cacheOnly
+                        ? identityManager.getCachedByUniqueId(uniqueId) : identityManager.getByUniqueId(uniqueId);
+                if (device != null) {
+                    return device;
+                }
+            }
+        }
+        return null;
+    }
+
     private long findDeviceId(SocketAddress remoteAddress, String... uniqueIds) {
         if (uniqueIds.length > 0) {
+            boolean registerUnknown = config.getBoolean("database.registerUnknown");
             long deviceId = 0;
             Device device = null;
             try {
-                for (String uniqueId : uniqueIds) {
-                    if (uniqueId != null) {
-                        device = identityManager.getByUniqueId(uniqueId);
-                        if (device != null) {
-                            deviceId = device.getId();
-                            break;
-                        }
-                    }
+                device = findDevice(true, uniqueIds);
+                if (device == null && unknownDeviceFilter != null && !registerUnknown
+                        && !unknownDeviceFilter.accept(remoteAddress, uniqueIds)) {
+                    return 0;
+                }
+                if (device == null) {
+                    device = findDevice(false, uniqueIds);
+                }
+                if (device != null) {
+                    deviceId = device.getId();
                 }
             } catch (Exception e) {
                 LOGGER.warn("Find device error", e);
             }
-            if (deviceId == 0 && config.getBoolean("database.registerUnknown")) {
+            if (deviceId == 0 && registerUnknown) {
                 return identityManager.addUnknownDevice(uniqueIds[0]);
             }
             if (device != null && !device.getDisabled() || config.getBoolean("database.storeDisabled")) {
                 return deviceId;
             }
+            if (deviceId == 0 && unknownDeviceFilter != null) {
+                unknownDeviceFilter.register(remoteAddress, uniqueIds);
+            }
             StringBuilder message = new StringBuilder();
             if (deviceId == 0) {
                 message.append("Unknown device -");
@@ -28,6 +28,7 @@ import org.eclipse.jetty.util.URIUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.traccar.config.Config;
+import org.traccar.config.Keys;
 import org.traccar.database.AttributesManager;
 import org.traccar.database.BaseObjectManager;
 import org.traccar.database.CalendarManager;
@@ -46,6 +47,7 @@ import org.traccar.database.MaintenancesManager;
 import org.traccar.database.MediaManager;
 import org.traccar.database.NotificationManager;
 import org.traccar.database.PermissionsManager;
+import org.traccar.database.UnknownDeviceFilter;
 import org.traccar.database.UsersManager;
 import org.traccar.geocoder.Geocoder;
 import org.traccar.helper.Log;
@@ -65,6 +67,7 @@ import org.traccar.model.User;
 import org.traccar.notification.EventForwarder;
 import org.traccar.notification.JsonTypeEventForwarder;
 import org.traccar.notification.NotificatorManager;
+import org.traccar.reports.RollupManager;
 import org.traccar.reports.model.TripsConfig;
 import org.traccar.sms.SmsManager;
 import org.traccar.sms.smpp.SmppClient;
@@ -147,6 +150,12 @@ public final class Context {
         return deviceManager;
     }
 
+    private static UnknownDeviceFilter unknownDeviceFilter;
+
+    public static UnknownDeviceFilter getUnknownDeviceFilter() {
+        return unknownDeviceFilter;
+    }
+
     private static ConnectionManager connectionManager;
 
     public static ConnectionManager getConnectionManager() {
@@ -193,6 +202,12 @@ public final class Context {
         return calendarManager;
     }
 
+    private static RollupManager rollupManager;
+
+    public static RollupManager getRollupManager() {
+        return rollupManager;
+    }
+
     private static NotificationManager notificationManager;
 
     public static NotificationManager getNotificationManager() {
@@ -323,10 +338,15 @@ public final class Context {
 
         mediaManager = new MediaManager(config.getString("media.path"));
 
+        unknownDeviceFilter = new UnknownDeviceFilter(
+                config.getLong(Keys.DATABASE_UNKNOWN_REPORT_TIMEOUT, 60) * 1000,
+                config.getInteger(Keys.DATABASE_UNKNOWN_REPORT_LIMIT, 10000),
+                config.getInteger(Keys.DATABASE_UNKNOWN_RATE_LIMIT, 100));
+
         if (dataManager != null) {
             usersManager = new UsersManager(dataManager);
             groupsManager = new GroupsManager(dataManager);
-            deviceManager = new DeviceManager(dataManager);
+            deviceManager = new DeviceManager(dataManager, unknownDeviceFilter);
         }
 
         identityManager = deviceManager;
@@ -341,6 +361,10 @@ public final class Context {
 
         tripsConfig = initTripsConfig();
 
+        if (dataManager != null && config.getBoolean(Keys.REPORT_ROLLUP_ENABLE)) {
+            rollupManager = new RollupManager(config, dataManager);
+        }
+
         if (config.getBoolean("sms.enable")) {
             final String smsManagerClass = config.getString("sms.manager.class", SmppClient.class.getCanonicalName());
             try {
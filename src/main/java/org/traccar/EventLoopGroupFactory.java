@@ -1,5 +1,5 @@
 /*
- * Copyright 2012 - 2018 Anton Tananaev (anton@traccar.org)
+ * Copyright 2012 - 2019 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,22 +16,169 @@
 package org.traccar;
 
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollDatagramChannel;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
 import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.DatagramChannel;
+import io.netty.channel.socket.nio.NioDatagramChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import io.netty.util.concurrent.EventExecutorGroup;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.traccar.config.Config;
+import org.traccar.config.ConfigKey;
+import org.traccar.config.Keys;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
 public final class EventLoopGroupFactory {
 
-    private static EventLoopGroup bossGroup = new NioEventLoopGroup();
-    private static EventLoopGroup workerGroup = new NioEventLoopGroup();
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventLoopGroupFactory.class);
+
+    public static final int DEFAULT_HANDLER_QUEUE_SIZE = 10000;
+
+    private static final AtomicLong REJECTED_COUNT = new AtomicLong();
+
+    private static Boolean epoll;
+
+    private static EventLoopGroup bossGroup;
+    private static EventLoopGroup workerGroup;
+
+    private static final Map<String, EventLoopGroup> PROTOCOL_BOSS_GROUPS = new HashMap<>();
+    private static final Map<String, EventLoopGroup> PROTOCOL_WORKER_GROUPS = new HashMap<>();
+
+    private static EventExecutorGroup handlerGroup;
+    private static boolean handlerGroupInitialized;
 
     private EventLoopGroupFactory() {
     }
 
-    public static EventLoopGroup getBossGroup() {
+    public static synchronized boolean isEpoll() {
+        if (epoll == null) {
+            String transport = Context.getConfig().getString(Keys.SERVER_TRANSPORT);
+            if (transport == null || transport.equals("epoll")) {
+                epoll = Epoll.isAvailable();
+                if (!epoll && transport != null) {
+                    LOGGER.warn("Epoll transport is not available", Epoll.unavailabilityCause());
+                }
+            } else {
+                epoll = false;
+            }
+        }
+        return epoll;
+    }
+
+    private static EventLoopGroup createGroup(int threads) {
+        if (isEpoll()) {
+            return new EpollEventLoopGroup(threads);
+        } else {
+            return new NioEventLoopGroup(threads);
+        }
+    }
+
+    private static EventLoopGroup getProtocolGroup(
+            Map<String, EventLoopGroup> groups, String protocol, ConfigKey key) {
+        EventLoopGroup group = groups.get(protocol);
+        if (group == null) {
+            int threads = Context.getConfig().getInteger(key);
+            if (threads > 0) {
+                group = createGroup(threads);
+                groups.put(protocol, group);
+            }
+        }
+        return group;
+    }
+
+    public static synchronized EventLoopGroup getBossGroup() {
+        if (bossGroup == null) {
+            bossGroup = createGroup(Context.getConfig().getInteger(Keys.SERVER_BOSS_THREADS));
+        }
         return bossGroup;
     }
 
-    public static EventLoopGroup getWorkerGroup() {
+    public static synchronized EventLoopGroup getWorkerGroup() {
+        if (workerGroup == null) {
+            workerGroup = createGroup(Context.getConfig().getInteger(Keys.SERVER_WORKER_THREADS));
+        }
         return workerGroup;
     }
 
+    public static synchronized EventLoopGroup getBossGroup(String protocol) {
+        EventLoopGroup group = getProtocolGroup(
+                PROTOCOL_BOSS_GROUPS, protocol, Keys.PROTOCOL_BOSS_THREADS.withPrefix(protocol));
+        return group != null ? group : getBossGroup();
+    }
+
+    public static synchronized EventLoopGroup getWorkerGroup(String protocol) {
+        EventLoopGroup group = getProtocolGroup(
+                PROTOCOL_WORKER_GROUPS, protocol, Keys.PROTOCOL_WORKER_THREADS.withPrefix(protocol));
+        return group != null ? group : getWorkerGroup();
+    }
+
+    public static Class<? extends ServerChannel> getServerChannelClass() {
+        return isEpoll() ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
+    }
+
+    public static Class<? extends DatagramChannel> getDatagramChannelClass() {
+        return isEpoll() ? EpollDatagramChannel.class : NioDatagramChannel.class;
+    }
+
+    public static synchronized EventExecutorGroup getHandlerGroup() {
+        if (!handlerGroupInitialized) {
+            Config config = Context.getConfig();
+            int threads = config.getInteger(Keys.SERVER_EXECUTOR_THREADS);
+            if (threads > 0) {
+                handlerGroup = new DefaultEventExecutorGroup(
+                        threads, new DefaultThreadFactory("handler"),
+                        config.getInteger(Keys.SERVER_EXECUTOR_QUEUE_SIZE, DEFAULT_HANDLER_QUEUE_SIZE),
+                        (task, executor) -> {
+                            REJECTED_COUNT.incrementAndGet();
+                            LOGGER.warn("Handler executor queue is full, message dropped");
+                            throw new RejectedExecutionException();
+                        });
+            }
+            handlerGroupInitialized = true;
+        }
+        return handlerGroup;
+    }
+
+    /**
+     * Number of messages dropped because the handler executor queue was full.
+     */
+    public static long getRejectedCount() {
+        return REJECTED_COUNT.get();
+    }
+
+    public static synchronized void release() {
+        if (handlerGroup != null) {
+            handlerGroup.shutdownGracefully();
+        }
+        handlerGroup = null;
+        handlerGroupInitialized = false;
+        for (EventLoopGroup group : PROTOCOL_BOSS_GROUPS.values()) {
+            group.shutdownGracefully();
+        }
+        PROTOCOL_BOSS_GROUPS.clear();
+        for (EventLoopGroup group : PROTOCOL_WORKER_GROUPS.values()) {
+            group.shutdownGracefully();
+        }
+        PROTOCOL_WORKER_GROUPS.clear();
+        if (bossGroup != null) {
+            bossGroup.shutdownGracefully();
+        }
+        bossGroup = null;
+        if (workerGroup != null) {
+            workerGroup.shutdownGracefully();
+        }
+        workerGroup = null;
+    }
+
 }
@@ -19,6 +19,8 @@ import com.google.inject.Guice;
 import com.google.inject.Injector;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.traccar.api.resource.ReportResource;
+import org.traccar.database.PositionWriter;
 
 import java.lang.management.ManagementFactory;
 import java.lang.management.MemoryMXBean;
@@ -144,7 +146,24 @@ public final class Main {
                     if (Context.getWebServer() != null) {
                         Context.getWebServer().stop();
                     }
+                    if (Context.getCalendarManager() != null) {
+                        Context.getCalendarManager().stop();
+                    }
                     Context.getServerManager().stop();
+
+                    if (Context.getNotificatorManager() != null) {
+                        Context.getNotificatorManager().shutdown();
+                    }
+                    ReportResource.shutdown();
+
+                    if (Context.getRollupManager() != null) {
+                        Context.getRollupManager().stop();
+                    }
+
+                    PositionWriter positionWriter = injector.getInstance(PositionWriter.class);
+                    if (positionWriter != null) {
+                        positionWriter.stop();
+                    }
                 }
             });
         } catch (Exception e) {
@@ -28,7 +28,9 @@ import org.traccar.database.DeviceManager;
 import org.traccar.database.GeofenceManager;
 import org.traccar.database.IdentityManager;
 import org.traccar.database.MaintenancesManager;
+import org.traccar.database.PositionWriter;
 import org.traccar.database.StatisticsManager;
+import org.traccar.database.UnknownDeviceFilter;
 import org.traccar.geocoder.AddressFormat;
 import org.traccar.geocoder.BanGeocoder;
 import org.traccar.geocoder.BingMapsGeocoder;
@@ -69,6 +71,7 @@ import org.traccar.handler.events.IgnitionEventHandler;
 import org.traccar.handler.events.MaintenanceEventHandler;
 import org.traccar.handler.events.MotionEventHandler;
 import org.traccar.handler.events.OverspeedEventHandler;
+import org.traccar.reports.RollupManager;
 import org.traccar.reports.model.TripsConfig;
 
 import javax.annotation.Nullable;
@@ -111,6 +114,16 @@ public class MainModule extends AbstractModule {
         return Context.getDeviceManager();
     }
 
+    @Provides
+    public static RollupManager provideRollupManager() {
+        return Context.getRollupManager();
+    }
+
+    @Provides
+    public static UnknownDeviceFilter provideUnknownDeviceFilter() {
+        return Context.getUnknownDeviceFilter();
+    }
+
     @Provides
     public static GeofenceManager provideGeofenceManager() {
         return Context.getGeofenceManager();
@@ -310,9 +323,25 @@ public class MainModule extends AbstractModule {
 
     @Singleton
     @Provides
-    public static DefaultDataHandler provideDefaultDataHandler(@Nullable DataManager dataManager) {
+    public static PositionWriter providePositionWriter(Config config, @Nullable DataManager dataManager) {
+        if (dataManager != null && config.getBoolean(Keys.DATABASE_BATCH_ENABLE)) {
+            return new PositionWriter(
+                    dataManager,
+                    config.getInteger(Keys.DATABASE_BATCH_THREADS, 2),
+                    config.getInteger(Keys.DATABASE_BATCH_SIZE, 100),
+                    config.getLong(Keys.DATABASE_BATCH_DELAY, 100),
+                    config.getInteger(Keys.DATABASE_BATCH_QUEUE_SIZE, 10000));
+        }
+        return null;
+    }
+
+    @Singleton
+    @Provides
+    public static DefaultDataHandler provideDefaultDataHandler(
+            @Nullable DataManager dataManager, @Nullable PositionWriter positionWriter,
+            @Nullable RollupManager rollupManager) {
         if (dataManager != null) {
-            return new DefaultDataHandler(dataManager);
+            return new DefaultDataHandler(dataManager, positionWriter, rollupManager);
         }
         return null;
     }
@@ -97,6 +97,7 @@ public class ServerManager {
         for (TrackerServer server: serverList) {
             server.stop();
         }
+        EventLoopGroupFactory.release();
         GlobalTimer.release();
     }
 
@@ -1,5 +1,5 @@
 /*
- * Copyright 2012 - 2018 Anton Tananaev (anton@traccar.org)
+ * Copyright 2012 - 2019 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,11 +19,13 @@ import io.netty.bootstrap.AbstractBootstrap;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.Channel;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.EpollChannelOption;
 import io.netty.channel.group.ChannelGroup;
 import io.netty.channel.group.DefaultChannelGroup;
-import io.netty.channel.socket.nio.NioDatagramChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.util.concurrent.EventExecutor;
 import io.netty.util.concurrent.GlobalEventExecutor;
+import org.traccar.config.Keys;
 
 import java.net.InetSocketAddress;
 
@@ -31,6 +33,7 @@ public abstract class TrackerServer {
 
     private final boolean datagram;
     private final AbstractBootstrap bootstrap;
+    private int bindCount = 1;
 
     public boolean isDatagram() {
         return datagram;
@@ -51,16 +54,29 @@ public abstract class TrackerServer {
 
         if (datagram) {
 
-            this.bootstrap = new Bootstrap()
-                    .group(EventLoopGroupFactory.getWorkerGroup())
-                    .channel(NioDatagramChannel.class)
+            EventLoopGroup workerGroup = EventLoopGroupFactory.getWorkerGroup(protocol);
+
+            Bootstrap datagramBootstrap = new Bootstrap()
+                    .group(workerGroup)
+                    .channel(EventLoopGroupFactory.getDatagramChannelClass())
                     .handler(pipelineFactory);
 
+            if (Context.getConfig().getBoolean(Keys.PROTOCOL_REUSE_PORT.withPrefix(protocol))
+                    && EventLoopGroupFactory.isEpoll()) {
+                datagramBootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+                bindCount = 0;
+                for (EventExecutor ignored : workerGroup) {
+                    bindCount += 1;
+                }
+            }
+
+            this.bootstrap = datagramBootstrap;
+
         } else {
 
             this.bootstrap = new ServerBootstrap()
-                    .group(EventLoopGroupFactory.getBossGroup(), EventLoopGroupFactory.getWorkerGroup())
-                    .channel(NioServerSocketChannel.class)
+                    .group(EventLoopGroupFactory.getBossGroup(protocol), EventLoopGroupFactory.getWorkerGroup(protocol))
+                    .channel(EventLoopGroupFactory.getServerChannelClass())
                     .childHandler(pipelineFactory);
 
         }
@@ -102,9 +118,11 @@ public abstract class TrackerServer {
             endpoint = new InetSocketAddress(address, port);
         }
 
-        Channel channel = bootstrap.bind(endpoint).sync().channel();
-        if (channel != null) {
-            getChannelGroup().add(channel);
+        for (int i = 0; i < bindCount; i++) {
+            Channel channel = bootstrap.bind(endpoint).sync().channel();
+            if (channel != null) {
+                getChannelGroup().add(channel);
+            }
         }
     }
 
@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 - 2016 Anton Tananaev (anton@traccar.org)
+ * Copyright 2015 - 2019 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,6 +18,7 @@ package org.traccar.api;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import org.eclipse.jetty.websocket.api.Session;
 import org.eclipse.jetty.websocket.api.WebSocketAdapter;
+import org.eclipse.jetty.websocket.api.WriteCallback;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.traccar.Context;
@@ -26,12 +27,17 @@ import org.traccar.model.Device;
 import org.traccar.model.Event;
 import org.traccar.model.Position;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
-public class AsyncSocket extends WebSocketAdapter implements ConnectionManager.UpdateListener {
+public class AsyncSocket extends WebSocketAdapter implements ConnectionManager.UpdateListener, WriteCallback {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AsyncSocket.class);
 
@@ -39,10 +45,33 @@ public class AsyncSocket extends WebSocketAdapter implements ConnectionManager.U
     private static final String KEY_POSITIONS = "positions";
     private static final String KEY_EVENTS = "events";
 
+    private static final int EVENTS_LIMIT = 100;
+
+    private static final AtomicLong DROPPED_UPDATES = new AtomicLong();
+
     private long userId;
+    private final ScheduledExecutorService executor;
+    private final long updateInterval;
+
+    private final Map<Long, ConnectionManager.JsonPayload> devices = new LinkedHashMap<>();
+    private final Map<Long, ConnectionManager.JsonPayload> positions = new LinkedHashMap<>();
+    private final LinkedList<ConnectionManager.JsonPayload> events = new LinkedList<>();
 
-    public AsyncSocket(long userId) {
+    private boolean scheduled;
+    private boolean sending;
+    private long droppedUpdates;
+
+    public AsyncSocket(long userId, ScheduledExecutorService executor, long updateInterval) {
         this.userId = userId;
+        this.executor = executor;
+        this.updateInterval = updateInterval;
+    }
+
+    /**
+     * Total number of updates replaced by a newer one or discarded because clients could not keep up.
+     */
+    public static long getDroppedUpdates() {
+        return DROPPED_UPDATES.get();
     }
 
     @Override
@@ -51,7 +80,11 @@ public class AsyncSocket extends WebSocketAdapter implements ConnectionManager.U
 
         Map<String, Collection<?>> data = new HashMap<>();
         data.put(KEY_POSITIONS, Context.getDeviceManager().getInitialState(userId));
-        sendData(data);
+        try {
+            sendData(Context.getObjectMapper().writeValueAsString(data), null);
+        } catch (JsonProcessingException e) {
+            LOGGER.warn("Socket JSON formatting error", e);
+        }
 
         Context.getConnectionManager().addListener(userId, this);
     }
@@ -61,36 +94,145 @@ public class AsyncSocket extends WebSocketAdapter implements ConnectionManager.U
         super.onWebSocketClose(statusCode, reason);
 
         Context.getConnectionManager().removeListener(userId, this);
+
+        synchronized (this) {
+            devices.clear();
+            positions.clear();
+            events.clear();
+            if (droppedUpdates > 0) {
+                LOGGER.debug("Socket closed with " + droppedUpdates + " dropped updates");
+            }
+        }
+    }
+
+    private void dropUpdate() {
+        droppedUpdates += 1;
+        DROPPED_UPDATES.incrementAndGet();
     }
 
     @Override
-    public void onUpdateDevice(Device device) {
-        Map<String, Collection<?>> data = new HashMap<>();
-        data.put(KEY_DEVICES, Collections.singletonList(device));
-        sendData(data);
+    public void onUpdateDevice(Device device, ConnectionManager.JsonPayload payload) {
+        synchronized (this) {
+            if (devices.put(device.getId(), payload) != null) {
+                dropUpdate();
+            }
+        }
+        schedule();
     }
 
     @Override
-    public void onUpdatePosition(Position position) {
-        Map<String, Collection<?>> data = new HashMap<>();
-        data.put(KEY_POSITIONS, Collections.singletonList(position));
-        sendData(data);
+    public void onUpdatePosition(Position position, ConnectionManager.JsonPayload payload) {
+        synchronized (this) {
+            if (positions.put(position.getDeviceId(), payload) != null) {
+                dropUpdate();
+            }
+        }
+        schedule();
     }
 
     @Override
-    public void onUpdateEvent(Event event) {
-        Map<String, Collection<?>> data = new HashMap<>();
-        data.put(KEY_EVENTS, Collections.singletonList(event));
-        sendData(data);
+    public void onUpdateEvent(Event event, ConnectionManager.JsonPayload payload) {
+        synchronized (this) {
+            events.add(payload);
+            if (events.size() > EVENTS_LIMIT) {
+                events.removeFirst();
+                dropUpdate();
+            }
+        }
+        schedule();
+    }
+
+    private void schedule() {
+        synchronized (this) {
+            if (scheduled || sending || devices.isEmpty() && positions.isEmpty() && events.isEmpty()) {
+                return;
+            }
+            scheduled = true;
+        }
+        if (updateInterval > 0) {
+            executor.schedule(this::flush, updateInterval, TimeUnit.MILLISECONDS);
+        } else {
+            flush();
+        }
     }
 
-    private void sendData(Map<String, Collection<?>> data) {
-        if (!data.isEmpty() && isConnected()) {
+    private void flush() {
+        Map<String, Collection<ConnectionManager.JsonPayload>> data = new LinkedHashMap<>();
+        synchronized (this) {
+            scheduled = false;
+            if (!devices.isEmpty()) {
+                data.put(KEY_DEVICES, new ArrayList<>(devices.values()));
+                devices.clear();
+            }
+            if (!positions.isEmpty()) {
+                data.put(KEY_POSITIONS, new ArrayList<>(positions.values()));
+                positions.clear();
+            }
+            if (!events.isEmpty()) {
+                data.put(KEY_EVENTS, new ArrayList<>(events));
+                events.clear();
+            }
+            sending = true;
+        }
+        boolean sent = false;
+        if (!data.isEmpty()) {
             try {
-                getRemote().sendString(Context.getObjectMapper().writeValueAsString(data), null);
+                sent = sendData(formatData(data), this);
             } catch (JsonProcessingException e) {
                 LOGGER.warn("Socket JSON formatting error", e);
             }
         }
+        if (!sent) {
+            writeSuccess();
+        }
+    }
+
+    /**
+     * Assembles the message from payloads that are serialized once and shared with other sockets.
+     */
+    private static String formatData(
+            Map<String, Collection<ConnectionManager.JsonPayload>> data) throws JsonProcessingException {
+        StringBuilder message = new StringBuilder("{");
+        for (Map.Entry<String, Collection<ConnectionManager.JsonPayload>> entry : data.entrySet()) {
+            if (message.length() > 1) {
+                message.append(',');
+            }
+            message.append('"').append(entry.getKey()).append("\":[");
+            boolean first = true;
+            for (ConnectionManager.JsonPayload payload : entry.getValue()) {
+                if (!first) {
+                    message.append(',');
+                }
+                message.append(payload.getJson());
+                first = false;
+            }
+            message.append(']');
+        }
+        return message.append('}').toString();
+    }
+
+    @Override
+    public void writeSuccess() {
+        synchronized (this) {
+            sending = false;
+        }
+        schedule();
+    }
+
+    @Override
+    public void writeFailed(Throwable error) {
+        LOGGER.debug("Socket write error", error);
+        writeSuccess();
+    }
+
+    /**
+     * Sends message and returns true if the callback will be notified when the write completes.
+     */
+    protected boolean sendData(String message, WriteCallback callback) {
+        if (isConnected()) {
+            getRemote().sendString(message, callback);
+            return true;
+        }
+        return false;
     }
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 - 2016 Anton Tananaev (anton@traccar.org)
+ * Copyright 2015 - 2019 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,6 +15,7 @@
  */
 package org.traccar.api;
 
+import io.netty.util.concurrent.DefaultThreadFactory;
 import org.eclipse.jetty.websocket.servlet.ServletUpgradeRequest;
 import org.eclipse.jetty.websocket.servlet.ServletUpgradeResponse;
 import org.eclipse.jetty.websocket.servlet.WebSocketCreator;
@@ -22,20 +23,28 @@ import org.eclipse.jetty.websocket.servlet.WebSocketServlet;
 import org.eclipse.jetty.websocket.servlet.WebSocketServletFactory;
 import org.traccar.Context;
 import org.traccar.api.resource.SessionResource;
+import org.traccar.config.Keys;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 public class AsyncSocketServlet extends WebSocketServlet {
 
     private static final long ASYNC_TIMEOUT = 10 * 60 * 1000;
 
+    private final ScheduledExecutorService executor = Executors.newScheduledThreadPool(
+            Runtime.getRuntime().availableProcessors(), new DefaultThreadFactory("socket", true));
+
     @Override
     public void configure(WebSocketServletFactory factory) {
         factory.getPolicy().setIdleTimeout(Context.getConfig().getLong("web.timeout", ASYNC_TIMEOUT));
+        long updateInterval = Context.getConfig().getLong(Keys.WEB_UPDATE_INTERVAL, 500);
         factory.setCreator(new WebSocketCreator() {
             @Override
             public Object createWebSocket(ServletUpgradeRequest req, ServletUpgradeResponse resp) {
                 if (req.getSession() != null) {
                     long userId = (Long) req.getSession().getAttribute(SessionResource.USER_ID_KEY);
-                    return new AsyncSocket(userId);
+                    return new AsyncSocket(userId, executor, updateInterval);
                 } else {
                     return null;
                 }
@@ -43,4 +52,10 @@ public class AsyncSocketServlet extends WebSocketServlet {
         });
     }
 
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+        super.destroy();
+    }
+
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 - 2016 Anton Tananaev (anton@traccar.org)
+ * Copyright 2015 - 2019 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,6 +19,7 @@ import org.traccar.Context;
 import org.traccar.api.BaseResource;
 import org.traccar.helper.DateUtil;
 import org.traccar.model.Position;
+import org.traccar.reports.ReportUtils;
 import org.traccar.web.CsvBuilder;
 import org.traccar.web.GpxBuilder;
 
@@ -27,13 +28,20 @@ import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 
 @Path("positions")
@@ -74,11 +82,24 @@ public class PositionResource extends BaseResource {
             @QueryParam("deviceId") long deviceId, @QueryParam("from") String from, @QueryParam("to") String to)
             throws SQLException {
         Context.getPermissionsManager().checkDevice(getUserId(), deviceId);
-        CsvBuilder csv = new CsvBuilder();
-        csv.addHeaderLine(new Position());
-        csv.addArray(Context.getDataManager().getPositions(
-                deviceId, DateUtil.parseDate(from), DateUtil.parseDate(to)));
-        return Response.ok(csv.build()).header(HttpHeaders.CONTENT_DISPOSITION, CONTENT_DISPOSITION_VALUE_CSV).build();
+        Date fromDate = DateUtil.parseDate(from);
+        Date toDate = DateUtil.parseDate(to);
+        StreamingOutput stream = output -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+            CsvBuilder csv = new CsvBuilder();
+            csv.addHeaderLine(new Position());
+            try {
+                ReportUtils.writePositions(deviceId, fromDate, toDate, position -> {
+                    csv.addLine(position);
+                    csv.writeTo(writer);
+                });
+            } catch (SQLException e) {
+                throw new WebApplicationException(e);
+            }
+            csv.writeTo(writer);
+            writer.flush();
+        };
+        return Response.ok(stream).header(HttpHeaders.CONTENT_DISPOSITION, CONTENT_DISPOSITION_VALUE_CSV).build();
     }
 
     @GET
@@ -87,10 +108,24 @@ public class PositionResource extends BaseResource {
             @QueryParam("deviceId") long deviceId, @QueryParam("from") String from, @QueryParam("to") String to)
             throws SQLException {
         Context.getPermissionsManager().checkDevice(getUserId(), deviceId);
-        GpxBuilder gpx = new GpxBuilder(Context.getIdentityManager().getById(deviceId).getName());
-        gpx.addPositions(Context.getDataManager().getPositions(
-                deviceId, DateUtil.parseDate(from), DateUtil.parseDate(to)));
-        return Response.ok(gpx.build()).header(HttpHeaders.CONTENT_DISPOSITION, CONTENT_DISPOSITION_VALUE_GPX).build();
+        String name = Context.getIdentityManager().getById(deviceId).getName();
+        Date fromDate = DateUtil.parseDate(from);
+        Date toDate = DateUtil.parseDate(to);
+        StreamingOutput stream = output -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+            GpxBuilder gpx = new GpxBuilder(name);
+            try {
+                ReportUtils.writePositions(deviceId, fromDate, toDate, position -> {
+                    gpx.addPosition(position);
+                    gpx.writeTo(writer);
+                });
+            } catch (SQLException e) {
+                throw new WebApplicationException(e);
+            }
+            gpx.writeEnd(writer);
+            writer.flush();
+        };
+        return Response.ok(stream).header(HttpHeaders.CONTENT_DISPOSITION, CONTENT_DISPOSITION_VALUE_GPX).build();
     }
 
 }
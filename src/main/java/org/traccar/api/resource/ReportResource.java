@@ -16,8 +16,12 @@
  */
 package org.traccar.api.resource;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.sql.SQLException;
 import java.util.Collection;
 import java.util.HashSet;
@@ -27,27 +31,34 @@ import java.util.Date;
 import java.util.HashMap;
 
 import javax.activation.DataHandler;
+import javax.activation.FileDataSource;
 import javax.mail.MessagingException;
 import javax.mail.internet.MimeBodyPart;
 import javax.mail.util.ByteArrayDataSource;
+import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 
+import org.eclipse.jetty.server.Request;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.traccar.Context;
 import org.traccar.api.BaseResource;
+import org.traccar.config.Keys;
 import org.traccar.helper.DateUtil;
 import org.traccar.model.Device;
 import org.traccar.model.Event;
-import org.traccar.model.Position;
+import org.traccar.notification.NotificationQueue;
 import org.traccar.reports.Devices;
+import org.traccar.reports.ReportEngine;
 import org.traccar.reports.Events;
 import org.traccar.reports.Summary;
 import org.traccar.reports.Route;
@@ -68,8 +79,69 @@ public class ReportResource extends BaseResource {
     private static final String XLSX = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
     private static final String CONTENT_DISPOSITION_BASE = "attachment; filename=";
 
+    private static NotificationQueue mailQueue;
+
+    @javax.ws.rs.core.Context
+    private HttpServletRequest request;
+
     private interface ReportExecutor {
-        void execute(ByteArrayOutputStream stream) throws SQLException, IOException;
+        void execute(OutputStream stream) throws SQLException, IOException;
+    }
+
+    private interface ReportQuery<T> {
+        T execute() throws SQLException;
+    }
+
+    /**
+     * Reports whether the connection is already known to be closed. Jetty does not read from the connection while the
+     * request is handled, so a client closing it is usually only noticed here after the server closes it, for example
+     * on idle timeout, or once a write to it fails.
+     */
+    private boolean isDisconnected() {
+        Request baseRequest = request != null ? Request.getBaseRequest(request) : null;
+        return baseRequest != null && !baseRequest.getHttpChannel().getEndPoint().isOpen();
+    }
+
+    private <T> T executeQuery(ReportQuery<T> query) throws SQLException {
+        ReportEngine.setCancellation(this::isDisconnected);
+        try {
+            return query.execute();
+        } finally {
+            ReportEngine.setCancellation(null);
+        }
+    }
+
+    private void executeStream(ReportExecutor executor, OutputStream stream)
+            throws SQLException, IOException {
+        ReportEngine.setCancellation(this::isDisconnected);
+        try {
+            executor.execute(stream);
+        } finally {
+            ReportEngine.setCancellation(null);
+        }
+    }
+
+    private static synchronized NotificationQueue getMailQueue() {
+        if (mailQueue == null) {
+            mailQueue = new NotificationQueue("report",
+                    Context.getConfig().getInteger(Keys.REPORT_MAIL_THREADS, 2),
+                    Context.getConfig().getInteger(Keys.REPORT_MAIL_QUEUE_LIMIT, 100), 0, 0);
+        }
+        return mailQueue;
+    }
+
+    public static synchronized void shutdown() {
+        if (mailQueue != null) {
+            mailQueue.shutdown();
+            mailQueue = null;
+        }
+    }
+
+    private static Response submitMailReport(NotificationQueue.Task task) {
+        if (getMailQueue().submit(task)) {
+            return Response.noContent().build();
+        }
+        return Response.status(Response.Status.SERVICE_UNAVAILABLE).build();
     }
 
     private Response executeReport(
@@ -81,7 +153,7 @@ public class ReportResource extends BaseResource {
             long userId, boolean mail, ReportExecutor executor, String fileName) throws SQLException, IOException {
         final ByteArrayOutputStream stream = new ByteArrayOutputStream();
         if (mail) {
-            new Thread(() -> {
+            return submitMailReport(() -> {
                 try {
                     executor.execute(stream);
 
@@ -96,11 +168,10 @@ public class ReportResource extends BaseResource {
                 } catch (SQLException | IOException | MessagingException e) {
                     LOGGER.warn("Report failed", e);
                 }
-            }).start();
-            return Response.noContent().build();
+            });
         } else {
             try {
-                executor.execute(stream);
+                executeStream(executor, stream);
             } catch (IllegalArgumentException exception) {
                 return Response.status(404, exception.getMessage()).build();
             }
@@ -109,22 +180,38 @@ public class ReportResource extends BaseResource {
         }
     }
 
+    private StreamingOutput createStreamingOutput(ReportExecutor executor) {
+        return stream -> {
+            try {
+                executeStream(executor, stream);
+            } catch (SQLException e) {
+                throw new WebApplicationException(e);
+            }
+        };
+    }
+
+    private Response executeStreamingReport(ReportExecutor executor) {
+        return Response.ok(createStreamingOutput(executor))
+                .header(HttpHeaders.CONTENT_DISPOSITION, CONTENT_DISPOSITION_BASE + "report.xlsx").build();
+    }
+
     private Response executeGovReport(
             long userId, boolean mail, ReportExecutor executor,
             String fileName, String emailSubject, Boolean isZip) throws SQLException, IOException {
-        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
         String fileExt = isZip ? ".zip" : ".xlsx";
         String fileHeader = isZip ? "application/zip, application/octet-stream" : "application/octet-stream";
         if (mail) {
-            new Thread(() -> {
+            return submitMailReport(() -> {
+                File file = File.createTempFile("report", fileExt);
                 try {
-                    executor.execute(stream);
+                    try (OutputStream stream = new BufferedOutputStream(new FileOutputStream(file))) {
+                        executor.execute(stream);
+                    }
 
                     MimeBodyPart attachment = new MimeBodyPart();
 
                     attachment.setFileName(fileName + fileExt);
-                    attachment.setDataHandler(new DataHandler(new ByteArrayDataSource(
-                            stream.toByteArray(), "application/octet-stream")));
+                    attachment.setDataHandler(new DataHandler(new FileDataSource(file)));
                     String govEmail = Context.getConfig().getString("custom.govEmail");
                     Context.getMailManager().sendMessage(
                             userId, govEmail, emailSubject + "(monitor.ethiogps.com)",
@@ -135,11 +222,18 @@ public class ReportResource extends BaseResource {
                                     + "<br><br><br> Thank you, <br> EthioGPS", attachment);
                 } catch (SQLException | IOException | MessagingException e) {
                     LOGGER.warn("Report failed", e);
+                } finally {
+                    if (!file.delete()) {
+                        LOGGER.warn("Report file delete failed");
+                    }
                 }
-            }).start();
-            return Response.noContent().build();
+            });
+        } else if (isZip) {
+            return Response.ok(createStreamingOutput(executor))
+                    .header(HttpHeaders.CONTENT_DISPOSITION, CONTENT_DISPOSITION_BASE + fileName + fileExt).build();
         } else {
-            executor.execute(stream);
+            final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+            executeStream(executor, stream);
             return Response.ok(stream.toByteArray())
                     .header(HttpHeaders.CONTENT_DISPOSITION, CONTENT_DISPOSITION_BASE + fileName + fileExt).build();
         }
@@ -153,11 +247,11 @@ public class ReportResource extends BaseResource {
 
     @Path("route")
     @GET
-    public Collection<Position> getRoute(
+    public Response getRoute(
             @QueryParam("deviceId") final List<Long> deviceIds, @QueryParam("groupId") final List<Long> groupIds,
             @QueryParam("from") String from, @QueryParam("to") String to) throws SQLException {
-        return Route.getObjects(getUserId(), deviceIds, groupIds,
-                DateUtil.parseDate(from), DateUtil.parseDate(to));
+        return Response.ok(Route.getJson(getUserId(), deviceIds, groupIds,
+                DateUtil.parseDate(from), DateUtil.parseDate(to))).build();
     }
 
     @Path("route")
@@ -167,9 +261,23 @@ public class ReportResource extends BaseResource {
             @QueryParam("deviceId") final List<Long> deviceIds, @QueryParam("groupId") final List<Long> groupIds,
             @QueryParam("from") String from, @QueryParam("to") String to, @QueryParam("mail") boolean mail)
             throws SQLException, IOException {
-        return executeReport(getUserId(), mail, stream -> {
-            Route.getExcel(stream, getUserId(), deviceIds, groupIds,
-                    DateUtil.parseDate(from), DateUtil.parseDate(to));
+        if (mail) {
+            return executeReport(getUserId(), mail, stream -> {
+                Route.getExcel(stream, getUserId(), deviceIds, groupIds,
+                        DateUtil.parseDate(from), DateUtil.parseDate(to));
+            });
+        }
+        Date fromDate;
+        Date toDate;
+        try {
+            fromDate = DateUtil.parseDate(from);
+            toDate = DateUtil.parseDate(to);
+            Route.checkDevices(getUserId(), deviceIds, groupIds, fromDate, toDate);
+        } catch (IllegalArgumentException exception) {
+            return Response.status(404, exception.getMessage()).build();
+        }
+        return executeStreamingReport(stream -> {
+            Route.getExcel(stream, getUserId(), deviceIds, groupIds, fromDate, toDate);
         });
     }
 
@@ -208,8 +316,8 @@ public class ReportResource extends BaseResource {
     public Collection<SummaryReport> getSummary(
             @QueryParam("deviceId") final List<Long> deviceIds, @QueryParam("groupId") final List<Long> groupIds,
             @QueryParam("from") String from, @QueryParam("to") String to) throws SQLException {
-        return Summary.getObjects(getUserId(), deviceIds, groupIds,
-                DateUtil.parseDate(from), DateUtil.parseDate(to));
+        return executeQuery(() -> Summary.getObjects(getUserId(), deviceIds, groupIds,
+                DateUtil.parseDate(from), DateUtil.parseDate(to)));
     }
 
     @Path("summary")
@@ -231,8 +339,8 @@ public class ReportResource extends BaseResource {
     public Collection<TripReport> getTrips(
             @QueryParam("deviceId") final List<Long> deviceIds, @QueryParam("groupId") final List<Long> groupIds,
             @QueryParam("from") String from, @QueryParam("to") String to) throws SQLException {
-        return Trips.getObjects(getUserId(), deviceIds, groupIds,
-                DateUtil.parseDate(from), DateUtil.parseDate(to));
+        return executeQuery(() -> Trips.getObjects(getUserId(), deviceIds, groupIds,
+                DateUtil.parseDate(from), DateUtil.parseDate(to)));
     }
 
     @Path("trips")
@@ -254,8 +362,8 @@ public class ReportResource extends BaseResource {
     public Collection<StopReport> getStops(
             @QueryParam("deviceId") final List<Long> deviceIds, @QueryParam("groupId") final List<Long> groupIds,
             @QueryParam("from") String from, @QueryParam("to") String to) throws SQLException {
-        return Stops.getObjects(getUserId(), deviceIds, groupIds,
-                DateUtil.parseDate(from), DateUtil.parseDate(to));
+        return executeQuery(() -> Stops.getObjects(getUserId(), deviceIds, groupIds,
+                DateUtil.parseDate(from), DateUtil.parseDate(to)));
     }
 
     @Path("stops")
@@ -26,12 +26,52 @@ public final class Keys {
     public static final ConfigSuffix PROTOCOL_TIMEOUT = new ConfigSuffix(
             ".timeout", Integer.class);
 
+    /**
+     * Number of threads accepting connections for the protocol. If set, the protocol gets its own event loop group
+     * instead of sharing the server wide one.
+     */
+    public static final ConfigSuffix PROTOCOL_BOSS_THREADS = new ConfigSuffix(
+            ".bossThreads", Integer.class);
+
+    /**
+     * Number of network threads for the protocol. If set, the protocol gets its own event loop group instead of
+     * sharing the server wide one.
+     */
+    public static final ConfigSuffix PROTOCOL_WORKER_THREADS = new ConfigSuffix(
+            ".workerThreads", Integer.class);
+
+    /**
+     * Enable SO_REUSEPORT for UDP servers. One socket is bound to the port for every network thread, so datagrams
+     * are read by multiple threads in parallel. Only supported with epoll transport.
+     */
+    public static final ConfigSuffix PROTOCOL_REUSE_PORT = new ConfigSuffix(
+            ".reusePort", Boolean.class);
+
     /**
      * Server wide connection timeout value in seconds. See protocol timeout for more information.
      */
     public static final ConfigKey SERVER_TIMEOUT = new ConfigKey(
             "server.timeout", Integer.class);
 
+    /**
+     * Network transport. Possible values are 'epoll' and 'nio'. By default native epoll transport is used on Linux if
+     * it is available, otherwise NIO transport is used.
+     */
+    public static final ConfigKey SERVER_TRANSPORT = new ConfigKey(
+            "server.transport", String.class);
+
+    /**
+     * Number of server wide threads accepting connections. By default Netty uses twice the number of CPU cores.
+     */
+    public static final ConfigKey SERVER_BOSS_THREADS = new ConfigKey(
+            "server.bossThreads", Integer.class);
+
+    /**
+     * Number of server wide network threads. By default Netty uses twice the number of CPU cores.
+     */
+    public static final ConfigKey SERVER_WORKER_THREADS = new ConfigKey(
+            "server.workerThreads", Integer.class);
+
     /**
      * Address for uploading aggregated anonymous usage statistics. Uploaded information is the same you can see on the
      * statistics screen in the web app. It does not include any sensitive (e.g. locations).
@@ -39,6 +79,152 @@ public final class Keys {
     public static final ConfigKey SERVER_STATISTICS = new ConfigKey(
             "server.statistics", Boolean.class);
 
+    /**
+     * Number of threads for processing decoded messages. If set, handlers starting from the one defined by
+     * 'server.executor.split' run on a separate executor group instead of the network event loops, so blocking
+     * database calls do not delay reading from other connections. Messages of one connection are still processed in
+     * order on a single thread.
+     */
+    public static final ConfigKey SERVER_EXECUTOR_THREADS = new ConfigKey(
+            "server.executor.threads", Integer.class);
+
+    /**
+     * Maximum number of pending tasks per executor thread. Connections stop reading once half of the queue is used and
+     * resume when it drops below a quarter. Messages that still do not fit are dropped with a warning. Default value is
+     * 10000.
+     */
+    public static final ConfigKey SERVER_EXECUTOR_QUEUE_SIZE = new ConfigKey(
+            "server.executor.queueSize", Integer.class);
+
+    /**
+     * Simple class name of the first pipeline handler that runs on the executor group. Default value is
+     * FilterHandler, so all handlers after protocol decoding and basic position processing are offloaded.
+     */
+    public static final ConfigKey SERVER_EXECUTOR_SPLIT = new ConfigKey(
+            "server.executor.split", String.class);
+
+    /**
+     * Maximum number of positions on one connection waiting for asynchronous geocoding or geolocation. Further
+     * positions are passed on without the lookup until earlier ones complete. Default value is 1000.
+     */
+    public static final ConfigKey SERVER_PENDING_LIMIT = new ConfigKey(
+            "server.pendingLimit", Integer.class);
+
+    /**
+     * Time in milliseconds a position waits for asynchronous geocoding or geolocation. After that it is passed on
+     * without the result, so a lookup that never completes does not hold back later positions of the device. Default
+     * value is 10000 milliseconds.
+     */
+    public static final ConfigKey SERVER_PENDING_TIMEOUT = new ConfigKey(
+            "server.pendingTimeout", Long.class);
+
+    /**
+     * Number of threads delivering live updates to connected web clients. Each client receives its updates in order,
+     * and a slow client does not delay message processing. By default the number of CPU cores is used.
+     */
+    public static final ConfigKey SERVER_LISTENER_THREADS = new ConfigKey(
+            "server.listenerThreads", Integer.class);
+
+    /**
+     * Interval in milliseconds for collecting live updates into one web socket message. Only the latest device and
+     * position per device are sent, and nothing new is sent while the previous message is still being written to a
+     * slow client. Zero sends every update immediately. Default value is 500 milliseconds.
+     */
+    public static final ConfigKey WEB_UPDATE_INTERVAL = new ConfigKey(
+            "web.updateInterval", Long.class);
+
+    /**
+     * Store positions asynchronously using batched inserts instead of a separate database round-trip for each
+     * message. Batching relies on the JDBC driver returning generated keys for batch statements; if it does not,
+     * positions are inserted one by one on the writer threads.
+     */
+    public static final ConfigKey DATABASE_BATCH_ENABLE = new ConfigKey(
+            "database.batch.enable", Boolean.class);
+
+    /**
+     * Maximum number of positions in one batch insert. Default value is 100.
+     */
+    public static final ConfigKey DATABASE_BATCH_SIZE = new ConfigKey(
+            "database.batch.size", Integer.class);
+
+    /**
+     * Maximum time in milliseconds a position waits for its batch to fill up before it is written. Default value is
+     * 100 milliseconds.
+     */
+    public static final ConfigKey DATABASE_BATCH_DELAY = new ConfigKey(
+            "database.batch.delay", Long.class);
+
+    /**
+     * Number of batch writer threads. Positions of one device are always handled by the same thread, so storage
+     * order is preserved per device. Default value is 2.
+     */
+    public static final ConfigKey DATABASE_BATCH_THREADS = new ConfigKey(
+            "database.batch.threads", Integer.class);
+
+    /**
+     * Capacity of each writer thread queue. When the queue is full, reading from the affected connection pauses until
+     * the queued positions are written. Default value is 10000.
+     */
+    public static final ConfigKey DATABASE_BATCH_QUEUE_SIZE = new ConfigKey(
+            "database.batch.queueSize", Integer.class);
+
+    /**
+     * Maximum number of pooled database connections. Streaming position exports (route JSON, positions CSV and GPX)
+     * hold a connection while writing rows to the client, for at most 'report.streamingTimeout' per device. Default
+     * value is the connection pool default.
+     */
+    public static final ConfigKey DATABASE_MAX_POOL_SIZE = new ConfigKey(
+            "database.maxPoolSize", Integer.class);
+
+    /**
+     * Number of rows fetched from the database at a time when reports and exports stream positions and events.
+     * Default value is 1000. MySQL only honors it when the JDBC URL contains 'useCursorFetch=true'.
+     */
+    public static final ConfigKey DATABASE_FETCH_SIZE = new ConfigKey(
+            "database.fetchSize", Integer.class);
+
+    /**
+     * Periodic device and group cache refreshes only reload rows recorded in the change log. A full table reload,
+     * which also picks up rows modified directly in the database, happens with this period in seconds. Default value
+     * is 3600 seconds.
+     */
+    public static final ConfigKey DATABASE_FULL_REFRESH_DELAY = new ConfigKey(
+            "database.fullRefreshDelay", Long.class);
+
+    /**
+     * Time in seconds an unknown device identifier is remembered, so that repeated messages do not query the database
+     * again. Only used when 'database.ignoreUnknown' is disabled. Default value is 60 seconds.
+     */
+    public static final ConfigKey DATABASE_UNKNOWN_TIMEOUT = new ConfigKey(
+            "database.unknownTimeout", Long.class);
+
+    /**
+     * Maximum number of remembered unknown device identifiers. Default value is 10000.
+     */
+    public static final ConfigKey DATABASE_UNKNOWN_LIMIT = new ConfigKey(
+            "database.unknownLimit", Integer.class);
+
+    /**
+     * Time in seconds an unknown device identifier is not reported again for the same remote address. Also the period
+     * for 'database.unknownRateLimit'. Default value is 60 seconds.
+     */
+    public static final ConfigKey DATABASE_UNKNOWN_REPORT_TIMEOUT = new ConfigKey(
+            "database.unknownReportTimeout", Long.class);
+
+    /**
+     * Maximum number of unknown device identifiers remembered for reporting. Default value is 10000.
+     */
+    public static final ConfigKey DATABASE_UNKNOWN_REPORT_LIMIT = new ConfigKey(
+            "database.unknownReportLimit", Integer.class);
+
+    /**
+     * Maximum number of unknown device identifiers reported for one remote address within
+     * 'database.unknownReportTimeout'. Further unknown identifiers from that address are dropped without a log warning.
+     * Messages from registered devices are not affected. Zero disables the limit. Default value is 100.
+     */
+    public static final ConfigKey DATABASE_UNKNOWN_RATE_LIMIT = new ConfigKey(
+            "database.unknownRateLimit", Integer.class);
+
     /**
      * Enable events subsystem. Flag to enable all events handlers.
      */
@@ -75,6 +261,115 @@ public final class Keys {
     public static final ConfigKey CHECK_EVENT_TIMEOUT_VALUE = new ConfigKey(
             "event.checkEventTimeoutValue", Integer.class);
 
+    /**
+     * Number of threads sending notifications for each notificator type, so slow delivery through one channel does not
+     * delay the others. Default value is 4.
+     */
+    public static final ConfigKey NOTIFICATOR_THREADS = new ConfigKey(
+            "notificator.threads", Integer.class);
+
+    /**
+     * Maximum number of notifications waiting to be sent for each notificator type. Notifications above the limit are
+     * dropped. Default value is 10000.
+     */
+    public static final ConfigKey NOTIFICATOR_QUEUE_LIMIT = new ConfigKey(
+            "notificator.queueLimit", Integer.class);
+
+    /**
+     * Number of attempts to resend a notification after a connection error. Other errors are not retried, because the
+     * message may already have been delivered. Default value is 3.
+     */
+    public static final ConfigKey NOTIFICATOR_RETRIES = new ConfigKey(
+            "notificator.retries", Integer.class);
+
+    /**
+     * Delay in milliseconds before the first resend attempt. The delay doubles with each following attempt. Default
+     * value is 1000 milliseconds.
+     */
+    public static final ConfigKey NOTIFICATOR_RETRY_DELAY = new ConfigKey(
+            "notificator.retryDelay", Long.class);
+
+    /**
+     * Number of threads shared by all report requests for loading and processing data of individual devices. Default
+     * value is the number of available processors.
+     */
+    public static final ConfigKey REPORT_THREADS = new ConfigKey(
+            "report.threads", Integer.class);
+
+    /**
+     * Maximum number of devices processed in parallel for a single report request. Default value is 4.
+     */
+    public static final ConfigKey REPORT_REQUEST_CONCURRENCY = new ConfigKey(
+            "report.requestConcurrency", Integer.class);
+
+    /**
+     * Time in seconds to keep trips, stops and summary calculated for a device and period, so reports requested
+     * together do not load the same data again. Zero disables caching. Default value is 60 seconds.
+     */
+    public static final ConfigKey REPORT_CACHE_TIMEOUT = new ConfigKey(
+            "report.cacheTimeout", Long.class);
+
+    /**
+     * Enable daily per-device summary rollups. Summary reports use stored rollups for complete days and read positions
+     * only for partial days at the edges of the requested period.
+     */
+    public static final ConfigKey REPORT_ROLLUP_ENABLE = new ConfigKey(
+            "report.rollup.enable", Boolean.class);
+
+    /**
+     * Number of past days to calculate rollups for. Default value is 90 days.
+     */
+    public static final ConfigKey REPORT_ROLLUP_DAYS = new ConfigKey(
+            "report.rollup.days", Integer.class);
+
+    /**
+     * Number of most recent days to calculate again on each update to include positions received late. Rollups of older
+     * days are removed when a position for them is stored, and calculated again on a later update. Default value is 2
+     * days.
+     */
+    public static final ConfigKey REPORT_ROLLUP_RECALCULATE_DAYS = new ConfigKey(
+            "report.rollup.recalculateDays", Integer.class);
+
+    /**
+     * Rollup update interval in seconds. Default value is one hour.
+     */
+    public static final ConfigKey REPORT_ROLLUP_INTERVAL = new ConfigKey(
+            "report.rollup.interval", Long.class);
+
+    /**
+     * Maximum number of missing daily rollups calculated in one update, so the initial calculation is spread over
+     * several updates. Default value is 1000.
+     */
+    public static final ConfigKey REPORT_ROLLUP_BACKFILL_LIMIT = new ConfigKey(
+            "report.rollup.backfillLimit", Integer.class);
+
+    /**
+     * Number of positions above which route spreadsheet is written row by row instead of using the template. Default
+     * value is 20000.
+     */
+    public static final ConfigKey REPORT_STREAMING_THRESHOLD = new ConfigKey(
+            "report.streamingThreshold", Integer.class);
+
+    /**
+     * Maximum time in seconds a streaming position export keeps its database connection while writing to the client.
+     * The response is aborted when exceeded. A single write blocked on a stalled client fails earlier, after the web
+     * server idle timeout. Zero disables the limit. Default value is 300 seconds.
+     */
+    public static final ConfigKey REPORT_STREAMING_TIMEOUT = new ConfigKey(
+            "report.streamingTimeout", Long.class);
+
+    /**
+     * Number of threads generating reports requested by email. Default value is 2.
+     */
+    public static final ConfigKey REPORT_MAIL_THREADS = new ConfigKey(
+            "report.mailThreads", Integer.class);
+
+    /**
+     * Maximum number of reports requested by email waiting to be generated. Default value is 100.
+     */
+    public static final ConfigKey REPORT_MAIL_QUEUE_LIMIT = new ConfigKey(
+            "report.mailQueueLimit", Integer.class);
+
     /**
      * List of external handler classes to use in Netty pipeline.
      */
@@ -27,6 +27,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.traccar.model.BaseModel;
+import org.traccar.model.Change;
 
 public class BaseObjectManager<T extends BaseModel> {
 
@@ -37,10 +38,23 @@ public class BaseObjectManager<T extends BaseModel> {
     private Map<Long, T> items;
     private Class<T> baseClass;
 
+    private final boolean trackChanges;
+    private long lastChangeId;
+    private volatile long lastFullRefresh;
+
     protected BaseObjectManager(DataManager dataManager, Class<T> baseClass) {
+        this(dataManager, baseClass, false);
+        refreshItems();
+    }
+
+    /**
+     * Managers tracking changes record their writes in the change log, so they can refresh only changed items. They
+     * load items by calling refreshItems once their own fields are initialised.
+     */
+    protected BaseObjectManager(DataManager dataManager, Class<T> baseClass, boolean trackChanges) {
         this.dataManager = dataManager;
         this.baseClass = baseClass;
-        refreshItems();
+        this.trackChanges = trackChanges;
     }
 
     protected final DataManager getDataManager() {
@@ -55,8 +69,15 @@ public class BaseObjectManager<T extends BaseModel> {
         return items.get(itemId);
     }
 
-    public void refreshItems() {
+    public synchronized void refreshItems() {
         if (dataManager != null) {
+            if (trackChanges) {
+                try {
+                    lastChangeId = dataManager.getLastChangeId();
+                } catch (SQLException error) {
+                    LOGGER.warn("Error reading change log", error);
+                }
+            }
             try {
                 Collection<T> databaseItems = dataManager.getObjects(baseClass);
                 if (items == null) {
@@ -76,12 +97,56 @@ public class BaseObjectManager<T extends BaseModel> {
                         removeCachedItem(cachedItemId);
                     }
                 }
+                lastFullRefresh = System.currentTimeMillis();
             } catch (SQLException error) {
                 LOGGER.warn("Error refreshing items", error);
             }
         }
     }
 
+    /**
+     * Reloads only items recorded in the change log since the previous refresh.
+     */
+    public synchronized void refreshChangedItems() {
+        if (dataManager != null && items != null && trackChanges) {
+            try {
+                Set<Long> changedItemIds = new HashSet<>();
+                for (Change change : dataManager.getChanges(baseClass, lastChangeId)) {
+                    lastChangeId = Math.max(lastChangeId, change.getId());
+                    changedItemIds.add(change.getObjectId());
+                }
+                for (long itemId : changedItemIds) {
+                    T item = dataManager.getObject(baseClass, itemId);
+                    if (item == null) {
+                        if (items.containsKey(itemId)) {
+                            removeCachedItem(itemId);
+                        }
+                    } else if (items.containsKey(itemId)) {
+                        updateCachedItem(item);
+                    } else {
+                        addNewItem(item);
+                    }
+                }
+            } catch (SQLException error) {
+                LOGGER.warn("Error refreshing changed items", error);
+            }
+        }
+    }
+
+    protected final long getLastFullRefresh() {
+        return lastFullRefresh;
+    }
+
+    private void addChange(long itemId) {
+        if (trackChanges) {
+            try {
+                dataManager.addChange(baseClass, itemId);
+            } catch (SQLException error) {
+                LOGGER.warn("Error recording change", error);
+            }
+        }
+    }
+
     protected void addNewItem(T item) {
         items.put(item.getId(), item);
     }
@@ -89,6 +154,7 @@ public class BaseObjectManager<T extends BaseModel> {
     public void addItem(T item) throws SQLException {
         dataManager.addObject(item);
         addNewItem(item);
+        addChange(item.getId());
     }
 
     protected void updateCachedItem(T item) {
@@ -98,6 +164,7 @@ public class BaseObjectManager<T extends BaseModel> {
     public void updateItem(T item) throws SQLException {
         dataManager.updateObject(item);
         updateCachedItem(item);
+        addChange(item.getId());
     }
 
     protected void removeCachedItem(long itemId) {
@@ -109,6 +176,7 @@ public class BaseObjectManager<T extends BaseModel> {
         if (item != null) {
             dataManager.removeObject(baseClass, itemId);
             removeCachedItem(itemId);
+            addChange(itemId);
         }
     }
 
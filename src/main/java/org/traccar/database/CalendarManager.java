@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 - 2017 Anton Tananaev (anton@traccar.org)
+ * Copyright 2016 - 2019 Anton Tananaev (anton@traccar.org)
  * Copyright 2016 - 2017 Andrey Kunitsyn (andrey@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
@@ -16,12 +16,76 @@
  */
 package org.traccar.database;
 
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import io.netty.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.traccar.GlobalTimer;
 import org.traccar.model.Calendar;
 
 public class CalendarManager extends SimpleObjectManager<Calendar> {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(CalendarManager.class);
+
+    private static final long REFRESH_PERIOD = TimeUnit.DAYS.toMillis(1);
+
+    private volatile Timeout refreshTimeout;
+    private volatile boolean stopped;
+
     public CalendarManager(DataManager dataManager) {
         super(dataManager, Calendar.class);
+        scheduleRefresh();
+    }
+
+    private void scheduleRefresh() {
+        refreshTimeout = GlobalTimer.getTimer().newTimeout(timeout -> {
+            refreshOccurrences();
+            if (!stopped) {
+                scheduleRefresh();
+            }
+        }, REFRESH_PERIOD, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        stopped = true;
+        Timeout timeout = refreshTimeout;
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+
+    private static void updateOccurrences(Calendar calendar) {
+        try {
+            calendar.updateOccurrences(new Date());
+        } catch (RuntimeException error) {
+            LOGGER.warn("Calendar occurrences error", error);
+        }
+    }
+
+    @Override
+    protected void addNewItem(Calendar calendar) {
+        updateOccurrences(calendar);
+        super.addNewItem(calendar);
+    }
+
+    @Override
+    protected void updateCachedItem(Calendar calendar) {
+        updateOccurrences(calendar);
+        super.updateCachedItem(calendar);
+    }
+
+    /**
+     * Moves occurrence horizon of all calendars forward, so that moment checks do not have to expand events.
+     */
+    public void refreshOccurrences() {
+        for (long calendarId : getAllItems()) {
+            Calendar calendar = getById(calendarId);
+            if (calendar != null) {
+                updateOccurrences(calendar);
+            }
+        }
     }
 
 }
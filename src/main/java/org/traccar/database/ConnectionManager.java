@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 - 2018 Anton Tananaev (anton@traccar.org)
+ * Copyright 2015 - 2019 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,15 +15,18 @@
  */
 package org.traccar.database;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import io.netty.channel.Channel;
 import io.netty.util.Timeout;
 import io.netty.util.TimerTask;
+import io.netty.util.concurrent.DefaultThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.traccar.Context;
 import org.traccar.GlobalTimer;
 import org.traccar.Main;
 import org.traccar.Protocol;
+import org.traccar.config.Keys;
 import org.traccar.handler.events.MotionEventHandler;
 import org.traccar.handler.events.OverspeedEventHandler;
 import org.traccar.model.Device;
@@ -35,11 +38,17 @@ import java.net.SocketAddress;
 import java.sql.SQLException;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 public class ConnectionManager {
 
@@ -47,18 +56,24 @@ public class ConnectionManager {
 
     private static final long DEFAULT_TIMEOUT = 600;
 
+    private static final int DISPATCH_BATCH = 100;
+
     private final long deviceTimeout;
     private final boolean enableStatusEvents;
     private final boolean updateDeviceState;
 
     private final Map<Long, ActiveDevice> activeDevices = new ConcurrentHashMap<>();
-    private final Map<Long, Set<UpdateListener>> listeners = new ConcurrentHashMap<>();
+    private final Map<Long, List<ListenerDispatcher>> listeners = new ConcurrentHashMap<>();
+    private final Executor executor;
     private final Map<Long, Timeout> timeouts = new ConcurrentHashMap<>();
 
     public ConnectionManager() {
         deviceTimeout = Context.getConfig().getLong("status.timeout", DEFAULT_TIMEOUT) * 1000;
         enableStatusEvents = Context.getConfig().getBoolean("event.enable");
         updateDeviceState = Context.getConfig().getBoolean("status.updateDeviceState");
+        int listenerThreads = Context.getConfig().getInteger(
+                Keys.SERVER_LISTENER_THREADS, Runtime.getRuntime().availableProcessors());
+        executor = Executors.newFixedThreadPool(listenerThreads, new DefaultThreadFactory("listener", true));
     }
 
     public void addActiveDevice(long deviceId, Protocol protocol, Channel channel, SocketAddress remoteAddress) {
@@ -165,54 +180,130 @@ public class ConnectionManager {
         return result;
     }
 
-    public synchronized void updateDevice(Device device) {
+    public void updateDevice(Device device) {
+        JsonPayload payload = new JsonPayload(device);
         for (long userId : Context.getPermissionsManager().getDeviceUsers(device.getId())) {
-            if (listeners.containsKey(userId)) {
-                for (UpdateListener listener : listeners.get(userId)) {
-                    listener.onUpdateDevice(device);
-                }
-            }
+            dispatch(userId, listener -> listener.onUpdateDevice(device, payload));
         }
     }
 
-    public synchronized void updatePosition(Position position) {
+    public void updatePosition(Position position) {
         long deviceId = position.getDeviceId();
 
+        JsonPayload payload = new JsonPayload(position);
         for (long userId : Context.getPermissionsManager().getDeviceUsers(deviceId)) {
-            if (listeners.containsKey(userId)) {
-                for (UpdateListener listener : listeners.get(userId)) {
-                    listener.onUpdatePosition(position);
-                }
-            }
+            dispatch(userId, listener -> listener.onUpdatePosition(position, payload));
         }
     }
 
-    public synchronized void updateEvent(long userId, Event event) {
-        if (listeners.containsKey(userId)) {
-            for (UpdateListener listener : listeners.get(userId)) {
-                listener.onUpdateEvent(event);
+    public void updateEvent(long userId, Event event) {
+        JsonPayload payload = new JsonPayload(event);
+        dispatch(userId, listener -> listener.onUpdateEvent(event, payload));
+    }
+
+    private void dispatch(long userId, Consumer<UpdateListener> update) {
+        List<ListenerDispatcher> userListeners = listeners.get(userId);
+        if (userListeners != null) {
+            for (ListenerDispatcher dispatcher : userListeners) {
+                dispatcher.dispatch(update);
             }
         }
     }
 
     public interface UpdateListener {
-        void onUpdateDevice(Device device);
-        void onUpdatePosition(Position position);
-        void onUpdateEvent(Event event);
+        void onUpdateDevice(Device device, JsonPayload payload);
+        void onUpdatePosition(Position position, JsonPayload payload);
+        void onUpdateEvent(Event event, JsonPayload payload);
     }
 
-    public synchronized void addListener(long userId, UpdateListener listener) {
-        if (!listeners.containsKey(userId)) {
-            listeners.put(userId, new HashSet<UpdateListener>());
+    /**
+     * JSON representation of an update, serialized on first use and shared by all listeners receiving the update.
+     */
+    public static final class JsonPayload {
+
+        private final Object object;
+        private volatile String json;
+
+        public JsonPayload(Object object) {
+            this.object = object;
         }
-        listeners.get(userId).add(listener);
+
+        public String getJson() throws JsonProcessingException {
+            String result = json;
+            if (result == null) {
+                synchronized (this) {
+                    result = json;
+                    if (result == null) {
+                        result = Context.getObjectMapper().writeValueAsString(object);
+                        json = result;
+                    }
+                }
+            }
+            return result;
+        }
+
     }
 
-    public synchronized void removeListener(long userId, UpdateListener listener) {
-        if (!listeners.containsKey(userId)) {
-            listeners.put(userId, new HashSet<UpdateListener>());
+    /**
+     * Delivers updates to one listener on the shared executor. Updates for the same listener run one at a time and in
+     * order, while a slow listener only delays its own updates.
+     */
+    private final class ListenerDispatcher implements Runnable {
+
+        private final UpdateListener listener;
+        private final Queue<Consumer<UpdateListener>> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        private ListenerDispatcher(UpdateListener listener) {
+            this.listener = listener;
         }
-        listeners.get(userId).remove(listener);
+
+        private void dispatch(Consumer<UpdateListener> update) {
+            queue.add(update);
+            schedule();
+        }
+
+        private void schedule() {
+            if (!queue.isEmpty() && scheduled.compareAndSet(false, true)) {
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            for (int i = 0; i < DISPATCH_BATCH; i++) {
+                Consumer<UpdateListener> update = queue.poll();
+                if (update == null) {
+                    break;
+                }
+                try {
+                    update.accept(listener);
+                } catch (RuntimeException error) {
+                    LOGGER.warn("Update listener error", error);
+                }
+            }
+            scheduled.set(false);
+            schedule();
+        }
+
+    }
+
+    public void addListener(long userId, UpdateListener listener) {
+        listeners.compute(userId, (key, userListeners) -> {
+            List<ListenerDispatcher> result = userListeners;
+            if (result == null) {
+                result = new CopyOnWriteArrayList<>();
+            }
+            result.add(new ListenerDispatcher(listener));
+            return result;
+        });
+    }
+
+    public void removeListener(long userId, UpdateListener listener) {
+        listeners.computeIfPresent(userId, (key, userListeners) -> {
+            userListeners.removeIf(dispatcher -> dispatcher.listener == listener);
+            return userListeners.isEmpty() ? null : userListeners;
+        });
     }
 
 }
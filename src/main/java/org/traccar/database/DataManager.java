@@ -20,11 +20,14 @@ import java.io.File;
 import java.lang.reflect.Method;
 import java.net.URL;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
 
 import javax.naming.InitialContext;
 import javax.sql.DataSource;
@@ -40,6 +43,7 @@ import liquibase.resource.ResourceAccessor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.traccar.config.Config;
+import org.traccar.config.Keys;
 import org.traccar.Context;
 import org.traccar.helper.DateUtil;
 import org.traccar.model.Attribute;
@@ -55,8 +59,10 @@ import org.traccar.model.Notification;
 import org.traccar.model.Permission;
 import org.traccar.model.BaseModel;
 import org.traccar.model.Calendar;
+import org.traccar.model.Change;
 import org.traccar.model.Command;
 import org.traccar.model.Position;
+import org.traccar.model.Rollup;
 import org.traccar.model.Server;
 import org.traccar.model.Statistics;
 import org.traccar.model.User;
@@ -74,6 +80,8 @@ public class DataManager {
     public static final String ACTION_UPDATE = "update";
     public static final String ACTION_DELETE = "delete";
 
+    private static final long CHANGES_HISTORY = 24 * 3600 * 1000;
+
     private final Config config;
 
     private DataSource dataSource;
@@ -82,10 +90,15 @@ public class DataManager {
 
     private boolean forceLdap;
 
+    private volatile boolean batchKeysUnsupported;
+
+    private final int fetchSize;
+
     public DataManager(Config config) throws Exception {
         this.config = config;
 
         forceLdap = config.getBoolean("ldap.force");
+        fetchSize = config.getInteger(Keys.DATABASE_FETCH_SIZE, 1000);
 
         initDatabase();
         initDatabaseSchema();
@@ -129,7 +142,7 @@ public class DataManager {
             hikariConfig.setConnectionInitSql(config.getString("database.checkConnection", "SELECT 1"));
             hikariConfig.setIdleTimeout(600000);
 
-            int maxPoolSize = config.getInteger("database.maxPoolSize");
+            int maxPoolSize = config.getInteger(Keys.DATABASE_MAX_POOL_SIZE);
 
             if (maxPoolSize != 0) {
                 hikariConfig.setMaximumPoolSize(maxPoolSize);
@@ -348,6 +361,15 @@ public class DataManager {
                 .executeQuery(Position.class);
     }
 
+    public void getPositions(
+            long deviceId, Date from, Date to, Consumer<? super Position> consumer) throws SQLException {
+        QueryBuilder.create(dataSource, getQuery("database.selectPositions"))
+                .setLong("deviceId", deviceId)
+                .setDate("from", from)
+                .setDate("to", to)
+                .executeQuery(Position.class, fetchSize, consumer);
+    }
+
     public void updateLatestPosition(Position position) throws SQLException {
         QueryBuilder.create(dataSource, getQuery("database.updateLatestPosition"))
                 .setDate("now", new Date())
@@ -369,6 +391,9 @@ public class DataManager {
     }
 
     public void clearHistory() throws SQLException {
+        QueryBuilder.create(dataSource, getQuery("database.deleteChanges"))
+                .setDate("changeTime", new Date(System.currentTimeMillis() - CHANGES_HISTORY))
+                .executeUpdate();
         long historyDays = config.getInteger("database.historyDays");
         if (historyDays != 0) {
             Date timeLimit = new Date(System.currentTimeMillis() - historyDays * 24 * 3600 * 1000);
@@ -382,6 +407,49 @@ public class DataManager {
         }
     }
 
+    public Device getDeviceByUniqueId(String uniqueId) throws SQLException {
+        return QueryBuilder.create(dataSource, getQuery("database.selectDeviceByUniqueId"))
+                .setString("uniqueId", uniqueId)
+                .executeQuerySingle(Device.class);
+    }
+
+    public Collection<Rollup> getRollups(long deviceId, Date from, Date to) throws SQLException {
+        return QueryBuilder.create(dataSource, getQuery("database.selectRollups"))
+                .setLong("deviceId", deviceId)
+                .setDate("from", from)
+                .setDate("to", to)
+                .executeQuery(Rollup.class);
+    }
+
+    public void removeRollups(long deviceId, Date from, Date to) throws SQLException {
+        QueryBuilder.create(dataSource, getQuery("database.deleteRollups"))
+                .setLong("deviceId", deviceId)
+                .setDate("from", from)
+                .setDate("to", to)
+                .executeUpdate();
+    }
+
+    public void addChange(Class<? extends BaseModel> clazz, long objectId) throws SQLException {
+        Change change = new Change();
+        change.setObjectType(clazz.getSimpleName());
+        change.setObjectId(objectId);
+        change.setChangeTime(new Date());
+        addObject(change);
+    }
+
+    public Collection<Change> getChanges(Class<? extends BaseModel> clazz, long lastChangeId) throws SQLException {
+        return QueryBuilder.create(dataSource, getQuery("database.selectChanges"))
+                .setString("objectType", clazz.getSimpleName())
+                .setLong("id", lastChangeId)
+                .executeQuery(Change.class);
+    }
+
+    public long getLastChangeId() throws SQLException {
+        Change change = QueryBuilder.create(dataSource, getQuery("database.selectLastChange"))
+                .executeQuerySingle(Change.class);
+        return change != null ? change.getId() : 0;
+    }
+
     public Server getServer() throws SQLException {
         return QueryBuilder.create(dataSource, getQuery(ACTION_SELECT_ALL, Server.class))
                 .executeQuerySingle(Server.class);
@@ -395,9 +463,25 @@ public class DataManager {
                 .executeQuery(Event.class);
     }
 
+    public void getEvents(long deviceId, Date from, Date to, Consumer<? super Event> consumer) throws SQLException {
+        QueryBuilder.create(dataSource, getQuery("database.selectEvents"))
+                .setLong("deviceId", deviceId)
+                .setDate("from", from)
+                .setDate("to", to)
+                .executeQuery(Event.class, fetchSize, consumer);
+    }
+
     public Collection<Event> getEventsForMultiple(Collection<Long> deviceIds,
                                                   Collection<String> types, Collection<String> subTypes,
                                                   Date from, Date to) throws SQLException {
+        List<Event> result = new ArrayList<>();
+        getEventsForMultiple(deviceIds, types, subTypes, from, to, result::add);
+        return result;
+    }
+
+    public void getEventsForMultiple(Collection<Long> deviceIds,
+                                     Collection<String> types, Collection<String> subTypes,
+                                     Date from, Date to, Consumer<? super Event> consumer) throws SQLException {
         StringBuilder sb = new StringBuilder();
         sb.append("SELECT * FROM tc_events WHERE serverTime BETWEEN :from AND :to");
         if (types.size() > 0) {
@@ -431,12 +515,12 @@ public class DataManager {
             sb.append(")");
         }
         sb.append(" ORDER BY serverTime");
-        return QueryBuilder.create(dataSource, sb.toString())
+        QueryBuilder.create(dataSource, sb.toString())
                 .setDate("to", to)
                 .setDate("from", from)
                 .setLongArray("deviceIds", deviceIds)
                 .setStringArray("eventTypes", types)
-                .executeQuery(Event.class);
+                .executeQuery(Event.class, fetchSize, consumer);
     }
 
     public Collection<Statistics> getStatistics(Date from, Date to) throws SQLException {
@@ -513,6 +597,27 @@ public class DataManager {
                 .executeUpdate());
     }
 
+    public void addObjects(Class<? extends BaseModel> clazz, List<? extends BaseModel> entities) throws SQLException {
+        if (!batchKeysUnsupported) {
+            QueryBuilder builder = QueryBuilder.create(dataSource, getQuery(ACTION_INSERT, clazz), true);
+            for (BaseModel entity : entities) {
+                builder.setObject(entity).addBatch();
+            }
+            long[] ids = builder.executeBatch();
+            if (ids != null) {
+                for (int i = 0; i < ids.length; i++) {
+                    entities.get(i).setId(ids[i]);
+                }
+                return;
+            }
+            LOGGER.warn("Database driver does not return batch generated keys, using single inserts");
+            batchKeysUnsupported = true;
+        }
+        for (BaseModel entity : entities) {
+            addObject(entity);
+        }
+    }
+
     public void updateObject(BaseModel entity) throws SQLException {
         QueryBuilder.create(dataSource, getQuery(ACTION_UPDATE, entity.getClass()))
                 .setObject(entity)
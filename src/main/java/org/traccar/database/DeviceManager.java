@@ -28,6 +28,7 @@ import java.util.concurrent.atomic.AtomicLong;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.traccar.config.Config;
+import org.traccar.config.Keys;
 import org.traccar.Context;
 import org.traccar.model.Command;
 import org.traccar.model.Device;
@@ -42,30 +43,39 @@ public class DeviceManager extends BaseObjectManager<Device> implements Identity
     private static final Logger LOGGER = LoggerFactory.getLogger(DeviceManager.class);
 
     public static final long DEFAULT_REFRESH_DELAY = 300;
+    public static final long DEFAULT_FULL_REFRESH_DELAY = 3600;
 
     private final Config config;
     private final long dataRefreshDelay;
+    private final long fullRefreshDelay;
+    private final long unknownTimeout;
+    private final int unknownLimit;
     private boolean lookupGroupsAttribute;
 
     private Map<String, Device> devicesByUniqueId;
     private Map<String, Device> devicesByPhone;
     private AtomicLong devicesLastUpdate = new AtomicLong();
 
+    private final Map<String, Long> unknownDevices = new ConcurrentHashMap<>();
+
+    private final UnknownDeviceFilter unknownDeviceFilter;
+
     private final Map<Long, Position> positions = new ConcurrentHashMap<>();
 
     private final Map<Long, DeviceState> deviceStates = new ConcurrentHashMap<>();
 
-    public DeviceManager(DataManager dataManager) {
-        super(dataManager, Device.class);
+    public DeviceManager(DataManager dataManager, UnknownDeviceFilter unknownDeviceFilter) {
+        super(dataManager, Device.class, true);
         this.config = Context.getConfig();
-        if (devicesByPhone == null) {
-            devicesByPhone = new ConcurrentHashMap<>();
-        }
-        if (devicesByUniqueId == null) {
-            devicesByUniqueId = new ConcurrentHashMap<>();
-        }
+        this.unknownDeviceFilter = unknownDeviceFilter;
+        devicesByPhone = new ConcurrentHashMap<>();
+        devicesByUniqueId = new ConcurrentHashMap<>();
         dataRefreshDelay = config.getLong("database.refreshDelay", DEFAULT_REFRESH_DELAY) * 1000;
+        fullRefreshDelay = config.getLong(Keys.DATABASE_FULL_REFRESH_DELAY, DEFAULT_FULL_REFRESH_DELAY) * 1000;
+        unknownTimeout = config.getLong(Keys.DATABASE_UNKNOWN_TIMEOUT, 60) * 1000;
+        unknownLimit = config.getInteger(Keys.DATABASE_UNKNOWN_LIMIT, 10000);
         lookupGroupsAttribute = config.getBoolean("deviceManager.lookupGroupsAttribute");
+        refreshItems();
         refreshLastPositions();
     }
 
@@ -100,19 +110,58 @@ public class DeviceManager extends BaseObjectManager<Device> implements Identity
 
     public void updateDeviceCache(boolean force) throws SQLException {
         long lastUpdate = devicesLastUpdate.get();
-        if ((force || System.currentTimeMillis() - lastUpdate > dataRefreshDelay)
-                && devicesLastUpdate.compareAndSet(lastUpdate, System.currentTimeMillis())) {
-            refreshItems();
+        long currentTime = System.currentTimeMillis();
+        if ((force || currentTime - lastUpdate > dataRefreshDelay)
+                && devicesLastUpdate.compareAndSet(lastUpdate, currentTime)) {
+            if (force || currentTime - getLastFullRefresh() > fullRefreshDelay) {
+                refreshItems();
+            } else {
+                refreshChangedItems();
+            }
         }
     }
 
     @Override
-    public Device getByUniqueId(String uniqueId) throws SQLException {
-        boolean forceUpdate = !devicesByUniqueId.containsKey(uniqueId) && !config.getBoolean("database.ignoreUnknown");
+    public Device getCachedByUniqueId(String uniqueId) throws SQLException {
+        updateDeviceCache(false);
+        return devicesByUniqueId.get(uniqueId);
+    }
 
-        updateDeviceCache(forceUpdate);
+    @Override
+    public Device getByUniqueId(String uniqueId) throws SQLException {
+        Device device = getCachedByUniqueId(uniqueId);
+        if (device == null && !config.getBoolean("database.ignoreUnknown")) {
+            device = loadByUniqueId(uniqueId);
+        }
+        return device;
+    }
 
-        return devicesByUniqueId.get(uniqueId);
+    private Device loadByUniqueId(String uniqueId) throws SQLException {
+        if (getDataManager() == null) {
+            return null;
+        }
+        long currentTime = System.currentTimeMillis();
+        Long expirationTime = unknownDevices.get(uniqueId);
+        if (expirationTime != null && expirationTime > currentTime) {
+            return null;
+        }
+        Device device = getDataManager().getDeviceByUniqueId(uniqueId);
+        if (device != null) {
+            if (getById(device.getId()) != null) {
+                updateCachedItem(device);
+            } else {
+                addNewItem(device);
+            }
+            return getById(device.getId());
+        }
+        if (unknownDevices.size() >= unknownLimit) {
+            unknownDevices.values().removeIf(time -> time <= currentTime);
+            if (unknownDevices.size() >= unknownLimit) {
+                unknownDevices.clear();
+            }
+        }
+        unknownDevices.put(uniqueId, currentTime + unknownTimeout);
+        return null;
     }
 
     @Override
@@ -195,16 +244,14 @@ public class DeviceManager extends BaseObjectManager<Device> implements Identity
     }
 
     private void putUniqueDeviceId(Device device) {
-        if (devicesByUniqueId == null) {
-            devicesByUniqueId = new ConcurrentHashMap<>(getAllItems().size());
-        }
         devicesByUniqueId.put(device.getUniqueId(), device);
+        unknownDevices.remove(device.getUniqueId());
+        if (unknownDeviceFilter != null) {
+            unknownDeviceFilter.remove(device.getUniqueId());
+        }
     }
 
     private void putPhone(Device device) {
-        if (devicesByPhone == null) {
-            devicesByPhone = new ConcurrentHashMap<>(getAllItems().size());
-        }
         devicesByPhone.put(device.getPhone(), device);
     }
 
@@ -1,5 +1,5 @@
 /*
- * Copyright 2017 Anton Tananaev (anton@traccar.org)
+ * Copyright 2017 - 2019 Anton Tananaev (anton@traccar.org)
  * Copyright 2017 Andrey Kunitsyn (andrey@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
@@ -17,15 +17,14 @@
 package org.traccar.database;
 
 import java.sql.SQLException;
-import java.util.Collection;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.traccar.Context;
+import org.traccar.helper.LongSet;
 import org.traccar.model.Device;
 import org.traccar.model.Group;
 import org.traccar.model.Permission;
@@ -35,9 +34,26 @@ public abstract class ExtendedObjectManager<T extends BaseModel> extends SimpleO
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ExtendedObjectManager.class);
 
-    private final Map<Long, Set<Long>> deviceItems = new ConcurrentHashMap<>();
-    private final Map<Long, Set<Long>> deviceItemsWithGroups = new ConcurrentHashMap<>();
-    private final Map<Long, Set<Long>> groupItems = new ConcurrentHashMap<>();
+    /**
+     * Immutable permission indexes, replaced as a whole on refresh so readers always see a consistent state.
+     */
+    private static final class Snapshot {
+
+        private final Map<Long, LongSet> deviceItems;
+        private final Map<Long, LongSet> deviceItemsWithGroups;
+        private final Map<Long, LongSet> groupItems;
+
+        private Snapshot(
+                Map<Long, LongSet> deviceItems, Map<Long, LongSet> deviceItemsWithGroups,
+                Map<Long, LongSet> groupItems) {
+            this.deviceItems = deviceItems;
+            this.deviceItemsWithGroups = deviceItemsWithGroups;
+            this.groupItems = groupItems;
+        }
+
+    }
+
+    private volatile Snapshot snapshot = new Snapshot(new HashMap<>(), new HashMap<>(), new HashMap<>());
 
     protected ExtendedObjectManager(DataManager dataManager, Class<T> baseClass) {
         super(dataManager, baseClass);
@@ -45,24 +61,15 @@ public abstract class ExtendedObjectManager<T extends BaseModel> extends SimpleO
     }
 
     public final Set<Long> getGroupItems(long groupId) {
-        if (!groupItems.containsKey(groupId)) {
-            groupItems.put(groupId, new HashSet<Long>());
-        }
-        return groupItems.get(groupId);
+        return snapshot.groupItems.getOrDefault(groupId, LongSet.EMPTY);
     }
 
     public final Set<Long> getDeviceItems(long deviceId) {
-        if (!deviceItems.containsKey(deviceId)) {
-            deviceItems.put(deviceId, new HashSet<Long>());
-        }
-        return deviceItems.get(deviceId);
+        return snapshot.deviceItems.getOrDefault(deviceId, LongSet.EMPTY);
     }
 
     public Set<Long> getAllDeviceItems(long deviceId) {
-        if (!deviceItemsWithGroups.containsKey(deviceId)) {
-            deviceItemsWithGroups.put(deviceId, new HashSet<Long>());
-        }
-        return deviceItemsWithGroups.get(deviceId);
+        return snapshot.deviceItemsWithGroups.getOrDefault(deviceId, LongSet.EMPTY);
     }
 
     @Override
@@ -71,42 +78,58 @@ public abstract class ExtendedObjectManager<T extends BaseModel> extends SimpleO
         refreshExtendedPermissions();
     }
 
+    private static Map<Long, LongSet> buildItems(Iterable<Permission> permissions) {
+        Map<Long, LongSet.Builder> builders = new HashMap<>();
+        for (Permission permission : permissions) {
+            builders.computeIfAbsent(permission.getOwnerId(), key -> new LongSet.Builder())
+                    .add(permission.getPropertyId());
+        }
+        Map<Long, LongSet> result = new HashMap<>(builders.size() * 2);
+        for (Map.Entry<Long, LongSet.Builder> entry : builders.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().build());
+        }
+        return result;
+    }
+
+    private static LongSet getGroupChainItems(
+            long groupId, Map<Long, LongSet> groupItems, Map<Long, LongSet> groupChainItems) {
+        LongSet result = groupChainItems.get(groupId);
+        if (result == null) {
+            result = groupItems.getOrDefault(groupId, LongSet.EMPTY);
+            groupChainItems.put(groupId, result);
+            Group group = Context.getGroupsManager().getById(groupId);
+            if (group != null && group.getGroupId() != 0) {
+                result = LongSet.union(result, getGroupChainItems(group.getGroupId(), groupItems, groupChainItems));
+                groupChainItems.put(groupId, result);
+            }
+        }
+        return result;
+    }
+
     public void refreshExtendedPermissions() {
         if (getDataManager() != null) {
             try {
 
-                Collection<Permission> databaseGroupPermissions =
-                        getDataManager().getPermissions(Group.class, getBaseClass());
-
-                groupItems.clear();
-                for (Permission groupPermission : databaseGroupPermissions) {
-                    getGroupItems(groupPermission.getOwnerId()).add(groupPermission.getPropertyId());
-                }
-
-                Collection<Permission> databaseDevicePermissions =
-                        getDataManager().getPermissions(Device.class, getBaseClass());
-
-                deviceItems.clear();
-                deviceItemsWithGroups.clear();
-
-                for (Permission devicePermission : databaseDevicePermissions) {
-                    getDeviceItems(devicePermission.getOwnerId()).add(devicePermission.getPropertyId());
-                    getAllDeviceItems(devicePermission.getOwnerId()).add(devicePermission.getPropertyId());
-                }
+                Map<Long, LongSet> groupItems = buildItems(
+                        getDataManager().getPermissions(Group.class, getBaseClass()));
+                Map<Long, LongSet> deviceItems = buildItems(
+                        getDataManager().getPermissions(Device.class, getBaseClass()));
 
+                Map<Long, LongSet> deviceItemsWithGroups = new HashMap<>(deviceItems);
+                Map<Long, LongSet> groupChainItems = new HashMap<>();
                 for (Device device : Context.getDeviceManager().getAllDevices()) {
-                    long groupId = device.getGroupId();
-                    while (groupId != 0) {
-                        getAllDeviceItems(device.getId()).addAll(getGroupItems(groupId));
-                        Group group = Context.getGroupsManager().getById(groupId);
-                        if (group != null) {
-                            groupId = group.getGroupId();
-                        } else {
-                            groupId = 0;
+                    if (device.getGroupId() != 0) {
+                        LongSet items = LongSet.union(
+                                deviceItems.getOrDefault(device.getId(), LongSet.EMPTY),
+                                getGroupChainItems(device.getGroupId(), groupItems, groupChainItems));
+                        if (!items.isEmpty()) {
+                            deviceItemsWithGroups.put(device.getId(), items);
                         }
                     }
                 }
 
+                snapshot = new Snapshot(deviceItems, deviceItemsWithGroups, groupItems);
+
             } catch (SQLException | ClassNotFoundException error) {
                 LOGGER.warn("Refresh permissions error", error);
             }
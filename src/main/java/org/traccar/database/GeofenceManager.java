@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 - 2017 Anton Tananaev (anton@traccar.org)
+ * Copyright 2016 - 2019 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,51 +16,195 @@
 package org.traccar.database;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.traccar.Context;
+import org.traccar.geofence.GeofenceGeometry;
+import org.traccar.geofence.GeofenceIndex;
 import org.traccar.model.Device;
 import org.traccar.model.Geofence;
 import org.traccar.model.Position;
 
 public class GeofenceManager extends ExtendedObjectManager<Geofence> {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(GeofenceManager.class);
+
+    private static final int RECALCULATE_CHUNK = 1000;
+
+    private GeofenceIndex index;
+    private ExecutorService executor;
+    private Map<Long, Set<Long>> calculatedDeviceItems;
+
     public GeofenceManager(DataManager dataManager) {
         super(dataManager, Geofence.class);
     }
 
+    private GeofenceIndex getIndex() {
+        if (index == null) {
+            index = new GeofenceIndex();
+        }
+        return index;
+    }
+
+    private synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(
+                    Runtime.getRuntime().availableProcessors(), new DefaultThreadFactory("geofence", true));
+        }
+        return executor;
+    }
+
+    @Override
+    protected void addNewItem(Geofence geofence) {
+        super.addNewItem(geofence);
+        getIndex().put(geofence.getId(), geofence.getGeometry());
+    }
+
+    @Override
+    protected void updateCachedItem(Geofence geofence) {
+        Geofence cachedGeofence = getById(geofence.getId());
+        super.updateCachedItem(geofence);
+        getIndex().put(geofence.getId(), geofence.getGeometry());
+        if (cachedGeofence != null && !Objects.equals(cachedGeofence.getArea(), geofence.getArea())) {
+            recalculateGeofenceDevices(geofence.getId());
+        }
+    }
+
+    @Override
+    protected void removeCachedItem(long geofenceId) {
+        super.removeCachedItem(geofenceId);
+        getIndex().remove(geofenceId);
+    }
+
     @Override
     public final void refreshExtendedPermissions() {
         super.refreshExtendedPermissions();
-        recalculateDevicesGeofences();
+        recalculateChangedDevices();
     }
 
-    public List<Long> getCurrentDeviceGeofences(Position position) {
-        List<Long> result = new ArrayList<>();
-        for (long geofenceId : getAllDeviceItems(position.getDeviceId())) {
-            Geofence geofence = getById(geofenceId);
-            if (geofence != null && geofence.getGeometry()
-                    .containsPoint(position.getLatitude(), position.getLongitude())) {
-                result.add(geofenceId);
+    /**
+     * Recalculates geofences only for devices whose set of linked geofences differs from the one used for the previous
+     * calculation. The first calculation covers all devices and runs synchronously, later ones run in background.
+     */
+    private synchronized void recalculateChangedDevices() {
+        Map<Long, Set<Long>> previousDeviceItems = calculatedDeviceItems;
+        Map<Long, Set<Long>> currentDeviceItems = new HashMap<>();
+        List<Device> changedDevices = new ArrayList<>();
+        for (Device device : Context.getDeviceManager().getAllDevices()) {
+            Set<Long> deviceItems = getAllDeviceItems(device.getId());
+            if (!deviceItems.isEmpty()) {
+                currentDeviceItems.put(device.getId(), deviceItems);
+            }
+            if (previousDeviceItems == null || !deviceItems.equals(
+                    previousDeviceItems.getOrDefault(device.getId(), Collections.emptySet()))) {
+                changedDevices.add(device);
             }
         }
-        return result;
+        calculatedDeviceItems = currentDeviceItems;
+        if (previousDeviceItems == null) {
+            recalculateDevices(changedDevices);
+        } else {
+            recalculateDevicesAsync(changedDevices);
+        }
     }
 
-    public void recalculateDevicesGeofences() {
-        for (Device device : Context.getDeviceManager().getAllDevices()) {
-            List<Long> deviceGeofenceIds = device.getGeofenceIds();
-            if (deviceGeofenceIds == null) {
-                deviceGeofenceIds = new ArrayList<>();
-            } else {
-                deviceGeofenceIds.clear();
+    private synchronized void recalculateGeofenceDevices(long geofenceId) {
+        if (calculatedDeviceItems != null) {
+            List<Device> devices = new ArrayList<>();
+            for (Map.Entry<Long, Set<Long>> entry : calculatedDeviceItems.entrySet()) {
+                Device device = Context.getDeviceManager().getById(entry.getKey());
+                if (device != null && entry.getValue().contains(geofenceId)) {
+                    devices.add(device);
+                }
             }
+            recalculateDevicesAsync(devices);
+        }
+    }
+
+    private void recalculateDevicesAsync(List<Device> devices) {
+        for (int i = 0; i < devices.size(); i += RECALCULATE_CHUNK) {
+            List<Device> chunk = devices.subList(i, Math.min(i + RECALCULATE_CHUNK, devices.size()));
+            getExecutor().execute(() -> {
+                try {
+                    recalculateDevices(chunk);
+                } catch (RuntimeException error) {
+                    LOGGER.warn("Geofence recalculation error", error);
+                }
+            });
+        }
+    }
+
+    /**
+     * Skips devices that processed a newer position during the calculation, because the event handler has already set
+     * geofences for it.
+     */
+    private void recalculateDevices(Collection<Device> devices) {
+        for (Device device : devices) {
+            List<Long> previousGeofenceIds;
+            synchronized (device) {
+                previousGeofenceIds = device.getGeofenceIds();
+            }
+            List<Long> deviceGeofenceIds = new ArrayList<>();
             Position lastPosition = Context.getIdentityManager().getLastPosition(device.getId());
-            if (lastPosition != null && getAllDeviceItems(device.getId()) != null) {
+            if (lastPosition != null) {
                 deviceGeofenceIds.addAll(getCurrentDeviceGeofences(lastPosition));
             }
-            device.setGeofenceIds(deviceGeofenceIds);
+            synchronized (device) {
+                if (device.getGeofenceIds() == previousGeofenceIds
+                        && Context.getIdentityManager().getLastPosition(device.getId()) == lastPosition) {
+                    device.setGeofenceIds(deviceGeofenceIds);
+                }
+            }
         }
     }
 
+    public List<Long> getCurrentDeviceGeofences(Position position) {
+        List<Long> result = new ArrayList<>();
+        double latitude = position.getLatitude();
+        double longitude = position.getLongitude();
+        Set<Long> deviceGeofenceIds = getAllDeviceItems(position.getDeviceId());
+        if (deviceGeofenceIds.isEmpty()) {
+            return result;
+        }
+        Collection<Long> candidateIds = getIndex().getCandidates(latitude, longitude);
+        if (candidateIds.size() < deviceGeofenceIds.size()) {
+            for (long geofenceId : candidateIds) {
+                if (deviceGeofenceIds.contains(geofenceId) && containsPoint(geofenceId, latitude, longitude)) {
+                    result.add(geofenceId);
+                }
+            }
+        } else {
+            for (long geofenceId : deviceGeofenceIds) {
+                if (containsPoint(geofenceId, latitude, longitude)) {
+                    result.add(geofenceId);
+                }
+            }
+        }
+        return result;
+    }
+
+    private boolean containsPoint(long geofenceId, double latitude, double longitude) {
+        Geofence geofence = getById(geofenceId);
+        if (geofence != null) {
+            GeofenceGeometry geometry = geofence.getGeometry();
+            return geometry.boundsContain(latitude, longitude) && geometry.containsPoint(latitude, longitude);
+        }
+        return false;
+    }
+
+    public void recalculateDevicesGeofences() {
+        recalculateDevices(Context.getDeviceManager().getAllDevices());
+    }
+
 }
@@ -24,6 +24,7 @@ import java.util.concurrent.atomic.AtomicLong;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.traccar.Context;
+import org.traccar.config.Keys;
 import org.traccar.model.Group;
 
 public class GroupsManager extends BaseObjectManager<Group> implements ManagableObjects {
@@ -32,11 +33,15 @@ public class GroupsManager extends BaseObjectManager<Group> implements Managable
 
     private AtomicLong groupsLastUpdate = new AtomicLong();
     private final long dataRefreshDelay;
+    private final long fullRefreshDelay;
 
     public GroupsManager(DataManager dataManager) {
-        super(dataManager, Group.class);
+        super(dataManager, Group.class, true);
         dataRefreshDelay = Context.getConfig().getLong("database.refreshDelay",
                 DeviceManager.DEFAULT_REFRESH_DELAY) * 1000;
+        fullRefreshDelay = Context.getConfig().getLong(Keys.DATABASE_FULL_REFRESH_DELAY,
+                DeviceManager.DEFAULT_FULL_REFRESH_DELAY) * 1000;
+        refreshItems();
     }
 
     private void checkGroupCycles(Group group) {
@@ -52,9 +57,14 @@ public class GroupsManager extends BaseObjectManager<Group> implements Managable
 
     public void updateGroupCache(boolean force) throws SQLException {
         long lastUpdate = groupsLastUpdate.get();
-        if ((force || System.currentTimeMillis() - lastUpdate > dataRefreshDelay)
-                && groupsLastUpdate.compareAndSet(lastUpdate, System.currentTimeMillis())) {
-            refreshItems();
+        long currentTime = System.currentTimeMillis();
+        if ((force || currentTime - lastUpdate > dataRefreshDelay)
+                && groupsLastUpdate.compareAndSet(lastUpdate, currentTime)) {
+            if (force || currentTime - getLastFullRefresh() > fullRefreshDelay) {
+                refreshItems();
+            } else {
+                refreshChangedItems();
+            }
         }
     }
 
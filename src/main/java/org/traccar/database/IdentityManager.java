@@ -26,6 +26,8 @@ public interface IdentityManager {
 
     Device getByUniqueId(String uniqueId) throws Exception;
 
+    Device getCachedByUniqueId(String uniqueId) throws Exception;
+
     String getDevicePassword(long id, String protocol, String defaultPassword);
 
     Position getLastPosition(long deviceId);
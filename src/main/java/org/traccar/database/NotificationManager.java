@@ -103,7 +103,7 @@ public class NotificationManager extends ExtendedObjectManager<Notification> {
                     }
                 }
                 for (String notificator : notificators) {
-                    Context.getNotificatorManager().getNotificator(notificator).sendAsync(userId, event, position);
+                    Context.getNotificatorManager().sendAsync(notificator, userId, event, position);
                 }
             }
         }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 - 2018 Anton Tananaev (anton@traccar.org)
+ * Copyright 2015 - 2019 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,6 +18,7 @@ package org.traccar.database;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.traccar.Context;
+import org.traccar.helper.LongSet;
 import org.traccar.model.Attribute;
 import org.traccar.model.BaseModel;
 import org.traccar.model.Calendar;
@@ -35,6 +36,7 @@ import org.traccar.model.Server;
 import org.traccar.model.User;
 
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -49,16 +51,41 @@ public class PermissionsManager {
 
     private volatile Server server;
 
-    private final Map<Long, Set<Long>> groupPermissions = new HashMap<>();
-    private final Map<Long, Set<Long>> devicePermissions = new HashMap<>();
-    private final Map<Long, Set<Long>> deviceUsers = new HashMap<>();
-    private final Map<Long, Set<Long>> groupDevices = new HashMap<>();
+    /**
+     * Immutable permission indexes, built by a single refresher and replaced as a whole.
+     */
+    private static final class Snapshot {
+
+        private final Map<Long, LongSet> groupPermissions;
+        private final Map<Long, LongSet> devicePermissions;
+        private final Map<Long, LongSet> deviceUsers;
+        private final Map<Long, LongSet> groupDevices;
+
+        private Snapshot(
+                Map<Long, LongSet> groupPermissions, Map<Long, LongSet> devicePermissions,
+                Map<Long, LongSet> deviceUsers, Map<Long, LongSet> groupDevices) {
+            this.groupPermissions = groupPermissions;
+            this.devicePermissions = devicePermissions;
+            this.deviceUsers = deviceUsers;
+            this.groupDevices = groupDevices;
+        }
+
+    }
+
+    private volatile Snapshot snapshot = new Snapshot(
+            new HashMap<>(), new HashMap<>(), new HashMap<>(), new HashMap<>());
 
     public PermissionsManager(DataManager dataManager, UsersManager usersManager) {
+        this(dataManager, usersManager, true);
+    }
+
+    PermissionsManager(DataManager dataManager, UsersManager usersManager, boolean refresh) {
         this.dataManager = dataManager;
         this.usersManager = usersManager;
-        refreshServer();
-        refreshDeviceAndGroupPermissions();
+        if (refresh) {
+            refreshServer();
+            refreshDeviceAndGroupPermissions();
+        }
     }
 
     public User getUser(long userId) {
@@ -66,24 +93,15 @@ public class PermissionsManager {
     }
 
     public Set<Long> getGroupPermissions(long userId) {
-        if (!groupPermissions.containsKey(userId)) {
-            groupPermissions.put(userId, new HashSet<>());
-        }
-        return groupPermissions.get(userId);
+        return snapshot.groupPermissions.getOrDefault(userId, LongSet.EMPTY);
     }
 
     public Set<Long> getDevicePermissions(long userId) {
-        if (!devicePermissions.containsKey(userId)) {
-            devicePermissions.put(userId, new HashSet<>());
-        }
-        return devicePermissions.get(userId);
+        return snapshot.devicePermissions.getOrDefault(userId, LongSet.EMPTY);
     }
 
     private Set<Long> getAllDeviceUsers(long deviceId) {
-        if (!deviceUsers.containsKey(deviceId)) {
-            deviceUsers.put(deviceId, new HashSet<>());
-        }
-        return deviceUsers.get(deviceId);
+        return snapshot.deviceUsers.getOrDefault(deviceId, LongSet.EMPTY);
     }
 
     public Set<Long> getDeviceUsers(long deviceId) {
@@ -102,10 +120,7 @@ public class PermissionsManager {
     }
 
     public Set<Long> getGroupDevices(long groupId) {
-        if (!groupDevices.containsKey(groupId)) {
-            groupDevices.put(groupId, new HashSet<>());
-        }
-        return groupDevices.get(groupId);
+        return snapshot.groupDevices.getOrDefault(groupId, LongSet.EMPTY);
     }
 
     public void refreshServer() {
@@ -116,46 +131,73 @@ public class PermissionsManager {
         }
     }
 
-    public final void refreshDeviceAndGroupPermissions() {
-        groupPermissions.clear();
-        devicePermissions.clear();
+    private static LongSet.Builder getBuilder(Map<Long, LongSet.Builder> builders, long key) {
+        return builders.computeIfAbsent(key, k -> new LongSet.Builder());
+    }
+
+    private static Map<Long, LongSet> build(Map<Long, LongSet.Builder> builders) {
+        Map<Long, LongSet> result = new HashMap<>(builders.size() * 2);
+        for (Map.Entry<Long, LongSet.Builder> entry : builders.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().build());
+        }
+        return result;
+    }
+
+    public final synchronized void refreshDeviceAndGroupPermissions() {
         try {
             GroupTree groupTree = new GroupTree(Context.getGroupsManager().getItems(
                     Context.getGroupsManager().getAllItems()),
                     Context.getDeviceManager().getAllDevices());
-            for (Permission groupPermission : dataManager.getPermissions(User.class, Group.class)) {
-                Set<Long> userGroupPermissions = getGroupPermissions(groupPermission.getOwnerId());
-                Set<Long> userDevicePermissions = getDevicePermissions(groupPermission.getOwnerId());
-                userGroupPermissions.add(groupPermission.getPropertyId());
-                for (Group group : groupTree.getGroups(groupPermission.getPropertyId())) {
-                    userGroupPermissions.add(group.getId());
-                }
-                for (Device device : groupTree.getDevices(groupPermission.getPropertyId())) {
-                    userDevicePermissions.add(device.getId());
-                }
-            }
+            updateDeviceAndGroupPermissions(groupTree, Context.getGroupsManager().getAllItems(),
+                    dataManager.getPermissions(User.class, Group.class),
+                    dataManager.getPermissions(User.class, Device.class));
+        } catch (SQLException | ClassNotFoundException error) {
+            LOGGER.warn("Refresh device permissions error", error);
+        }
+    }
 
-            for (Permission devicePermission : dataManager.getPermissions(User.class, Device.class)) {
-                getDevicePermissions(devicePermission.getOwnerId()).add(devicePermission.getPropertyId());
+    /**
+     * Builds new indexes from the given permissions and publishes them at once, so readers see either the previous or
+     * the new state, never a partially built one.
+     */
+    synchronized void updateDeviceAndGroupPermissions(
+            GroupTree groupTree, Collection<Long> groupIds,
+            Collection<Permission> userGroupPermissions, Collection<Permission> userDevicePermissions) {
+        Map<Long, LongSet.Builder> groupPermissions = new HashMap<>();
+        Map<Long, LongSet.Builder> devicePermissions = new HashMap<>();
+        Map<Long, LongSet.Builder> groupDevices = new HashMap<>();
+
+        for (Permission groupPermission : userGroupPermissions) {
+            LongSet.Builder userGroups = getBuilder(groupPermissions, groupPermission.getOwnerId());
+            LongSet.Builder userDevices = getBuilder(devicePermissions, groupPermission.getOwnerId());
+            userGroups.add(groupPermission.getPropertyId());
+            for (Group group : groupTree.getGroups(groupPermission.getPropertyId())) {
+                userGroups.add(group.getId());
             }
-
-            groupDevices.clear();
-            for (long groupId : Context.getGroupsManager().getAllItems()) {
-                for (Device device : groupTree.getDevices(groupId)) {
-                    getGroupDevices(groupId).add(device.getId());
-                }
+            for (Device device : groupTree.getDevices(groupPermission.getPropertyId())) {
+                userDevices.add(device.getId());
             }
+        }
 
-        } catch (SQLException | ClassNotFoundException error) {
-            LOGGER.warn("Refresh device permissions error", error);
+        for (Permission devicePermission : userDevicePermissions) {
+            getBuilder(devicePermissions, devicePermission.getOwnerId()).add(devicePermission.getPropertyId());
         }
 
-        deviceUsers.clear();
-        for (Map.Entry<Long, Set<Long>> entry : devicePermissions.entrySet()) {
+        for (long groupId : groupIds) {
+            for (Device device : groupTree.getDevices(groupId)) {
+                getBuilder(groupDevices, groupId).add(device.getId());
+            }
+        }
+
+        Map<Long, LongSet> userDevices = build(devicePermissions);
+        Map<Long, LongSet.Builder> deviceUsers = new HashMap<>();
+        for (Map.Entry<Long, LongSet> entry : userDevices.entrySet()) {
             for (long deviceId : entry.getValue()) {
-                getAllDeviceUsers(deviceId).add(entry.getKey());
+                getBuilder(deviceUsers, deviceId).add(entry.getKey());
             }
         }
+
+        snapshot = new Snapshot(build(groupPermissions), userDevices, build(deviceUsers), build(groupDevices));
     }
 
     public boolean getUserAdmin(long userId) {
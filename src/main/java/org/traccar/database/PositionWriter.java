@@ -0,0 +1,173 @@
+/*
+ * Copyright 2019 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.database;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.traccar.model.Position;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class PositionWriter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PositionWriter.class);
+
+    private static final long POLL_TIMEOUT = 1000;
+    private static final long STOP_TIMEOUT = 10000;
+
+    public interface Storage {
+        void store(List<Position> positions) throws SQLException;
+    }
+
+    public interface Callback {
+        void onWritten(Position position, boolean stored);
+    }
+
+    private static final class Entry {
+
+        private final Position position;
+        private final Callback callback;
+
+        private Entry(Position position, Callback callback) {
+            this.position = position;
+            this.callback = callback;
+        }
+
+    }
+
+    private final Storage storage;
+    private final int batchSize;
+    private final long batchDelay;
+    private final Worker[] workers;
+    private final Thread[] threads;
+
+    private volatile boolean running = true;
+
+    public PositionWriter(DataManager dataManager, int threadCount, int batchSize, long batchDelay, int queueSize) {
+        this(positions -> dataManager.addObjects(Position.class, positions),
+                threadCount, batchSize, batchDelay, queueSize);
+    }
+
+    public PositionWriter(Storage storage, int threadCount, int batchSize, long batchDelay, int queueSize) {
+        this.storage = storage;
+        this.batchSize = batchSize;
+        this.batchDelay = batchDelay;
+        workers = new Worker[threadCount];
+        threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            workers[i] = new Worker(queueSize);
+            threads[i] = new Thread(workers[i], "position-writer-" + i);
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+    }
+
+    /**
+     * Queues position without waiting. Returns false if the writer queue is full, in which case the callback is not
+     * invoked and the caller has to write the position again later.
+     */
+    public boolean write(Position position, Callback callback) {
+        Worker worker = workers[(int) (Math.abs(position.getDeviceId()) % workers.length)];
+        return worker.queue.offer(new Entry(position, callback));
+    }
+
+    public void stop() {
+        running = false;
+        for (Thread thread : threads) {
+            try {
+                thread.join(STOP_TIMEOUT);
+            } catch (InterruptedException error) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private class Worker implements Runnable {
+
+        private final BlockingQueue<Entry> queue;
+
+        Worker(int queueSize) {
+            queue = new ArrayBlockingQueue<>(queueSize);
+        }
+
+        @Override
+        public void run() {
+            List<Entry> batch = new ArrayList<>(batchSize);
+            while (running || !queue.isEmpty()) {
+                try {
+                    Entry first = queue.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    long deadline = System.currentTimeMillis() + batchDelay;
+                    while (batch.size() < batchSize) {
+                        long remaining = deadline - System.currentTimeMillis();
+                        if (queue.drainTo(batch, batchSize - batch.size()) == 0) {
+                            if (remaining <= 0) {
+                                break;
+                            }
+                            Entry next = queue.poll(remaining, TimeUnit.MILLISECONDS);
+                            if (next == null) {
+                                break;
+                            }
+                            batch.add(next);
+                        }
+                    }
+                    flush(batch);
+                } catch (InterruptedException error) {
+                    Thread.currentThread().interrupt();
+                    flush(batch);
+                    return;
+                } finally {
+                    batch.clear();
+                }
+            }
+        }
+
+        private void flush(List<Entry> batch) {
+            if (batch.isEmpty()) {
+                return;
+            }
+            List<Position> positions = new ArrayList<>(batch.size());
+            for (Entry entry : batch) {
+                positions.add(entry.position);
+            }
+            boolean stored = true;
+            try {
+                storage.store(positions);
+            } catch (Exception error) {
+                LOGGER.warn("Failed to store positions", error);
+                stored = false;
+            }
+            for (Entry entry : batch) {
+                try {
+                    entry.callback.onWritten(entry.position, stored);
+                } catch (RuntimeException error) {
+                    LOGGER.warn("Position callback error", error);
+                }
+            }
+        }
+
+    }
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 Anton Tananaev (anton@traccar.org)
+ * Copyright 2015 - 2019 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -24,7 +24,8 @@ import org.traccar.model.Permission;
 
 import javax.sql.DataSource;
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Method;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -42,12 +43,50 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 public final class QueryBuilder {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(QueryBuilder.class);
 
-    private final Map<String, List<Integer>> indexMap = new HashMap<>();
+    private static final int CACHE_LIMIT = 1000;
+
+    private static final int[] NO_INDEXES = new int[0];
+
+    private static final class ParsedQuery {
+
+        private final String query;
+        private final Map<String, int[]> indexMap;
+
+        private ParsedQuery(String query, Map<String, int[]> indexMap) {
+            this.query = query;
+            this.indexMap = indexMap;
+        }
+
+    }
+
+    private static final class PropertyGetter {
+
+        private final String name;
+        private final boolean nullIfZero;
+        private final Class<?> type;
+        private final MethodHandle handle;
+
+        private PropertyGetter(String name, Class<?> type, MethodHandle handle) {
+            this.name = name.toLowerCase();
+            this.nullIfZero = name.endsWith("Id");
+            this.type = type;
+            this.handle = handle;
+        }
+
+    }
+
+    private static final Map<String, ParsedQuery> QUERIES = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, List<PropertyGetter>> GETTERS = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, Map<String, List<ResultSetProcessor>>> PROCESSORS = new ConcurrentHashMap<>();
+
+    private Map<String, int[]> indexMap;
     private Connection connection;
     private PreparedStatement statement;
     private final String query;
@@ -57,13 +96,14 @@ public final class QueryBuilder {
         this.query = query;
         this.returnGeneratedKeys = returnGeneratedKeys;
         if (query != null) {
+            ParsedQuery parsedQuery = getParsedQuery(query);
+            indexMap = parsedQuery.indexMap;
             connection = dataSource.getConnection();
-            String parsedQuery = parse(query.trim(), indexMap);
             try {
                 if (returnGeneratedKeys) {
-                    statement = connection.prepareStatement(parsedQuery, Statement.RETURN_GENERATED_KEYS);
+                    statement = connection.prepareStatement(parsedQuery.query, Statement.RETURN_GENERATED_KEYS);
                 } else {
-                    statement = connection.prepareStatement(parsedQuery);
+                    statement = connection.prepareStatement(parsedQuery.query);
                 }
             } catch (SQLException error) {
                 connection.close();
@@ -72,6 +112,27 @@ public final class QueryBuilder {
         }
     }
 
+    private static ParsedQuery getParsedQuery(String query) {
+        ParsedQuery parsedQuery = QUERIES.get(query);
+        if (parsedQuery == null) {
+            Map<String, List<Integer>> paramMap = new HashMap<>();
+            String parsed = parse(query.trim(), paramMap);
+            Map<String, int[]> indexMap = new HashMap<>();
+            for (Map.Entry<String, List<Integer>> entry : paramMap.entrySet()) {
+                int[] indexes = new int[entry.getValue().size()];
+                for (int i = 0; i < indexes.length; i++) {
+                    indexes[i] = entry.getValue().get(i);
+                }
+                indexMap.put(entry.getKey(), indexes);
+            }
+            parsedQuery = new ParsedQuery(parsed, indexMap);
+            if (QUERIES.size() < CACHE_LIMIT) {
+                QUERIES.put(query, parsedQuery);
+            }
+        }
+        return parsedQuery;
+    }
+
     private static String parse(String query, Map<String, List<Integer>> paramMap) {
 
         int length = query.length();
@@ -117,7 +178,7 @@ public final class QueryBuilder {
                     // Add to list
                     List<Integer> indexList = paramMap.get(name);
                     if (indexList == null) {
-                        indexList = new LinkedList<>();
+                        indexList = new ArrayList<>();
                         paramMap.put(name, indexList);
                     }
                     indexList.add(index);
@@ -141,13 +202,12 @@ public final class QueryBuilder {
         return new QueryBuilder(dataSource, query, returnGeneratedKeys);
     }
 
-    private List<Integer> indexes(String name) {
-        name = name.toLowerCase();
-        List<Integer> result = indexMap.get(name);
-        if (result == null) {
-            result = new LinkedList<>();
+    private int[] indexes(String name) {
+        if (indexMap == null) {
+            return NO_INDEXES;
         }
-        return result;
+        int[] result = indexMap.get(name.toLowerCase());
+        return result != null ? result : NO_INDEXES;
     }
 
     public QueryBuilder setBoolean(String name, boolean value) throws SQLException {
@@ -261,38 +321,62 @@ public final class QueryBuilder {
         return this;
     }
 
-    public QueryBuilder setObject(Object object) throws SQLException {
+    private static List<PropertyGetter> getGetters(Class<?> clazz) {
+        List<PropertyGetter> getters = GETTERS.get(clazz);
+        if (getters == null) {
+            getters = new ArrayList<>();
+            for (Method method : clazz.getMethods()) {
+                if (method.getName().startsWith("get") && method.getParameterTypes().length == 0
+                        && !method.isAnnotationPresent(QueryIgnore.class)) {
+                    try {
+                        getters.add(new PropertyGetter(
+                                method.getName().substring(3), method.getReturnType(),
+                                MethodHandles.publicLookup().unreflect(method)));
+                    } catch (IllegalAccessException error) {
+                        LOGGER.warn("Get property error", error);
+                    }
+                }
+            }
+            GETTERS.put(clazz, getters);
+        }
+        return getters;
+    }
 
-        Method[] methods = object.getClass().getMethods();
+    public QueryBuilder setObject(Object object) throws SQLException {
 
-        for (Method method : methods) {
-            if (method.getName().startsWith("get") && method.getParameterTypes().length == 0
-                    && !method.isAnnotationPresent(QueryIgnore.class)) {
-                String name = method.getName().substring(3);
+        for (PropertyGetter getter : getGetters(object.getClass())) {
+            if (indexes(getter.name).length == 0) {
+                continue;
+            }
+            Object value;
+            try {
+                value = getter.handle.invoke(object);
+            } catch (Throwable error) {
+                LOGGER.warn("Get property error", error);
+                continue;
+            }
+            if (getter.type.equals(boolean.class)) {
+                setBoolean(getter.name, (Boolean) value);
+            } else if (getter.type.equals(int.class)) {
+                setInteger(getter.name, (Integer) value);
+            } else if (getter.type.equals(long.class)) {
+                setLong(getter.name, (Long) value, getter.nullIfZero);
+            } else if (getter.type.equals(double.class)) {
+                setDouble(getter.name, (Double) value);
+            } else if (getter.type.equals(String.class)) {
+                setString(getter.name, (String) value);
+            } else if (getter.type.equals(Date.class)) {
+                setDate(getter.name, (Date) value);
+            } else if (getter.type.equals(byte[].class)) {
+                setBlob(getter.name, (byte[]) value);
+            } else {
                 try {
-                    if (method.getReturnType().equals(boolean.class)) {
-                        setBoolean(name, (Boolean) method.invoke(object));
-                    } else if (method.getReturnType().equals(int.class)) {
-                        setInteger(name, (Integer) method.invoke(object));
-                    } else if (method.getReturnType().equals(long.class)) {
-                        setLong(name, (Long) method.invoke(object), name.endsWith("Id"));
-                    } else if (method.getReturnType().equals(double.class)) {
-                        setDouble(name, (Double) method.invoke(object));
-                    } else if (method.getReturnType().equals(String.class)) {
-                        setString(name, (String) method.invoke(object));
-                    } else if (method.getReturnType().equals(Date.class)) {
-                        setDate(name, (Date) method.invoke(object));
-                    } else if (method.getReturnType().equals(byte[].class)) {
-                        setBlob(name, (byte[]) method.invoke(object));
+                    if (getter.type.equals(Map.class) && Context.getConfig().getBoolean("database.xml")) {
+                        setString(getter.name, MiscFormatter.toXmlString((Map) value));
                     } else {
-                        if (method.getReturnType().equals(Map.class)
-                                && Context.getConfig().getBoolean("database.xml")) {
-                            setString(name, MiscFormatter.toXmlString((Map) method.invoke(object)));
-                        } else {
-                            setString(name, Context.getObjectMapper().writeValueAsString(method.invoke(object)));
-                        }
+                        setString(getter.name, Context.getObjectMapper().writeValueAsString(value));
                     }
-                } catch (IllegalAccessException | InvocationTargetException | JsonProcessingException error) {
+                } catch (JsonProcessingException error) {
                     LOGGER.warn("Get property error", error);
                 }
             }
@@ -317,8 +401,8 @@ public final class QueryBuilder {
         return this;
     }
 
-    private interface ResultSetProcessor<T> {
-        void process(T object, ResultSet resultSet) throws SQLException;
+    private interface ResultSetProcessor {
+        void process(Object object, ResultSet resultSet) throws SQLException;
     }
 
     public <T> T executeQuerySingle(Class<T> clazz) throws SQLException {
@@ -330,155 +414,136 @@ public final class QueryBuilder {
         }
     }
 
-    private <T> void addProcessors(
-            List<ResultSetProcessor<T>> processors,
-            final Class<?> parameterType, final Method method, final String name) {
+    private static ResultSetProcessor createProcessor(
+            final Class<?> parameterType, final MethodHandle handle, final int column) {
 
         if (parameterType.equals(boolean.class)) {
-            processors.add(new ResultSetProcessor<T>() {
-                @Override
-                public void process(T object, ResultSet resultSet) throws SQLException {
-                    try {
-                        method.invoke(object, resultSet.getBoolean(name));
-                    } catch (IllegalAccessException | InvocationTargetException error) {
-                        LOGGER.warn("Set property error", error);
-                    }
-                }
-            });
+            return (object, resultSet) -> invokeSetter(handle, object, resultSet.getBoolean(column));
         } else if (parameterType.equals(int.class)) {
-            processors.add(new ResultSetProcessor<T>() {
-                @Override
-                public void process(T object, ResultSet resultSet) throws SQLException {
-                    try {
-                        method.invoke(object, resultSet.getInt(name));
-                    } catch (IllegalAccessException | InvocationTargetException error) {
-                        LOGGER.warn("Set property error", error);
-                    }
-                }
-            });
+            return (object, resultSet) -> invokeSetter(handle, object, resultSet.getInt(column));
         } else if (parameterType.equals(long.class)) {
-            processors.add(new ResultSetProcessor<T>() {
-                @Override
-                public void process(T object, ResultSet resultSet) throws SQLException {
-                    try {
-                        method.invoke(object, resultSet.getLong(name));
-                    } catch (IllegalAccessException | InvocationTargetException error) {
-                        LOGGER.warn("Set property error", error);
-                    }
-                }
-            });
+            return (object, resultSet) -> invokeSetter(handle, object, resultSet.getLong(column));
         } else if (parameterType.equals(double.class)) {
-            processors.add(new ResultSetProcessor<T>() {
-                @Override
-                public void process(T object, ResultSet resultSet) throws SQLException {
-                    try {
-                        method.invoke(object, resultSet.getDouble(name));
-                    } catch (IllegalAccessException | InvocationTargetException error) {
-                        LOGGER.warn("Set property error", error);
-                    }
-                }
-            });
+            return (object, resultSet) -> invokeSetter(handle, object, resultSet.getDouble(column));
         } else if (parameterType.equals(String.class)) {
-            processors.add(new ResultSetProcessor<T>() {
-                @Override
-                public void process(T object, ResultSet resultSet) throws SQLException {
-                    try {
-                        method.invoke(object, resultSet.getString(name));
-                    } catch (IllegalAccessException | InvocationTargetException error) {
-                        LOGGER.warn("Set property error", error);
-                    }
-                }
-            });
+            return (object, resultSet) -> invokeSetter(handle, object, resultSet.getString(column));
         } else if (parameterType.equals(Date.class)) {
-            processors.add(new ResultSetProcessor<T>() {
-                @Override
-                public void process(T object, ResultSet resultSet) throws SQLException {
-                    try {
-                        Timestamp timestamp = resultSet.getTimestamp(name);
-                        if (timestamp != null) {
-                            method.invoke(object, new Date(timestamp.getTime()));
-                        }
-                    } catch (IllegalAccessException | InvocationTargetException error) {
-                        LOGGER.warn("Set property error", error);
-                    }
+            return (object, resultSet) -> {
+                Timestamp timestamp = resultSet.getTimestamp(column);
+                if (timestamp != null) {
+                    invokeSetter(handle, object, new Date(timestamp.getTime()));
                 }
-            });
+            };
         } else if (parameterType.equals(byte[].class)) {
-            processors.add(new ResultSetProcessor<T>() {
-                @Override
-                public void process(T object, ResultSet resultSet) throws SQLException {
+            return (object, resultSet) -> invokeSetter(handle, object, resultSet.getBytes(column));
+        } else {
+            return (object, resultSet) -> {
+                String value = resultSet.getString(column);
+                if (value != null && !value.isEmpty()) {
                     try {
-                        method.invoke(object, resultSet.getBytes(name));
-                    } catch (IllegalAccessException | InvocationTargetException error) {
+                        invokeSetter(handle, object, Context.getObjectMapper().readValue(value, parameterType));
+                    } catch (IOException error) {
                         LOGGER.warn("Set property error", error);
                     }
                 }
-            });
-        } else {
-            processors.add(new ResultSetProcessor<T>() {
-                @Override
-                public void process(T object, ResultSet resultSet) throws SQLException {
-                    String value = resultSet.getString(name);
-                    if (value != null && !value.isEmpty()) {
-                        try {
-                            method.invoke(object, Context.getObjectMapper().readValue(value, parameterType));
-                        } catch (InvocationTargetException | IllegalAccessException | IOException error) {
-                            LOGGER.warn("Set property error", error);
-                        }
+            };
+        }
+    }
+
+    private static void invokeSetter(MethodHandle handle, Object object, Object value) {
+        try {
+            handle.invoke(object, value);
+        } catch (Throwable error) {
+            LOGGER.warn("Set property error", error);
+        }
+    }
+
+    private List<ResultSetProcessor> getProcessors(Class<?> clazz, ResultSet resultSet) throws SQLException {
+
+        Map<String, List<ResultSetProcessor>> classProcessors = PROCESSORS.get(clazz);
+        if (classProcessors == null) {
+            classProcessors = new ConcurrentHashMap<>();
+            PROCESSORS.put(clazz, classProcessors);
+        }
+
+        List<ResultSetProcessor> processors = classProcessors.get(query);
+        if (processors == null) {
+            processors = new ArrayList<>();
+
+            ResultSetMetaData resultMetaData = resultSet.getMetaData();
+            Map<String, Integer> columns = new HashMap<>();
+            for (int i = 1; i <= resultMetaData.getColumnCount(); i++) {
+                columns.putIfAbsent(resultMetaData.getColumnLabel(i).toLowerCase(), i);
+            }
+
+            for (final Method method : clazz.getMethods()) {
+                if (method.getName().startsWith("set") && method.getParameterTypes().length == 1
+                        && !method.isAnnotationPresent(QueryIgnore.class)) {
+
+                    Integer column = columns.get(method.getName().substring(3).toLowerCase());
+                    if (column == null) {
+                        continue;
+                    }
+
+                    try {
+                        processors.add(createProcessor(
+                                method.getParameterTypes()[0], MethodHandles.publicLookup().unreflect(method),
+                                column));
+                    } catch (IllegalAccessException error) {
+                        LOGGER.warn("Set property error", error);
                     }
                 }
-            });
+            }
+
+            if (classProcessors.size() < CACHE_LIMIT) {
+                classProcessors.put(query, processors);
+            }
         }
+        return processors;
     }
 
     public <T> Collection<T> executeQuery(Class<T> clazz) throws SQLException {
         List<T> result = new LinkedList<>();
+        executeQuery(clazz, 0, result::add);
+        return result;
+    }
+
+    /**
+     * Passes rows to the consumer one by one instead of collecting them. A positive fetch size is handed to the driver
+     * and the query runs outside of auto-commit, so drivers that need a transaction for cursors do not buffer the
+     * whole result.
+     */
+    public <T> void executeQuery(Class<T> clazz, int fetchSize, Consumer<? super T> consumer) throws SQLException {
 
         if (query != null) {
 
             try {
 
-                try (ResultSet resultSet = statement.executeQuery()) {
-
-                    ResultSetMetaData resultMetaData = resultSet.getMetaData();
-
-                    List<ResultSetProcessor<T>> processors = new LinkedList<>();
-
-                    Method[] methods = clazz.getMethods();
-
-                    for (final Method method : methods) {
-                        if (method.getName().startsWith("set") && method.getParameterTypes().length == 1
-                                && !method.isAnnotationPresent(QueryIgnore.class)) {
+                boolean autoCommit = connection.getAutoCommit();
+                if (fetchSize > 0) {
+                    connection.setAutoCommit(false);
+                    statement.setFetchSize(fetchSize);
+                }
 
-                            final String name = method.getName().substring(3);
+                try (ResultSet resultSet = statement.executeQuery()) {
 
-                            // Check if column exists
-                            boolean column = false;
-                            for (int i = 1; i <= resultMetaData.getColumnCount(); i++) {
-                                if (name.equalsIgnoreCase(resultMetaData.getColumnLabel(i))) {
-                                    column = true;
-                                    break;
-                                }
-                            }
-                            if (!column) {
-                                continue;
-                            }
-
-                            addProcessors(processors, method.getParameterTypes()[0], method, name);
-                        }
-                    }
+                    List<ResultSetProcessor> processors = getProcessors(clazz, resultSet);
 
                     while (resultSet.next()) {
                         try {
                             T object = clazz.newInstance();
-                            for (ResultSetProcessor<T> processor : processors) {
+                            for (ResultSetProcessor processor : processors) {
                                 processor.process(object, resultSet);
                             }
-                            result.add(object);
+                            consumer.accept(object);
                         } catch (InstantiationException | IllegalAccessException e) {
                             throw new IllegalArgumentException();
                         }
                     }
+                } finally {
+                    if (fetchSize > 0) {
+                        connection.setAutoCommit(autoCommit);
+                    }
                 }
 
             } finally {
@@ -486,8 +551,6 @@ public final class QueryBuilder {
                 connection.close();
             }
         }
-
-        return result;
     }
 
     public long executeUpdate() throws SQLException {
@@ -509,6 +572,57 @@ public final class QueryBuilder {
         return 0;
     }
 
+    public QueryBuilder addBatch() throws SQLException {
+        if (query != null) {
+            try {
+                statement.addBatch();
+            } catch (SQLException error) {
+                statement.close();
+                connection.close();
+                throw error;
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Executes all batched statements in a single transaction. Returns generated keys in the batch order or null if
+     * the driver does not report a key for every row, in which case the transaction is rolled back.
+     */
+    public long[] executeBatch() throws SQLException {
+
+        if (query != null) {
+            boolean autoCommit = connection.getAutoCommit();
+            try {
+                connection.setAutoCommit(false);
+                int count = statement.executeBatch().length;
+                long[] result = new long[count];
+                if (returnGeneratedKeys) {
+                    int index = 0;
+                    try (ResultSet resultSet = statement.getGeneratedKeys()) {
+                        while (index < count && resultSet.next()) {
+                            result[index++] = resultSet.getLong(1);
+                        }
+                    }
+                    if (index < count) {
+                        connection.rollback();
+                        return null;
+                    }
+                }
+                connection.commit();
+                return result;
+            } catch (SQLException error) {
+                connection.rollback();
+                throw error;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+                statement.close();
+                connection.close();
+            }
+        }
+        return new long[0];
+    }
+
     public Collection<Permission> executePermissionsQuery() throws SQLException, ClassNotFoundException {
         List<Permission> result = new LinkedList<>();
         if (query != null) {
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2019 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.database;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks device identifiers that failed the lookup, so that repeated messages neither query the database nor are
+ * reported again, and remote addresses sending many unknown identifiers are throttled. It is only consulted when the
+ * identifier is not in the device cache, so cached devices are never dropped.
+ */
+public class UnknownDeviceFilter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(UnknownDeviceFilter.class);
+
+    private static final class Window {
+
+        private final long startTime;
+        private final AtomicInteger count = new AtomicInteger();
+
+        private Window(long startTime) {
+            this.startTime = startTime;
+        }
+
+    }
+
+    private final long timeout;
+    private final int limit;
+    private final int rateLimit;
+
+    private final Map<String, Map<String, Long>> entries = new ConcurrentHashMap<>();
+    private final Map<String, Window> windows = new ConcurrentHashMap<>();
+
+    private final AtomicLong unknownCount = new AtomicLong();
+    private final AtomicLong cachedCount = new AtomicLong();
+    private final AtomicLong throttledCount = new AtomicLong();
+
+    public UnknownDeviceFilter(long timeout, int limit, int rateLimit) {
+        this.timeout = timeout;
+        this.limit = limit;
+        this.rateLimit = rateLimit;
+    }
+
+    private static String getHost(SocketAddress remoteAddress) {
+        if (remoteAddress instanceof InetSocketAddress) {
+            return ((InetSocketAddress) remoteAddress).getHostString();
+        }
+        return "";
+    }
+
+    private boolean isCached(String host, long currentTime, String... uniqueIds) {
+        boolean found = false;
+        for (String uniqueId : uniqueIds) {
+            if (uniqueId != null) {
+                Map<String, Long> hosts = entries.get(uniqueId);
+                Long expirationTime = hosts != null ? hosts.get(host) : null;
+                if (expirationTime == null || expirationTime <= currentTime) {
+                    return false;
+                }
+                found = true;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Returns false if the identifiers, which have not been found, were recently reported for the same remote address,
+     * or if the address sent too many unknown identifiers.
+     */
+    public boolean accept(SocketAddress remoteAddress, String... uniqueIds) {
+        long currentTime = System.currentTimeMillis();
+        String host = getHost(remoteAddress);
+        if (isCached(host, currentTime, uniqueIds)) {
+            cachedCount.incrementAndGet();
+            return false;
+        }
+        if (rateLimit > 0 && !host.isEmpty()) {
+            Window window = windows.get(host);
+            if (window != null && currentTime - window.startTime <= timeout && window.count.get() >= rateLimit) {
+                throttledCount.incrementAndGet();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void register(SocketAddress remoteAddress, String... uniqueIds) {
+        long currentTime = System.currentTimeMillis();
+        String host = getHost(remoteAddress);
+        unknownCount.incrementAndGet();
+        if (entries.size() >= limit) {
+            entries.values().removeIf(hosts -> {
+                hosts.values().removeIf(time -> time <= currentTime);
+                return hosts.isEmpty();
+            });
+            if (entries.size() >= limit) {
+                entries.clear();
+            }
+        }
+        for (String uniqueId : uniqueIds) {
+            if (uniqueId != null) {
+                entries.computeIfAbsent(uniqueId, key -> new ConcurrentHashMap<>()).put(host, currentTime + timeout);
+            }
+        }
+        if (rateLimit > 0 && !host.isEmpty()) {
+            if (windows.size() >= limit) {
+                windows.values().removeIf(window -> currentTime - window.startTime > timeout);
+                if (windows.size() >= limit) {
+                    windows.clear();
+                }
+            }
+            Window window = windows.compute(host, (key, value) -> {
+                if (value == null || currentTime - value.startTime > timeout) {
+                    return new Window(currentTime);
+                }
+                return value;
+            });
+            if (window.count.incrementAndGet() == rateLimit) {
+                LOGGER.warn("Throttling unknown devices from " + host + " - " + unknownCount.get() + " unknown, "
+                        + cachedCount.get() + " repeated, " + throttledCount.get() + " throttled in total");
+            }
+        }
+    }
+
+    /**
+     * Forgets identifier when a device with it is added.
+     */
+    public void remove(String uniqueId) {
+        entries.remove(uniqueId);
+    }
+
+    public long getUnknownCount() {
+        return unknownCount.get();
+    }
+
+    public long getCachedCount() {
+        return cachedCount.get();
+    }
+
+    public long getThrottledCount() {
+        return throttledCount.get();
+    }
+
+}
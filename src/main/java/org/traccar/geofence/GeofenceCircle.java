@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 Anton Tananaev (anton@traccar.org)
+ * Copyright 2016 - 2019 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -37,6 +37,19 @@ public class GeofenceCircle extends GeofenceGeometry {
         this.centerLatitude = latitude;
         this.centerLongitude = longitude;
         this.radius = radius;
+        updateBounds();
+    }
+
+    private void updateBounds() {
+        double latitudeDelta = DistanceCalculator.getLatitudeDelta(radius) + BOUNDS_MARGIN;
+        double longitudeDelta = DistanceCalculator.getLongitudeDelta(radius, centerLatitude) + BOUNDS_MARGIN;
+        if (longitudeDelta < 0
+                || centerLongitude - longitudeDelta < -180 || centerLongitude + longitudeDelta > 180) {
+            setBounds(centerLatitude - latitudeDelta, centerLatitude + latitudeDelta, -180, 180);
+        } else {
+            setBounds(centerLatitude - latitudeDelta, centerLatitude + latitudeDelta,
+                    centerLongitude - longitudeDelta, centerLongitude + longitudeDelta);
+        }
     }
 
     public double distanceFromCenter(double latitude, double longitude) {
@@ -94,5 +107,6 @@ public class GeofenceCircle extends GeofenceGeometry {
         } catch (NumberFormatException e) {
             throw new ParseException(commaTokens[1] + " is not a double", 0);
         }
+        updateBounds();
     }
 }
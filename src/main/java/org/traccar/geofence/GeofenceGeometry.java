@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 Anton Tananaev (anton@traccar.org)
+ * Copyright 2016 - 2019 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,8 +19,49 @@ import java.text.ParseException;
 
 public abstract class GeofenceGeometry {
 
+    protected static final double BOUNDS_MARGIN = 0.000001;
+
+    private double minLatitude = -90;
+    private double maxLatitude = 90;
+    private double minLongitude = -180;
+    private double maxLongitude = 180;
+
     public abstract boolean containsPoint(double latitude, double longitude);
 
+    public double getMinLatitude() {
+        return minLatitude;
+    }
+
+    public double getMaxLatitude() {
+        return maxLatitude;
+    }
+
+    public double getMinLongitude() {
+        return minLongitude;
+    }
+
+    public double getMaxLongitude() {
+        return maxLongitude;
+    }
+
+    /**
+     * Sets bounding box of the geometry. Geometries crossing the antimeridian should use full longitude range.
+     */
+    protected void setBounds(double minLatitude, double maxLatitude, double minLongitude, double maxLongitude) {
+        this.minLatitude = Math.max(minLatitude, -90);
+        this.maxLatitude = Math.min(maxLatitude, 90);
+        this.minLongitude = Math.max(minLongitude, -180);
+        this.maxLongitude = Math.min(maxLongitude, 180);
+    }
+
+    /**
+     * Quick check that can only rule out points outside of the geometry, without the exact test.
+     */
+    public boolean boundsContain(double latitude, double longitude) {
+        return latitude >= minLatitude && latitude <= maxLatitude
+                && longitude >= minLongitude && longitude <= maxLongitude;
+    }
+
     public abstract String toWkt();
 
     public abstract void fromWkt(String wkt) throws ParseException;
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2019 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.geofence;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Grid of geometry bounding boxes used to find geofences that can contain a point without testing all of them.
+ */
+public class GeofenceIndex {
+
+    public static final double DEFAULT_CELL_SIZE = 0.1;
+
+    private static final int MAX_CELLS = 1024;
+
+    private final double cellSize;
+    private final int longitudeCells;
+
+    private final Map<Long, GeofenceGeometry> geometries = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Long>> cells = new ConcurrentHashMap<>();
+    private final Set<Long> largeItems = ConcurrentHashMap.newKeySet();
+
+    public GeofenceIndex() {
+        this(DEFAULT_CELL_SIZE);
+    }
+
+    public GeofenceIndex(double cellSize) {
+        this.cellSize = cellSize;
+        this.longitudeCells = (int) Math.ceil(360 / cellSize) + 1;
+    }
+
+    private int getLatitudeCell(double latitude) {
+        return (int) Math.floor((latitude + 90) / cellSize);
+    }
+
+    private int getLongitudeCell(double longitude) {
+        return (int) Math.floor((longitude + 180) / cellSize);
+    }
+
+    private long getCellKey(int latitudeCell, int longitudeCell) {
+        return (long) latitudeCell * longitudeCells + longitudeCell;
+    }
+
+    public synchronized void put(long itemId, GeofenceGeometry geometry) {
+        remove(itemId);
+        if (geometry == null) {
+            return;
+        }
+        geometries.put(itemId, geometry);
+        int minLatitudeCell = getLatitudeCell(geometry.getMinLatitude());
+        int maxLatitudeCell = getLatitudeCell(geometry.getMaxLatitude());
+        int minLongitudeCell = getLongitudeCell(geometry.getMinLongitude());
+        int maxLongitudeCell = getLongitudeCell(geometry.getMaxLongitude());
+        long count = (long) (maxLatitudeCell - minLatitudeCell + 1) * (maxLongitudeCell - minLongitudeCell + 1);
+        if (count > MAX_CELLS) {
+            largeItems.add(itemId);
+        } else {
+            for (int i = minLatitudeCell; i <= maxLatitudeCell; i++) {
+                for (int j = minLongitudeCell; j <= maxLongitudeCell; j++) {
+                    cells.computeIfAbsent(getCellKey(i, j), key -> ConcurrentHashMap.newKeySet()).add(itemId);
+                }
+            }
+        }
+    }
+
+    public synchronized void remove(long itemId) {
+        GeofenceGeometry geometry = geometries.remove(itemId);
+        if (geometry == null) {
+            return;
+        }
+        if (!largeItems.remove(itemId)) {
+            for (int i = getLatitudeCell(geometry.getMinLatitude());
+                    i <= getLatitudeCell(geometry.getMaxLatitude()); i++) {
+                for (int j = getLongitudeCell(geometry.getMinLongitude());
+                        j <= getLongitudeCell(geometry.getMaxLongitude()); j++) {
+                    cells.computeIfPresent(getCellKey(i, j), (key, items) -> {
+                        items.remove(itemId);
+                        return items.isEmpty() ? null : items;
+                    });
+                }
+            }
+        }
+    }
+
+    public int size() {
+        return geometries.size();
+    }
+
+    /**
+     * Returns items with bounding boxes containing the point. Exact containment still has to be checked.
+     */
+    public Collection<Long> getCandidates(double latitude, double longitude) {
+        List<Long> result = new ArrayList<>();
+        Set<Long> cellItems = cells.get(getCellKey(getLatitudeCell(latitude), getLongitudeCell(longitude)));
+        if (cellItems != null) {
+            addCandidates(result, cellItems, latitude, longitude);
+        }
+        addCandidates(result, largeItems, latitude, longitude);
+        return result;
+    }
+
+    private void addCandidates(Collection<Long> result, Set<Long> itemIds, double latitude, double longitude) {
+        for (long itemId : itemIds) {
+            GeofenceGeometry geometry = geometries.get(itemId);
+            if (geometry != null && geometry.boundsContain(latitude, longitude)) {
+                result.add(itemId);
+            }
+        }
+    }
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 Anton Tananaev (anton@traccar.org)
+ * Copyright 2016 - 2019 Anton Tananaev (anton@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,10 +16,12 @@
 package org.traccar.geofence;
 
 import java.text.ParseException;
-import java.util.ArrayList;
 
 public class GeofencePolygon extends GeofenceGeometry {
 
+    private static final int BUCKET_THRESHOLD = 64;
+    private static final int BUCKET_EDGES = 8;
+
     public GeofencePolygon() {
     }
 
@@ -27,57 +29,121 @@ public class GeofencePolygon extends GeofenceGeometry {
         fromWkt(wkt);
     }
 
-    private ArrayList<Coordinate> coordinates;
+    private double[] latitudes;
+    private double[] longitudes;
+    private double[] normalizedLongitudes;
 
     private double[] constant;
     private double[] multiple;
 
     private boolean needNormalize = false;
 
+    private double bucketOrigin;
+    private double bucketWidth;
+    private int[] bucketStart;
+    private int[] bucketEdges;
+
     private void precalc() {
-        if (coordinates == null) {
+        if (latitudes == null) {
             return;
         }
 
-        int polyCorners = coordinates.size();
+        int polyCorners = latitudes.length;
         int i;
         int j = polyCorners - 1;
 
-        if (constant != null) {
-            constant = null;
-        }
-        if (multiple != null) {
-            multiple = null;
-        }
-
         constant = new double[polyCorners];
         multiple = new double[polyCorners];
 
         boolean hasNegative = false;
         boolean hasPositive = false;
         for (i = 0; i < polyCorners; i++) {
-            if (coordinates.get(i).getLon() > 90) {
+            if (longitudes[i] > 90) {
                 hasPositive = true;
-            } else if (coordinates.get(i).getLon() < -90) {
+            } else if (longitudes[i] < -90) {
                 hasNegative = true;
             }
         }
         needNormalize = hasPositive && hasNegative;
 
+        normalizedLongitudes = new double[polyCorners];
+        for (i = 0; i < polyCorners; i++) {
+            normalizedLongitudes[i] = normalizeLon(longitudes[i]);
+        }
+
+        double[] lon = normalizedLongitudes;
         for (i = 0; i < polyCorners; j = i++) {
-            if (normalizeLon(coordinates.get(j).getLon()) == normalizeLon(coordinates.get(i).getLon())) {
-                constant[i] = coordinates.get(i).getLat();
+            if (lon[j] == lon[i]) {
+                constant[i] = latitudes[i];
                 multiple[i] = 0;
             } else {
-                constant[i] = coordinates.get(i).getLat()
-                        - (normalizeLon(coordinates.get(i).getLon()) * coordinates.get(j).getLat())
-                        / (normalizeLon(coordinates.get(j).getLon()) - normalizeLon(coordinates.get(i).getLon()))
-                        + (normalizeLon(coordinates.get(i).getLon()) * coordinates.get(i).getLat())
-                        / (normalizeLon(coordinates.get(j).getLon()) - normalizeLon(coordinates.get(i).getLon()));
-                multiple[i] = (coordinates.get(j).getLat() - coordinates.get(i).getLat())
-                        / (normalizeLon(coordinates.get(j).getLon()) - normalizeLon(coordinates.get(i).getLon()));
+                constant[i] = latitudes[i]
+                        - (lon[i] * latitudes[j]) / (lon[j] - lon[i])
+                        + (lon[i] * latitudes[i]) / (lon[j] - lon[i]);
+                multiple[i] = (latitudes[j] - latitudes[i]) / (lon[j] - lon[i]);
+            }
+        }
+
+        double minLatitude = 90;
+        double maxLatitude = -90;
+        double minLongitude = Double.MAX_VALUE;
+        double maxLongitude = -Double.MAX_VALUE;
+        for (i = 0; i < polyCorners; i++) {
+            minLatitude = Math.min(minLatitude, latitudes[i]);
+            maxLatitude = Math.max(maxLatitude, latitudes[i]);
+            minLongitude = Math.min(minLongitude, lon[i]);
+            maxLongitude = Math.max(maxLongitude, lon[i]);
+        }
+        if (needNormalize) {
+            setBounds(minLatitude, maxLatitude, -180, 180);
+        } else {
+            setBounds(minLatitude, maxLatitude, minLongitude, maxLongitude);
+        }
+
+        bucketStart = null;
+        bucketEdges = null;
+        if (polyCorners > BUCKET_THRESHOLD && maxLongitude > minLongitude) {
+            precalcBuckets(polyCorners / BUCKET_EDGES, minLongitude, maxLongitude);
+        }
+    }
+
+    /**
+     * Groups edges into longitude buckets, so the point test only visits edges spanning the point longitude.
+     */
+    private void precalcBuckets(int bucketCount, double minLongitude, double maxLongitude) {
+        int polyCorners = latitudes.length;
+        double[] lon = normalizedLongitudes;
+        bucketOrigin = minLongitude;
+        bucketWidth = (maxLongitude - minLongitude) / bucketCount;
+
+        int[] start = new int[bucketCount + 1];
+        for (int i = 0, j = polyCorners - 1; i < polyCorners; j = i++) {
+            int last = getBucket(Math.max(lon[i], lon[j]), bucketCount);
+            for (int bucket = getBucket(Math.min(lon[i], lon[j]), bucketCount); bucket <= last; bucket++) {
+                start[bucket + 1] += 1;
+            }
+        }
+        for (int bucket = 0; bucket < bucketCount; bucket++) {
+            start[bucket + 1] += start[bucket];
+        }
+
+        int[] edges = new int[start[bucketCount]];
+        int[] position = new int[bucketCount];
+        System.arraycopy(start, 0, position, 0, bucketCount);
+        for (int i = 0, j = polyCorners - 1; i < polyCorners; j = i++) {
+            int last = getBucket(Math.max(lon[i], lon[j]), bucketCount);
+            for (int bucket = getBucket(Math.min(lon[i], lon[j]), bucketCount); bucket <= last; bucket++) {
+                edges[position[bucket]++] = i;
             }
         }
+
+        bucketStart = start;
+        bucketEdges = edges;
+    }
+
+    private int getBucket(double longitude, int bucketCount) {
+        int bucket = (int) ((longitude - bucketOrigin) / bucketWidth);
+        return Math.max(0, Math.min(bucket, bucketCount - 1));
     }
 
     private double normalizeLon(double lon) {
@@ -87,21 +153,31 @@ public class GeofencePolygon extends GeofenceGeometry {
         return lon;
     }
 
+    private boolean crossesEdge(int i, int j, double longitudeNorm, double latitude) {
+        double[] lon = normalizedLongitudes;
+        return (lon[i] < longitudeNorm && lon[j] >= longitudeNorm
+                || lon[j] < longitudeNorm && lon[i] >= longitudeNorm)
+                && longitudeNorm * multiple[i] + constant[i] < latitude;
+    }
+
     @Override
     public boolean containsPoint(double latitude, double longitude) {
 
-        int polyCorners = coordinates.size();
-        int i;
-        int j = polyCorners - 1;
+        int polyCorners = latitudes.length;
         double longitudeNorm = normalizeLon(longitude);
         boolean oddNodes = false;
 
-        for (i = 0; i < polyCorners; j = i++) {
-            if (normalizeLon(coordinates.get(i).getLon()) < longitudeNorm
-                    && normalizeLon(coordinates.get(j).getLon()) >= longitudeNorm
-                    || normalizeLon(coordinates.get(j).getLon()) < longitudeNorm
-                    && normalizeLon(coordinates.get(i).getLon()) >= longitudeNorm) {
-                oddNodes ^= longitudeNorm * multiple[i] + constant[i] < latitude;
+        if (bucketStart != null) {
+            int bucketCount = bucketStart.length - 1;
+            int bucket = getBucket(longitudeNorm, bucketCount);
+            for (int k = bucketStart[bucket]; k < bucketStart[bucket + 1]; k++) {
+                int i = bucketEdges[k];
+                int j = i > 0 ? i - 1 : polyCorners - 1;
+                oddNodes ^= crossesEdge(i, j, longitudeNorm, latitude);
+            }
+        } else {
+            for (int i = 0, j = polyCorners - 1; i < polyCorners; j = i++) {
+                oddNodes ^= crossesEdge(i, j, longitudeNorm, latitude);
             }
         }
         return oddNodes;
@@ -111,10 +187,10 @@ public class GeofencePolygon extends GeofenceGeometry {
     public String toWkt() {
         StringBuilder buf = new StringBuilder();
         buf.append("POLYGON ((");
-        for (Coordinate coordinate : coordinates) {
-            buf.append(String.valueOf(coordinate.getLat()));
+        for (int i = 0; i < latitudes.length; i++) {
+            buf.append(String.valueOf(latitudes[i]));
             buf.append(" ");
-            buf.append(String.valueOf(coordinate.getLon()));
+            buf.append(String.valueOf(longitudes[i]));
             buf.append(", ");
         }
         return buf.substring(0, buf.length() - 2) + "))";
@@ -122,12 +198,6 @@ public class GeofencePolygon extends GeofenceGeometry {
 
     @Override
     public void fromWkt(String wkt) throws ParseException {
-        if (coordinates == null) {
-            coordinates = new ArrayList<>();
-        } else {
-            coordinates.clear();
-        }
-
         if (!wkt.startsWith("POLYGON")) {
             throw new ParseException("Mismatch geometry type", 0);
         }
@@ -140,24 +210,26 @@ public class GeofencePolygon extends GeofenceGeometry {
             throw new ParseException("Not valid content", 0);
         }
 
-        for (String commaToken : commaTokens) {
-            String[] tokens = commaToken.trim().split("\\s");
+        double[] parsedLatitudes = new double[commaTokens.length];
+        double[] parsedLongitudes = new double[commaTokens.length];
+        for (int i = 0; i < commaTokens.length; i++) {
+            String[] tokens = commaTokens[i].trim().split("\\s");
             if (tokens.length != 2) {
-                throw new ParseException("Here must be two coordinates: " + commaToken, 0);
+                throw new ParseException("Here must be two coordinates: " + commaTokens[i], 0);
             }
-            Coordinate coordinate = new Coordinate();
             try {
-                coordinate.setLat(Double.parseDouble(tokens[0]));
+                parsedLatitudes[i] = Double.parseDouble(tokens[0]);
             } catch (NumberFormatException e) {
                 throw new ParseException(tokens[0] + " is not a double", 0);
             }
             try {
-                coordinate.setLon(Double.parseDouble(tokens[1]));
+                parsedLongitudes[i] = Double.parseDouble(tokens[1]);
             } catch (NumberFormatException e) {
                 throw new ParseException(tokens[1] + " is not a double", 0);
             }
-            coordinates.add(coordinate);
         }
+        latitudes = parsedLatitudes;
+        longitudes = parsedLongitudes;
         precalc();
     }
 
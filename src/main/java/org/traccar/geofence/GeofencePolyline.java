@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 Anton Tananaev (anton@traccar.org)
+ * Copyright 2016 - 2019 Anton Tananaev (anton@traccar.org)
  * Copyright 2016 Andrey Kunitsyn (andrey@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
@@ -31,7 +31,47 @@ public class GeofencePolyline extends GeofenceGeometry {
 
     public GeofencePolyline(String wkt, double distance) throws ParseException {
         fromWkt(wkt);
-        this.distance = distance;
+        setDistance(distance);
+    }
+
+    private void updateBounds() {
+        double minLatitude = 90;
+        double maxLatitude = -90;
+        double minLongitude = 180;
+        double maxLongitude = -180;
+        boolean hasNegative = false;
+        boolean hasPositive = false;
+        for (int i = 1; i < coordinates.size(); i++) {
+            Coordinate first = coordinates.get(i - 1);
+            Coordinate second = coordinates.get(i);
+            // any point within the distance from a segment is close enough to one of the segment ends
+            double radius = distance + DistanceCalculator.distance(
+                    first.getLat(), first.getLon(), second.getLat(), second.getLon()) / 2;
+            double latitudeDelta = DistanceCalculator.getLatitudeDelta(radius) + BOUNDS_MARGIN;
+            for (Coordinate coordinate : new Coordinate[] {first, second}) {
+                minLatitude = Math.min(minLatitude, coordinate.getLat() - latitudeDelta);
+                maxLatitude = Math.max(maxLatitude, coordinate.getLat() + latitudeDelta);
+                double longitudeDelta = DistanceCalculator.getLongitudeDelta(radius, coordinate.getLat());
+                if (longitudeDelta < 0) {
+                    hasNegative = true;
+                    hasPositive = true;
+                } else {
+                    longitudeDelta += BOUNDS_MARGIN;
+                    minLongitude = Math.min(minLongitude, coordinate.getLon() - longitudeDelta);
+                    maxLongitude = Math.max(maxLongitude, coordinate.getLon() + longitudeDelta);
+                }
+                if (coordinate.getLon() > 90) {
+                    hasPositive = true;
+                } else if (coordinate.getLon() < -90) {
+                    hasNegative = true;
+                }
+            }
+        }
+        if (hasPositive && hasNegative || minLongitude < -180 || maxLongitude > 180) {
+            setBounds(minLatitude, maxLatitude, -180, 180);
+        } else {
+            setBounds(minLatitude, maxLatitude, minLongitude, maxLongitude);
+        }
     }
 
     @Override
@@ -97,11 +137,12 @@ public class GeofencePolyline extends GeofenceGeometry {
             }
             coordinates.add(coordinate);
         }
-
+        updateBounds();
     }
 
     public void setDistance(double distance) {
         this.distance = distance;
+        updateBounds();
     }
 
 }
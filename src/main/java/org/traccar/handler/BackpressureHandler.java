@@ -0,0 +1,103 @@
+/*
+ * Copyright 2019 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.handler;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stops reading from the channel while the executor running the following handlers has too many pending tasks, and
+ * resumes once the executor catches up. Network threads never wait for the executor.
+ */
+public class BackpressureHandler extends ChannelInboundHandlerAdapter {
+
+    private static final long CHECK_INTERVAL = 10;
+
+    private static final AtomicLong PAUSE_COUNT = new AtomicLong();
+
+    private final int highWaterMark;
+    private final int lowWaterMark;
+    private final long checkInterval;
+
+    private SingleThreadEventExecutor executor;
+    private boolean paused;
+
+    public BackpressureHandler(int highWaterMark, int lowWaterMark) {
+        this(highWaterMark, lowWaterMark, CHECK_INTERVAL);
+    }
+
+    /**
+     * @param checkInterval delay in milliseconds between checks of the executor queue while paused
+     */
+    public BackpressureHandler(int highWaterMark, int lowWaterMark, long checkInterval) {
+        this.highWaterMark = highWaterMark;
+        this.lowWaterMark = lowWaterMark;
+        this.checkInterval = checkInterval;
+    }
+
+    public static long getPauseCount() {
+        return PAUSE_COUNT.get();
+    }
+
+    private SingleThreadEventExecutor findExecutor(ChannelHandlerContext ctx) {
+        boolean found = false;
+        for (Map.Entry<String, ChannelHandler> entry : ctx.pipeline()) {
+            if (found) {
+                ChannelHandlerContext next = ctx.pipeline().context(entry.getValue());
+                if (next != null && next.executor() != ctx.executor()) {
+                    EventExecutor result = next.executor();
+                    return result instanceof SingleThreadEventExecutor ? (SingleThreadEventExecutor) result : null;
+                }
+            } else if (entry.getValue() == this) {
+                found = true;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        ctx.fireChannelRead(msg);
+        if (executor == null) {
+            executor = findExecutor(ctx);
+        }
+        if (!paused && executor != null && executor.pendingTasks() >= highWaterMark) {
+            paused = true;
+            PAUSE_COUNT.incrementAndGet();
+            ctx.channel().config().setAutoRead(false);
+            scheduleCheck(ctx);
+        }
+    }
+
+    private void scheduleCheck(ChannelHandlerContext ctx) {
+        ctx.executor().schedule(() -> {
+            if (!ctx.channel().isActive() || executor.pendingTasks() <= lowWaterMark) {
+                paused = false;
+                ctx.channel().config().setAutoRead(true);
+            } else {
+                scheduleCheck(ctx);
+            }
+        }, checkInterval, TimeUnit.MILLISECONDS);
+    }
+
+}
@@ -16,19 +16,23 @@
  */
 package org.traccar.handler;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.util.Arrays;
-import java.util.Collection;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 import io.netty.channel.ChannelHandler;
+import org.apache.commons.jexl2.Expression;
+import org.apache.commons.jexl2.JexlContext;
 import org.apache.commons.jexl2.JexlEngine;
 import org.apache.commons.jexl2.JexlException;
-import org.apache.commons.jexl2.MapContext;
+import org.apache.commons.jexl2.Script;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.traccar.BaseDataHandler;
@@ -45,6 +49,147 @@ public class ComputedAttributesHandler extends BaseDataHandler {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ComputedAttributesHandler.class);
 
+    private static final Map<String, Function<Position, Object>> POSITION_FIELDS = new HashMap<>();
+
+    static {
+        POSITION_FIELDS.put("id", Position::getId);
+        POSITION_FIELDS.put("deviceId", Position::getDeviceId);
+        POSITION_FIELDS.put("device", Position::getDevice);
+        POSITION_FIELDS.put("type", Position::getType);
+        POSITION_FIELDS.put("protocol", Position::getProtocol);
+        POSITION_FIELDS.put("serverTime", Position::getServerTime);
+        POSITION_FIELDS.put("deviceTime", Position::getDeviceTime);
+        POSITION_FIELDS.put("fixTime", Position::getFixTime);
+        POSITION_FIELDS.put("outdated", Position::getOutdated);
+        POSITION_FIELDS.put("valid", Position::getValid);
+        POSITION_FIELDS.put("latitude", Position::getLatitude);
+        POSITION_FIELDS.put("longitude", Position::getLongitude);
+        POSITION_FIELDS.put("altitude", Position::getAltitude);
+        POSITION_FIELDS.put("speed", Position::getSpeed);
+        POSITION_FIELDS.put("course", Position::getCourse);
+        POSITION_FIELDS.put("address", Position::getAddress);
+        POSITION_FIELDS.put("accuracy", Position::getAccuracy);
+        POSITION_FIELDS.put("network", Position::getNetwork);
+    }
+
+    private static final class CompiledExpression {
+
+        private final String source;
+        private final Expression expression;
+
+        private CompiledExpression(String source, Expression expression) {
+            this.source = source;
+            this.expression = expression;
+        }
+
+    }
+
+    /**
+     * Attributes linked to a device, ordered so that attributes used in other expressions are computed first.
+     */
+    private static final class EvaluationPlan {
+
+        private final Set<Long> attributeIds;
+        private final List<Attribute> attributes;
+        private final String[] expressions;
+        private final String[] targets;
+        private final String[] types;
+
+        private EvaluationPlan(Set<Long> attributeIds, List<Attribute> attributes) {
+            this.attributeIds = attributeIds;
+            this.attributes = attributes;
+            expressions = new String[attributes.size()];
+            targets = new String[attributes.size()];
+            types = new String[attributes.size()];
+            for (int i = 0; i < attributes.size(); i++) {
+                expressions[i] = attributes.get(i).getExpression();
+                targets[i] = attributes.get(i).getAttribute();
+                types[i] = attributes.get(i).getType();
+            }
+        }
+
+        /**
+         * Compares plan with attributes currently cached by the manager, which replaces objects on update.
+         */
+        private boolean isValid(Set<Long> currentAttributeIds, AttributesManager attributesManager) {
+            if (!attributeIds.equals(currentAttributeIds)) {
+                return false;
+            }
+            for (int i = 0; i < attributes.size(); i++) {
+                Attribute current = attributesManager.getById(attributes.get(i).getId());
+                if (current == null
+                        || !Objects.equals(expressions[i], current.getExpression())
+                        || !Objects.equals(targets[i], current.getAttribute())
+                        || !Objects.equals(types[i], current.getType())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+    }
+
+    /**
+     * Exposes position fields, position attributes and optionally device attributes to expressions. Values are read
+     * only when requested and assignments stay local to the context.
+     */
+    private final class PositionContext implements JexlContext {
+
+        private final Position position;
+        private Map<String, Object> variables;
+        private Map<String, Object> deviceAttributes;
+
+        private PositionContext(Position position) {
+            this.position = position;
+        }
+
+        private Map<String, Object> getDeviceAttributes() {
+            if (deviceAttributes == null) {
+                Device device = includeDeviceAttributes ? identityManager.getById(position.getDeviceId()) : null;
+                deviceAttributes = device != null ? device.getAttributes() : Collections.emptyMap();
+            }
+            return deviceAttributes;
+        }
+
+        private void reset() {
+            if (variables != null) {
+                variables.clear();
+            }
+        }
+
+        @Override
+        public Object get(String name) {
+            if (variables != null && variables.containsKey(name)) {
+                return variables.get(name);
+            }
+            Function<Position, Object> field = POSITION_FIELDS.get(name);
+            if (field != null) {
+                return field.apply(position);
+            }
+            if (position.getAttributes().containsKey(name)) {
+                return position.getAttributes().get(name);
+            }
+            return getDeviceAttributes().get(name);
+        }
+
+        @Override
+        public void set(String name, Object value) {
+            if (variables == null) {
+                variables = new HashMap<>();
+            }
+            variables.put(name, value);
+        }
+
+        @Override
+        public boolean has(String name) {
+            return variables != null && variables.containsKey(name)
+                    || POSITION_FIELDS.containsKey(name)
+                    || position.getAttributes().containsKey(name)
+                    || getDeviceAttributes().containsKey(name);
+        }
+
+    }
+
     private final IdentityManager identityManager;
     private final AttributesManager attributesManager;
 
@@ -52,6 +197,9 @@ public class ComputedAttributesHandler extends BaseDataHandler {
 
     private final boolean includeDeviceAttributes;
 
+    private final Map<Long, CompiledExpression> expressions = new ConcurrentHashMap<>();
+    private final Map<Long, EvaluationPlan> plans = new ConcurrentHashMap<>();
+
     public ComputedAttributesHandler(
             Config config, IdentityManager identityManager, AttributesManager attributesManager) {
         this.identityManager = identityManager;
@@ -62,55 +210,119 @@ public class ComputedAttributesHandler extends BaseDataHandler {
         includeDeviceAttributes = config.getBoolean(Keys.PROCESSING_COMPUTED_ATTRIBUTES_DEVICE_ATTRIBUTES);
     }
 
-    private MapContext prepareContext(Position position) {
-        MapContext result = new MapContext();
-        if (includeDeviceAttributes) {
-            Device device = identityManager.getById(position.getDeviceId());
-            if (device != null) {
-                for (Object key : device.getAttributes().keySet()) {
-                    result.set((String) key, device.getAttributes().get(key));
+    /**
+     * Returns parsed expression, reusing the cached one for saved attributes until their expression changes.
+     */
+    private Expression getExpression(Attribute attribute) throws JexlException {
+        String source = attribute.getExpression();
+        if (attribute.getId() == 0) {
+            return engine.createExpression(source);
+        }
+        CompiledExpression compiled = expressions.get(attribute.getId());
+        if (compiled == null || !compiled.source.equals(source)) {
+            compiled = new CompiledExpression(source, engine.createExpression(source));
+            expressions.put(attribute.getId(), compiled);
+        }
+        return compiled.expression;
+    }
+
+    /**
+     * @deprecated logic needs to be extracted to be used in API resource
+     */
+    @Deprecated
+    public Object computeAttribute(Attribute attribute, Position position) throws JexlException {
+        return getExpression(attribute).evaluate(new PositionContext(position));
+    }
+
+    private Set<String> getVariables(Attribute attribute) {
+        Set<String> result = new HashSet<>();
+        try {
+            Expression expression = getExpression(attribute);
+            if (expression instanceof Script) {
+                for (List<String> variable : engine.getVariables((Script) expression)) {
+                    result.add(variable.get(0));
                 }
             }
+        } catch (JexlException error) {
+            LOGGER.warn("Attribute parsing error", error);
         }
-        Set<Method> methods = new HashSet<>(Arrays.asList(position.getClass().getMethods()));
-        methods.removeAll(Arrays.asList(Object.class.getMethods()));
-        for (Method method : methods) {
-            if (method.getName().startsWith("get") && method.getParameterTypes().length == 0) {
-                String name = Character.toLowerCase(method.getName().charAt(3)) + method.getName().substring(4);
+        return result;
+    }
 
-                try {
-                    if (!method.getReturnType().equals(Map.class)) {
-                        result.set(name, method.invoke(position));
-                    } else {
-                        for (Object key : ((Map) method.invoke(position)).keySet()) {
-                            result.set((String) key, ((Map) method.invoke(position)).get(key));
-                        }
+    /**
+     * Orders attributes so that each one is computed after attributes producing the values it uses. Attributes in a
+     * dependency cycle keep their original order.
+     */
+    private List<Attribute> sortAttributes(List<Attribute> attributes) {
+        List<Set<String>> variables = new ArrayList<>();
+        for (Attribute attribute : attributes) {
+            variables.add(getVariables(attribute));
+        }
+        int[] dependencies = new int[attributes.size()];
+        for (int i = 0; i < attributes.size(); i++) {
+            for (int j = 0; j < attributes.size(); j++) {
+                if (i != j && variables.get(i).contains(attributes.get(j).getAttribute())) {
+                    dependencies[i] += 1;
+                }
+            }
+        }
+        List<Attribute> result = new ArrayList<>();
+        boolean[] added = new boolean[attributes.size()];
+        while (result.size() < attributes.size()) {
+            int next = -1;
+            for (int i = 0; i < attributes.size() && next < 0; i++) {
+                if (!added[i] && dependencies[i] == 0) {
+                    next = i;
+                }
+            }
+            if (next < 0) {
+                for (int i = 0; i < attributes.size() && next < 0; i++) {
+                    if (!added[i]) {
+                        next = i;
                     }
-                } catch (IllegalAccessException | InvocationTargetException error) {
-                    LOGGER.warn("Attribute reflection error", error);
+                }
+            }
+            added[next] = true;
+            result.add(attributes.get(next));
+            for (int i = 0; i < attributes.size(); i++) {
+                if (!added[i] && i != next && variables.get(i).contains(attributes.get(next).getAttribute())) {
+                    dependencies[i] -= 1;
                 }
             }
         }
         return result;
     }
 
-    /**
-     * @deprecated logic needs to be extracted to be used in API resource
-     */
-    @Deprecated
-    public Object computeAttribute(Attribute attribute, Position position) throws JexlException {
-        return engine.createExpression(attribute.getExpression()).evaluate(prepareContext(position));
+    private List<Attribute> getPlan(long deviceId) {
+        Set<Long> attributeIds = attributesManager.getAllDeviceItems(deviceId);
+        if (attributeIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        EvaluationPlan plan = plans.get(deviceId);
+        if (plan == null || !plan.isValid(attributeIds, attributesManager)) {
+            List<Attribute> attributes = new ArrayList<>();
+            for (long attributeId : attributeIds) {
+                Attribute attribute = attributesManager.getById(attributeId);
+                if (attribute != null) {
+                    attributes.add(attribute);
+                }
+            }
+            plan = new EvaluationPlan(attributeIds, sortAttributes(attributes));
+            plans.put(deviceId, plan);
+        }
+        return plan.attributes;
     }
 
     @Override
     protected Position handlePosition(Position position) {
-        Collection<Attribute> attributes = attributesManager.getItems(
-                attributesManager.getAllDeviceItems(position.getDeviceId()));
+        List<Attribute> attributes = getPlan(position.getDeviceId());
+        PositionContext context = new PositionContext(position);
         for (Attribute attribute : attributes) {
             if (attribute.getAttribute() != null) {
                 Object result = null;
                 try {
-                    result = computeAttribute(attribute, position);
+                    context.reset();
+                    result = getExpression(attribute).evaluate(context);
                 } catch (JexlException error) {
                     LOGGER.warn("Attribute computation error", error);
                 }
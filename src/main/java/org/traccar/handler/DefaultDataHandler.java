@@ -16,21 +16,78 @@
 package org.traccar.handler;
 
 import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.util.AttributeKey;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.traccar.BaseDataHandler;
 import org.traccar.database.DataManager;
+import org.traccar.database.PositionWriter;
 import org.traccar.model.Position;
+import org.traccar.reports.RollupManager;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
 
 @ChannelHandler.Sharable
 public class DefaultDataHandler extends BaseDataHandler {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DefaultDataHandler.class);
 
+    private static final long RETRY_INTERVAL = 10;
+
+    private static final AttributeKey<Queue<Position>> PENDING = AttributeKey.newInstance("pendingPositions");
+
     private final DataManager dataManager;
+    private final PositionWriter positionWriter;
+    private final RollupManager rollupManager;
 
-    public DefaultDataHandler(DataManager dataManager) {
+    public DefaultDataHandler(DataManager dataManager, PositionWriter positionWriter, RollupManager rollupManager) {
         this.dataManager = dataManager;
+        this.positionWriter = positionWriter;
+        this.rollupManager = rollupManager;
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof Position && positionWriter != null) {
+            Queue<Position> pending = ctx.channel().attr(PENDING).get();
+            if (pending != null) {
+                pending.add((Position) msg);
+            } else if (!write(ctx, (Position) msg)) {
+                pending = new ArrayDeque<>();
+                pending.add((Position) msg);
+                ctx.channel().attr(PENDING).set(pending);
+                ctx.channel().config().setAutoRead(false);
+                scheduleRetry(ctx, pending);
+            }
+        } else {
+            super.channelRead(ctx, msg);
+        }
+    }
+
+    private boolean write(ChannelHandlerContext ctx, Position position) {
+        return positionWriter.write(position, (written, stored) -> {
+            if (stored && rollupManager != null) {
+                rollupManager.invalidate(written);
+            }
+            ctx.executor().execute(() -> ctx.fireChannelRead(written));
+        });
+    }
+
+    private void scheduleRetry(ChannelHandlerContext ctx, Queue<Position> pending) {
+        ctx.executor().schedule(() -> {
+            while (!pending.isEmpty() && write(ctx, pending.peek())) {
+                pending.remove();
+            }
+            if (pending.isEmpty()) {
+                ctx.channel().attr(PENDING).set(null);
+                ctx.channel().config().setAutoRead(true);
+            } else {
+                scheduleRetry(ctx, pending);
+            }
+        }, RETRY_INTERVAL, TimeUnit.MILLISECONDS);
     }
 
     @Override
@@ -38,6 +95,9 @@ public class DefaultDataHandler extends BaseDataHandler {
 
         try {
             dataManager.addObject(position);
+            if (rollupManager != null) {
+                rollupManager.invalidate(position);
+            }
         } catch (Exception error) {
             LOGGER.warn("Failed to store position", error);
         }
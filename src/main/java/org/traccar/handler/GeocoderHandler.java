@@ -36,6 +36,7 @@ public class GeocoderHandler extends ChannelInboundHandlerAdapter {
     private final Geocoder geocoder;
     private final IdentityManager identityManager;
     private final StatisticsManager statisticsManager;
+    private final OrderedDelivery delivery;
     private final boolean ignorePositions;
     private final boolean processInvalidPositions;
     private final int geocoderReuseDistance;
@@ -48,6 +49,8 @@ public class GeocoderHandler extends ChannelInboundHandlerAdapter {
         ignorePositions = Context.getConfig().getBoolean(Keys.GEOCODER_IGNORE_POSITIONS);
         processInvalidPositions = config.getBoolean(Keys.GEOCODER_PROCESS_INVALID_POSITIONS);
         geocoderReuseDistance = config.getInteger(Keys.GEOCODER_REUSE_DISTANCE, 0);
+        delivery = new OrderedDelivery(GeocoderHandler.class,
+                config.getInteger(Keys.SERVER_PENDING_LIMIT, 1000), config.getLong(Keys.SERVER_PENDING_TIMEOUT, 10000));
     }
 
     @Override
@@ -60,11 +63,17 @@ public class GeocoderHandler extends ChannelInboundHandlerAdapter {
                     if (lastPosition != null && lastPosition.getAddress() != null
                             && position.getDouble(Position.KEY_DISTANCE) <= geocoderReuseDistance) {
                         position.setAddress(lastPosition.getAddress());
-                        ctx.fireChannelRead(position);
+                        delivery.fire(ctx, position);
                         return;
                     }
                 }
 
+                final OrderedDelivery.Slot slot = delivery.reserve(ctx, position);
+                if (slot == null) {
+                    delivery.fire(ctx, position);
+                    return;
+                }
+
                 if (statisticsManager != null) {
                     statisticsManager.registerGeocoderRequest();
                 }
@@ -73,21 +82,20 @@ public class GeocoderHandler extends ChannelInboundHandlerAdapter {
                         new Geocoder.ReverseGeocoderCallback() {
                     @Override
                     public void onSuccess(String address) {
-                        position.setAddress(address);
-                        ctx.fireChannelRead(position);
+                        slot.complete(() -> position.setAddress(address));
                     }
 
                     @Override
                     public void onFailure(Throwable e) {
                         LOGGER.warn("Geocoding failed", e);
-                        ctx.fireChannelRead(position);
+                        slot.complete();
                     }
                 });
             } else {
-                ctx.fireChannelRead(position);
+                delivery.fire(ctx, position);
             }
         } else {
-            ctx.fireChannelRead(message);
+            delivery.fire(ctx, message);
         }
     }
 
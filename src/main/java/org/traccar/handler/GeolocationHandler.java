@@ -33,6 +33,7 @@ public class GeolocationHandler extends ChannelInboundHandlerAdapter {
 
     private final GeolocationProvider geolocationProvider;
     private final StatisticsManager statisticsManager;
+    private final OrderedDelivery delivery;
     private final boolean processInvalidPositions;
 
     public GeolocationHandler(
@@ -40,6 +41,8 @@ public class GeolocationHandler extends ChannelInboundHandlerAdapter {
         this.geolocationProvider = geolocationProvider;
         this.statisticsManager = statisticsManager;
         this.processInvalidPositions = config.getBoolean(Keys.GEOLOCATION_PROCESS_INVALID_POSITIONS);
+        delivery = new OrderedDelivery(GeolocationHandler.class,
+                config.getInteger(Keys.SERVER_PENDING_LIMIT, 1000), config.getLong(Keys.SERVER_PENDING_TIMEOUT, 10000));
     }
 
     @Override
@@ -48,6 +51,12 @@ public class GeolocationHandler extends ChannelInboundHandlerAdapter {
             final Position position = (Position) message;
             if ((position.getOutdated() || processInvalidPositions && !position.getValid())
                     && position.getNetwork() != null) {
+                final OrderedDelivery.Slot slot = delivery.reserve(ctx, position);
+                if (slot == null) {
+                    delivery.fire(ctx, position);
+                    return;
+                }
+
                 if (statisticsManager != null) {
                     statisticsManager.registerGeolocationRequest();
                 }
@@ -56,29 +65,30 @@ public class GeolocationHandler extends ChannelInboundHandlerAdapter {
                         new GeolocationProvider.LocationProviderCallback() {
                     @Override
                     public void onSuccess(double latitude, double longitude, double accuracy) {
-                        position.set(Position.KEY_APPROXIMATE, true);
-                        position.setValid(true);
-                        position.setFixTime(position.getDeviceTime());
-                        position.setLatitude(latitude);
-                        position.setLongitude(longitude);
-                        position.setAccuracy(accuracy);
-                        position.setAltitude(0);
-                        position.setSpeed(0);
-                        position.setCourse(0);
-                        ctx.fireChannelRead(position);
+                        slot.complete(() -> {
+                            position.set(Position.KEY_APPROXIMATE, true);
+                            position.setValid(true);
+                            position.setFixTime(position.getDeviceTime());
+                            position.setLatitude(latitude);
+                            position.setLongitude(longitude);
+                            position.setAccuracy(accuracy);
+                            position.setAltitude(0);
+                            position.setSpeed(0);
+                            position.setCourse(0);
+                        });
                     }
 
                     @Override
                     public void onFailure(Throwable e) {
                         LOGGER.warn("Geolocation network error", e);
-                        ctx.fireChannelRead(position);
+                        slot.complete();
                     }
                 });
             } else {
-                ctx.fireChannelRead(position);
+                delivery.fire(ctx, position);
             }
         } else {
-            ctx.fireChannelRead(message);
+            delivery.fire(ctx, message);
         }
     }
 
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2019 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.handler;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
+import org.traccar.model.Position;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Passes messages of each device to the next handler in the order they were received, even when some of them are
+ * completed asynchronously on other threads. Messages of other devices sharing the channel are not held back. Messages
+ * are always forwarded from the channel event loop.
+ */
+public class OrderedDelivery {
+
+    private final AttributeKey<Pending> key;
+    private final int limit;
+    private final long timeout;
+
+    /**
+     * @param limit maximum number of messages reserved at the same time for one channel
+     * @param timeout time in milliseconds after which a reserved message is forwarded without waiting for completion
+     */
+    public OrderedDelivery(Class<?> owner, int limit, long timeout) {
+        key = AttributeKey.valueOf(owner, "pendingMessages");
+        this.limit = limit;
+        this.timeout = timeout;
+    }
+
+    private static final class Pending {
+
+        private final Map<Long, Queue<Slot>> queues = new HashMap<>();
+        private int reserved;
+
+    }
+
+    public final class Slot {
+
+        private final ChannelHandlerContext ctx;
+        private final long deviceId;
+        private final Object message;
+        private final boolean reserved;
+        private boolean completed;
+
+        private Slot(ChannelHandlerContext ctx, long deviceId, Object message, boolean reserved) {
+            this.ctx = ctx;
+            this.deviceId = deviceId;
+            this.message = message;
+            this.reserved = reserved;
+        }
+
+        /**
+         * Marks message as ready, can be called from any thread.
+         */
+        public void complete() {
+            complete(null);
+        }
+
+        /**
+         * Applies update on the channel event loop and marks message as ready, can be called from any thread. The
+         * update is skipped if the message has already been forwarded because of the timeout.
+         */
+        public void complete(Runnable update) {
+            if (ctx.executor().inEventLoop()) {
+                finish(update);
+            } else {
+                ctx.executor().execute(() -> finish(update));
+            }
+        }
+
+        private void finish(Runnable update) {
+            if (!completed) {
+                if (update != null) {
+                    update.run();
+                }
+                completed = true;
+                drain(ctx, deviceId);
+            }
+        }
+
+    }
+
+    private static long getDeviceId(Object message) {
+        return message instanceof Position ? ((Position) message).getDeviceId() : 0;
+    }
+
+    private Pending getPending(ChannelHandlerContext ctx) {
+        Attribute<Pending> attribute = ctx.channel().attr(key);
+        Pending pending = attribute.get();
+        if (pending == null) {
+            pending = new Pending();
+            attribute.set(pending);
+        }
+        return pending;
+    }
+
+    private Slot add(ChannelHandlerContext ctx, Object message, boolean reserved) {
+        long deviceId = getDeviceId(message);
+        Slot slot = new Slot(ctx, deviceId, message, reserved);
+        Pending pending = getPending(ctx);
+        pending.queues.computeIfAbsent(deviceId, k -> new ArrayDeque<>()).add(slot);
+        if (reserved) {
+            pending.reserved += 1;
+        }
+        return slot;
+    }
+
+    /**
+     * Reserves place for a message that will be completed later. Returns null if the channel already has the maximum
+     * number of reserved messages, in which case the message should be passed to {@link #fire} unprocessed. Must be
+     * called from the channel event loop.
+     */
+    public Slot reserve(ChannelHandlerContext ctx, Object message) {
+        if (getPending(ctx).reserved >= limit) {
+            return null;
+        }
+        Slot slot = add(ctx, message, true);
+        if (timeout > 0) {
+            ctx.executor().schedule(() -> slot.finish(null), timeout, TimeUnit.MILLISECONDS);
+        }
+        return slot;
+    }
+
+    /**
+     * Forwards message that does not need any processing once all earlier messages of the same device are forwarded.
+     * Must be called from the channel event loop.
+     */
+    public void fire(ChannelHandlerContext ctx, Object message) {
+        Pending pending = ctx.channel().attr(key).get();
+        if (pending == null || !pending.queues.containsKey(getDeviceId(message))) {
+            ctx.fireChannelRead(message);
+        } else {
+            add(ctx, message, false).finish(null);
+        }
+    }
+
+    private void drain(ChannelHandlerContext ctx, long deviceId) {
+        Pending pending = getPending(ctx);
+        Queue<Slot> queue = pending.queues.get(deviceId);
+        while (queue != null && !queue.isEmpty() && queue.peek().completed) {
+            Slot slot = queue.poll();
+            if (slot.reserved) {
+                pending.reserved -= 1;
+            }
+            ctx.fireChannelRead(slot.message);
+        }
+        if (queue != null && queue.isEmpty()) {
+            pending.queues.remove(deviceId);
+        }
+    }
+
+    public int getPendingCount(ChannelHandlerContext ctx) {
+        Pending pending = ctx.channel().attr(key).get();
+        return pending != null ? pending.reserved : 0;
+    }
+
+}
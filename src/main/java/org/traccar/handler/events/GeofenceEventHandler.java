@@ -55,15 +55,16 @@ public class GeofenceEventHandler extends BaseEventHandler {
 
         List<Long> currentGeofences = geofenceManager.getCurrentDeviceGeofences(position);
         List<Long> oldGeofences = new ArrayList<>();
-        if (device.getGeofenceIds() != null) {
-            oldGeofences.addAll(device.getGeofenceIds());
+        synchronized (device) {
+            if (device.getGeofenceIds() != null) {
+                oldGeofences.addAll(device.getGeofenceIds());
+            }
+            device.setGeofenceIds(currentGeofences);
         }
         List<Long> newGeofences = new ArrayList<>(currentGeofences);
         newGeofences.removeAll(oldGeofences);
         oldGeofences.removeAll(currentGeofences);
 
-        device.setGeofenceIds(currentGeofences);
-
         Map<Event, Position> events = new HashMap<>();
         for (long geofenceId : oldGeofences) {
             long calendarId = geofenceManager.getById(geofenceId).getCalendarId();
@@ -1,5 +1,5 @@
 /*
- * Copyright 2014 - 2016 Anton Tananaev (anton@traccar.org)
+ * Copyright 2014 - 2019 Anton Tananaev (anton@traccar.org)
  * Copyright 2016 Andrey Kunitsyn (andrey@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
@@ -34,6 +34,26 @@ public final class DistanceCalculator {
         return d * 1000;
     }
 
+    /**
+     * Returns latitude difference in degrees covering given distance in meters.
+     */
+    public static double getLatitudeDelta(double distance) {
+        return distance / (EQUATORIAL_EARTH_RADIUS * 1000) / DEG_TO_RAD;
+    }
+
+    /**
+     * Returns longitude difference in degrees covering given distance in meters at given latitude, or a negative value
+     * if the distance reaches a pole and all longitudes are covered.
+     */
+    public static double getLongitudeDelta(double distance, double latitude) {
+        double angle = Math.sin(distance / (EQUATORIAL_EARTH_RADIUS * 1000));
+        double cos = Math.cos(latitude * DEG_TO_RAD);
+        if (distance / (EQUATORIAL_EARTH_RADIUS * 1000) >= Math.PI / 2 || angle >= cos) {
+            return -1;
+        }
+        return Math.asin(angle / cos) / DEG_TO_RAD;
+    }
+
     public static double distanceToLine(
             double pointLat, double pointLon, double lat1, double lon1, double lat2, double lon2) {
         double d0 = distance(pointLat, pointLon, lat1, lon1);
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2019 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.helper;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable set of identifiers stored as a sorted primitive array. Lookups use binary search and the set can be shared
+ * between threads without synchronization.
+ */
+public final class LongSet extends AbstractSet<Long> {
+
+    public static final LongSet EMPTY = new LongSet(new long[0]);
+
+    private final long[] values;
+
+    private LongSet(long[] values) {
+        this.values = values;
+    }
+
+    public static LongSet of(long... values) {
+        return new Builder().addAll(values).build();
+    }
+
+    /**
+     * Returns union of two sets, reusing one of them when the other one is empty.
+     */
+    public static LongSet union(LongSet first, LongSet second) {
+        if (first.isEmpty()) {
+            return second;
+        } else if (second.isEmpty()) {
+            return first;
+        }
+        long[] result = new long[first.values.length + second.values.length];
+        int i = 0;
+        int j = 0;
+        int size = 0;
+        while (i < first.values.length || j < second.values.length) {
+            long value;
+            if (j >= second.values.length || i < first.values.length && first.values[i] < second.values[j]) {
+                value = first.values[i++];
+            } else if (i >= first.values.length || second.values[j] < first.values[i]) {
+                value = second.values[j++];
+            } else {
+                value = first.values[i++];
+                j++;
+            }
+            result[size++] = value;
+        }
+        if (size == first.values.length) {
+            return first;
+        } else if (size == second.values.length) {
+            return second;
+        }
+        return new LongSet(Arrays.copyOf(result, size));
+    }
+
+    public boolean contains(long value) {
+        return Arrays.binarySearch(values, value) >= 0;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Long && contains(((Long) o).longValue());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof LongSet) {
+            return Arrays.equals(values, ((LongSet) o).values);
+        }
+        return super.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return super.hashCode();
+    }
+
+    @Override
+    public int size() {
+        return values.length;
+    }
+
+    @Override
+    public Iterator<Long> iterator() {
+        return new Iterator<Long>() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return index < values.length;
+            }
+
+            @Override
+            public Long next() {
+                if (index >= values.length) {
+                    throw new NoSuchElementException();
+                }
+                return values[index++];
+            }
+        };
+    }
+
+    public static final class Builder {
+
+        private long[] values = new long[8];
+        private int size;
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > values.length) {
+                values = Arrays.copyOf(values, Math.max(capacity, values.length * 2));
+            }
+        }
+
+        public Builder add(long value) {
+            ensureCapacity(size + 1);
+            values[size++] = value;
+            return this;
+        }
+
+        public Builder addAll(long... newValues) {
+            ensureCapacity(size + newValues.length);
+            System.arraycopy(newValues, 0, values, size, newValues.length);
+            size += newValues.length;
+            return this;
+        }
+
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        public LongSet build() {
+            if (size == 0) {
+                return EMPTY;
+            }
+            long[] result = Arrays.copyOf(values, size);
+            Arrays.sort(result);
+            int unique = 1;
+            for (int i = 1; i < result.length; i++) {
+                if (result[i] != result[unique - 1]) {
+                    result[unique++] = result[i];
+                }
+            }
+            return new LongSet(unique < result.length ? Arrays.copyOf(result, unique) : result);
+        }
+
+    }
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2016 Anton Tananaev (anton@traccar.org)
+ * Copyright 2016 - 2019 Anton Tananaev (anton@traccar.org)
  * Copyright 2016 Andrey Kunitsyn (andrey@traccar.org)
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
@@ -18,8 +18,14 @@ package org.traccar.model;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
@@ -30,12 +36,55 @@ import net.fortuna.ical4j.filter.PeriodRule;
 import net.fortuna.ical4j.model.DateTime;
 import net.fortuna.ical4j.model.Dur;
 import net.fortuna.ical4j.model.Period;
+import net.fortuna.ical4j.model.PeriodList;
+import net.fortuna.ical4j.model.component.VEvent;
 import net.fortuna.ical4j.model.component.CalendarComponent;
 import org.apache.commons.collections4.Predicate;
+import org.traccar.GlobalTimer;
 import org.traccar.database.QueryIgnore;
 
 public class Calendar extends ExtendedModel {
 
+    public static final long HORIZON_BEFORE = TimeUnit.DAYS.toMillis(7);
+    public static final long HORIZON_AFTER = TimeUnit.DAYS.toMillis(30);
+
+    /**
+     * Sorted, non-overlapping occurrence intervals of all events within a time horizon.
+     */
+    private static final class OccurrenceIndex {
+
+        private final long horizonStart;
+        private final long horizonEnd;
+        private final long[] starts;
+        private final long[] ends;
+
+        private OccurrenceIndex(long horizonStart, long horizonEnd, long[] starts, long[] ends) {
+            this.horizonStart = horizonStart;
+            this.horizonEnd = horizonEnd;
+            this.starts = starts;
+            this.ends = ends;
+        }
+
+        private boolean covers(long time) {
+            return time > horizonStart && time < horizonEnd;
+        }
+
+        /**
+         * Matches ical4j behaviour, which compares whole seconds and excludes occurrence start.
+         */
+        private boolean contains(long time) {
+            long seconds = time - Math.floorMod(time, 1000L);
+            int index = Arrays.binarySearch(starts, seconds);
+            if (index < 0) {
+                index = -index - 2;
+            } else {
+                index -= 1;
+            }
+            return index >= 0 && seconds <= ends[index];
+        }
+
+    }
+
     private String name;
 
     public String getName() {
@@ -55,6 +104,7 @@ public class Calendar extends ExtendedModel {
     public void setData(byte[] data) throws IOException, ParserException {
         CalendarBuilder builder = new CalendarBuilder();
         calendar = builder.build(new ByteArrayInputStream(data));
+        occurrences = null;
         this.data = data.clone();
     }
 
@@ -66,7 +116,65 @@ public class Calendar extends ExtendedModel {
         return calendar;
     }
 
+    private volatile OccurrenceIndex occurrences;
+
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    /**
+     * Expands event occurrences around given time, so that moment checks within the horizon only need a binary search.
+     */
+    public void updateOccurrences(Date time) {
+        net.fortuna.ical4j.model.Calendar currentCalendar = calendar;
+        if (currentCalendar == null) {
+            occurrences = null;
+            return;
+        }
+        long horizonStart = time.getTime() - HORIZON_BEFORE;
+        long horizonEnd = time.getTime() + HORIZON_AFTER;
+        Period horizon = new Period(new DateTime(horizonStart), new DateTime(horizonEnd));
+        List<long[]> intervals = new ArrayList<>();
+        for (CalendarComponent component : currentCalendar.getComponents(CalendarComponent.VEVENT)) {
+            PeriodList periods = ((VEvent) component).calculateRecurrenceSet(horizon);
+            for (Period period : periods) {
+                intervals.add(new long[] {period.getStart().getTime(), period.getEnd().getTime()});
+            }
+        }
+        intervals.sort(Comparator.comparingLong(interval -> interval[0]));
+        long[] starts = new long[intervals.size()];
+        long[] ends = new long[intervals.size()];
+        int count = 0;
+        for (long[] interval : intervals) {
+            if (count > 0 && interval[0] <= ends[count - 1]) {
+                ends[count - 1] = Math.max(ends[count - 1], interval[1]);
+            } else {
+                starts[count] = interval[0];
+                ends[count] = interval[1];
+                count += 1;
+            }
+        }
+        occurrences = new OccurrenceIndex(
+                horizonStart, horizonEnd, Arrays.copyOf(starts, count), Arrays.copyOf(ends, count));
+    }
+
     public boolean checkMoment(Date date) {
+        long time = date.getTime();
+        OccurrenceIndex index = occurrences;
+        if (index == null || !index.covers(time)) {
+            long currentTime = System.currentTimeMillis();
+            if (calendar != null && time > currentTime - HORIZON_BEFORE && time < currentTime + HORIZON_AFTER
+                    && rebuilding.compareAndSet(false, true)) {
+                GlobalTimer.getTimer().newTimeout(timeout -> {
+                    try {
+                        updateOccurrences(new Date());
+                    } finally {
+                        rebuilding.set(false);
+                    }
+                }, 0, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (index != null && index.covers(time)) {
+            return index.contains(time);
+        }
         if (calendar != null) {
             Period period = new Period(new DateTime(date), new Dur(0, 0, 0, 0));
             Predicate<CalendarComponent> periodRule = new PeriodRule<>(period);
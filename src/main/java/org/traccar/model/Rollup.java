@@ -0,0 +1,129 @@
+/*
+ * Copyright 2019 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.model;
+
+import java.util.Date;
+
+/**
+ * Aggregated positions of one device for one UTC day. Attributes contain values of the first and the last position
+ * needed for distance, fuel and engine hours calculation.
+ */
+public class Rollup extends ExtendedModel {
+
+    public static final String KEY_FIRST = "first";
+    public static final String KEY_LAST = "last";
+
+    private long deviceId;
+
+    public long getDeviceId() {
+        return deviceId;
+    }
+
+    public void setDeviceId(long deviceId) {
+        this.deviceId = deviceId;
+    }
+
+    private Date startTime;
+
+    public Date getStartTime() {
+        return startTime;
+    }
+
+    public void setStartTime(Date startTime) {
+        this.startTime = startTime;
+    }
+
+    private long positionCount;
+
+    public long getPositionCount() {
+        return positionCount;
+    }
+
+    public void setPositionCount(long positionCount) {
+        this.positionCount = positionCount;
+    }
+
+    private double speedSum;
+
+    public double getSpeedSum() {
+        return speedSum;
+    }
+
+    public void setSpeedSum(double speedSum) {
+        this.speedSum = speedSum;
+    }
+
+    private double maxSpeed;
+
+    public double getMaxSpeed() {
+        return maxSpeed;
+    }
+
+    public void setMaxSpeed(double maxSpeed) {
+        this.maxSpeed = maxSpeed;
+    }
+
+    private Date firstTime;
+
+    public Date getFirstTime() {
+        return firstTime;
+    }
+
+    public void setFirstTime(Date firstTime) {
+        this.firstTime = firstTime;
+    }
+
+    private Date lastTime;
+
+    public Date getLastTime() {
+        return lastTime;
+    }
+
+    public void setLastTime(Date lastTime) {
+        this.lastTime = lastTime;
+    }
+
+    private boolean firstIgnition;
+
+    public boolean getFirstIgnition() {
+        return firstIgnition;
+    }
+
+    public void setFirstIgnition(boolean firstIgnition) {
+        this.firstIgnition = firstIgnition;
+    }
+
+    private boolean lastIgnition;
+
+    public boolean getLastIgnition() {
+        return lastIgnition;
+    }
+
+    public void setLastIgnition(boolean lastIgnition) {
+        this.lastIgnition = lastIgnition;
+    }
+
+    private long ignitionTime;
+
+    public long getIgnitionTime() {
+        return ignitionTime;
+    }
+
+    public void setIgnitionTime(long ignitionTime) {
+        this.ignitionTime = ignitionTime;
+    }
+
+}
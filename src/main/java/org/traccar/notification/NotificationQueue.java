@@ -0,0 +1,166 @@
+/*
+ * Copyright 2019 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.notification;
+
+import com.sun.mail.util.MailConnectException;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.traccar.GlobalTimer;
+
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.UnknownHostException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded pool of worker threads for one delivery channel. Tasks failing with a transient error are retried with
+ * exponential backoff.
+ */
+public class NotificationQueue {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NotificationQueue.class);
+
+    public interface Task {
+        void run() throws Exception;
+    }
+
+    private final String name;
+    private final int retries;
+    private final long retryDelay;
+    private final ThreadPoolExecutor executor;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong totalLatency = new AtomicLong();
+
+    public NotificationQueue(String name, int threads, int limit, int retries, long retryDelay) {
+        this.name = name;
+        this.retries = retries;
+        this.retryDelay = retryDelay;
+        executor = new ThreadPoolExecutor(
+                threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(limit),
+                new DefaultThreadFactory("notification-" + name, true));
+    }
+
+    /**
+     * Queues the task, returns false if the queue is full and the task was dropped.
+     */
+    public boolean submit(Task task) {
+        submitted.incrementAndGet();
+        return execute(task, System.currentTimeMillis(), 0);
+    }
+
+    private boolean execute(Task task, long submitTime, int attempt) {
+        try {
+            executor.execute(() -> run(task, submitTime, attempt));
+            return true;
+        } catch (RejectedExecutionException error) {
+            if (dropped.incrementAndGet() % 1000 == 1) {
+                LOGGER.warn("Notification queue " + name + " is full, dropped " + dropped.get() + " tasks");
+            }
+            return false;
+        }
+    }
+
+    private void run(Task task, long submitTime, int attempt) {
+        try {
+            task.run();
+            completed.incrementAndGet();
+            totalLatency.addAndGet(System.currentTimeMillis() - submitTime);
+        } catch (Exception error) {
+            if (attempt < retries && isTransient(error)) {
+                retried.incrementAndGet();
+                GlobalTimer.getTimer().newTimeout(
+                        timeout -> execute(task, submitTime, attempt + 1),
+                        retryDelay << attempt, TimeUnit.MILLISECONDS);
+            } else {
+                failed.incrementAndGet();
+                LOGGER.warn("Notification " + name + " send error", error);
+            }
+        }
+    }
+
+    /**
+     * Returns true for errors raised before the message could reach the server, such as failing to connect, so a
+     * retry cannot deliver the message twice.
+     */
+    static boolean isTransient(Throwable error) {
+        while (error != null) {
+            if (error instanceof ConnectException || error instanceof NoRouteToHostException
+                    || error instanceof UnknownHostException || error instanceof MailConnectException) {
+                return true;
+            }
+            error = error.getCause();
+        }
+        return false;
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    public long getSubmittedCount() {
+        return submitted.get();
+    }
+
+    public long getCompletedCount() {
+        return completed.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    public long getRetriedCount() {
+        return retried.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Average time in milliseconds from submitting a task to its successful completion, including retries.
+     */
+    public long getAverageLatency() {
+        long count = completed.get();
+        return count > 0 ? totalLatency.get() / count : 0;
+    }
+
+    @Override
+    public String toString() {
+        return name + " - queued " + getQueueSize() + ", submitted " + submitted.get()
+                + ", completed " + completed.get() + ", failed " + failed.get() + ", retried " + retried.get()
+                + ", dropped " + dropped.get() + ", average latency " + getAverageLatency() + " ms";
+    }
+
+}
@@ -20,10 +20,17 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import io.netty.util.Timeout;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.traccar.Context;
+import org.traccar.GlobalTimer;
+import org.traccar.config.Keys;
+import org.traccar.model.Event;
+import org.traccar.model.Position;
 import org.traccar.model.Typed;
 import org.traccar.notificators.NotificatorFirebase;
 import org.traccar.notificators.NotificatorMail;
@@ -40,7 +47,13 @@ public final class NotificatorManager {
 
     private static final Notificator NULL_NOTIFICATOR = new NotificatorNull();
 
+    private static final long STATISTICS_INTERVAL = TimeUnit.HOURS.toMillis(1);
+
     private final Map<String, Notificator> notificators = new HashMap<>();
+    private final Map<String, NotificationQueue> queues = new HashMap<>();
+
+    private volatile Timeout statisticsTimeout;
+    private volatile boolean stopped;
 
     public NotificatorManager() {
         final String[] types = Context.getConfig().getString("notificator.types", "").split(",");
@@ -72,10 +85,48 @@ public final class NotificatorManager {
                     .getString("notificator." + type + ".class", defaultNotificator);
             try {
                 notificators.put(type, (Notificator) Class.forName(className).newInstance());
+                queues.put(type, new NotificationQueue(type,
+                        Context.getConfig().getInteger(Keys.NOTIFICATOR_THREADS, 4),
+                        Context.getConfig().getInteger(Keys.NOTIFICATOR_QUEUE_LIMIT, 10000),
+                        Context.getConfig().getInteger(Keys.NOTIFICATOR_RETRIES, 3),
+                        Context.getConfig().getLong(Keys.NOTIFICATOR_RETRY_DELAY, 1000)));
             } catch (ClassNotFoundException | InstantiationException | IllegalAccessException e) {
                 LOGGER.warn("Unable to load notificator class for " + type + " " + className + " " + e.getMessage());
             }
         }
+        if (!queues.isEmpty()) {
+            scheduleStatistics();
+        }
+    }
+
+    private void scheduleStatistics() {
+        statisticsTimeout = GlobalTimer.getTimer().newTimeout(timeout -> {
+            logStatistics();
+            if (!stopped) {
+                scheduleStatistics();
+            }
+        }, STATISTICS_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Logs queue depth, latency, failed, retried and dropped counters of all notificator queues.
+     */
+    public void logStatistics() {
+        for (NotificationQueue queue : queues.values()) {
+            LOGGER.info("Notification queue " + queue);
+        }
+    }
+
+    public void shutdown() {
+        stopped = true;
+        Timeout timeout = statisticsTimeout;
+        if (timeout != null) {
+            timeout.cancel();
+        }
+        logStatistics();
+        for (NotificationQueue queue : queues.values()) {
+            queue.shutdown();
+        }
     }
 
     public Notificator getNotificator(String type) {
@@ -87,6 +138,20 @@ public final class NotificatorManager {
         return notificator;
     }
 
+    public void sendAsync(String type, final long userId, final Event event, final Position position) {
+        final Notificator notificator = getNotificator(type);
+        NotificationQueue queue = queues.get(type);
+        if (queue != null) {
+            queue.submit(() -> notificator.sendSync(userId, event, position));
+        } else {
+            try {
+                notificator.sendSync(userId, event, position);
+            } catch (Exception error) {
+                LOGGER.warn("Event send error", error);
+            }
+        }
+    }
+
     public Set<Typed> getAllNotificatorTypes() {
         Set<Typed> result = new HashSet<>();
         for (String notificator : notificators.keySet()) {
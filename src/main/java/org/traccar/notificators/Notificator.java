@@ -16,8 +16,6 @@
  */
 package org.traccar.notificators;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.traccar.model.Event;
 import org.traccar.model.Position;
 import org.traccar.notification.MessageException;
@@ -26,20 +24,6 @@ import java.io.UnsupportedEncodingException;
 
 public abstract class Notificator {
 
-    private static final Logger LOGGER = LoggerFactory.getLogger(Notificator.class);
-
-    public void sendAsync(final long userId, final Event event, final Position position) {
-        new Thread(new Runnable() {
-            public void run() {
-                try {
-                    sendSync(userId, event, position);
-                } catch (MessageException | InterruptedException | UnsupportedEncodingException error) {
-                    LOGGER.warn("Event send error", error);
-                }
-            }
-        }).start();
-    }
-
     public abstract void sendSync(long userId, Event event, Position position)
         throws MessageException, InterruptedException, UnsupportedEncodingException;
 
@@ -79,9 +79,4 @@ public class NotificatorFirebase extends Notificator {
         }
     }
 
-    @Override
-    public void sendAsync(long userId, Event event, Position position) {
-        sendSync(userId, event, position);
-    }
-
 }
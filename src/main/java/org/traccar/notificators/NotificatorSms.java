@@ -39,16 +39,6 @@ public final class NotificatorSms extends Notificator {
         }
     }
 
-    @Override
-    public void sendAsync(long userId, Event event, Position position) {
-        final User user = Context.getPermissionsManager().getUser(userId);
-        if (user.getPhone() != null) {
-            Main.getInjector().getInstance(StatisticsManager.class).registerSms();
-            smsManager.sendMessageAsync(user.getPhone(),
-                    NotificationFormatter.formatShortMessage(userId, event, position), false);
-        }
-    }
-
     @Override
     public void sendSync(long userId, Event event, Position position) throws MessageException, InterruptedException {
         final User user = Context.getPermissionsManager().getUser(userId);
@@ -60,11 +60,6 @@ public class NotificatorSmsApp extends Notificator {
         }
     }
 
-    @Override
-    public void sendAsync(long userId, Event event, Position position) {
-        sendSync(userId, event, position);
-    }
-
     public void sendSMS(String id, String phone, String msg, String msgType, Map<String, Object> otherDetails) {
         boolean smsAppProd = Context.getConfig().getBoolean("smsApp.prod");
         String queueCollectionName, metaDataCollectionName, commandType;
@@ -69,9 +69,4 @@ public class NotificatorTelegram extends Notificator {
         });
     }
 
-    @Override
-    public void sendAsync(long userId, Event event, Position position) {
-        sendSync(userId, event, position);
-    }
-
 }
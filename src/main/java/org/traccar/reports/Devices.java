@@ -18,6 +18,7 @@ package org.traccar.reports;
 
 import org.jxls.util.JxlsHelper;
 import org.traccar.Context;
+import org.traccar.config.Keys;
 import org.traccar.database.DeviceManager;
 import org.traccar.model.Device;
 
@@ -26,11 +27,14 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.UncheckedIOException;
 import java.sql.SQLException;
 import java.text.SimpleDateFormat;
 import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.zip.ZipEntry;
@@ -99,25 +103,41 @@ public final class Devices {
 
         String templatePath = Context.getConfig().getString("report.templatesPath",
                 "templates/export/individual_device_report.xlsx");
-        exportDevice(outputStream, userId, device, templatePath);
+        exportDevice(outputStream, userId, device, templatePath,
+                new SimpleDateFormat("dd-MM-yyyy hh:mm a").format(new Date()));
     }
 
     public static void getIndividualExcelZip(
-            ByteArrayOutputStream byteArrayOutputStream, long userId,
+            OutputStream outputStream, long userId,
             Collection<Device> devices) throws SQLException, IOException {
-        ZipOutputStream zipOutputStream = new ZipOutputStream(byteArrayOutputStream);
+        String templatePath = Context.getConfig().getString("report.templatesPath",
+                "templates/export/individual_device_report.xlsx");
+        String reportDate = new SimpleDateFormat("dd-MM-yyyy hh:mm a").format(new Date());
+        Map<Long, Device> devicesById = new HashMap<>();
         for (Device device : devices) {
-            final ByteArrayOutputStream oStream = new ByteArrayOutputStream();
-            String templatePath = Context.getConfig().getString("report.templatesPath",
-                    "templates/export/individual_device_report.xlsx");
-            exportDevice(oStream, userId, device, templatePath);
-            ZipEntry zipEntry = new ZipEntry(device.getUniqueId()
-                    .replaceAll("[^a-zA-Z0-9.\\-]", "_") + "_Device_Report.xlsx");
-            zipOutputStream.putNextEntry(zipEntry);
-            zipOutputStream.write(oStream.toByteArray());
-            zipOutputStream.closeEntry();
+            devicesById.put(device.getId(), device);
         }
-        zipOutputStream.close();
+        ZipOutputStream zipOutputStream = new ZipOutputStream(outputStream);
+        try {
+            ReportEngine.execute(devicesById.keySet(), deviceId -> {
+                ByteArrayOutputStream deviceStream = new ByteArrayOutputStream();
+                try {
+                    exportDevice(deviceStream, userId, devicesById.get(deviceId), templatePath, reportDate);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return deviceStream.toByteArray();
+            }, (deviceId, data) -> {
+                ZipEntry zipEntry = new ZipEntry(devicesById.get(deviceId).getUniqueId()
+                        .replaceAll("[^a-zA-Z0-9.\\-]", "_") + "_Device_Report.xlsx");
+                zipOutputStream.putNextEntry(zipEntry);
+                zipOutputStream.write(data);
+                zipOutputStream.closeEntry();
+            }, Context.getConfig().getInteger(Keys.REPORT_REQUEST_CONCURRENCY, 4));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        zipOutputStream.finish();
     }
 
     private static void exportDevices(
@@ -136,10 +156,8 @@ public final class Devices {
 
     private static void exportDevice(
             OutputStream outputStream, long userId, Device device,
-            String templatePath) throws IOException {
-        SimpleDateFormat simpleDateFormat = new SimpleDateFormat("dd-MM-yyyy hh:mm a");
-        String reportDate = simpleDateFormat.format(new Date());
-        try (InputStream inputStream = new FileInputStream(templatePath)) {
+            String templatePath, String reportDate) throws IOException {
+        try (InputStream inputStream = ReportUtils.getTemplate(templatePath)) {
             org.jxls.common.Context jxlsContext = ReportUtils.initializeContext(userId);
             jxlsContext.putVar("device", device);
             jxlsContext.putVar("reportDate", reportDate);
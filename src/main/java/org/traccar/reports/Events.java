@@ -25,7 +25,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.function.Consumer;
 
 import org.apache.poi.ss.util.WorkbookUtil;
 import org.traccar.Context;
@@ -46,18 +46,7 @@ public final class Events {
             Collection<String> types, Collection<String> subTypes, HashMap<String, Date> fromTo) throws SQLException {
         ReportUtils.checkPeriodLimit(fromTo.get("from"), fromTo.get("to"));
         ArrayList<Event> result = new ArrayList<>();
-        Collection<Event> events;
-        if (types.isEmpty() || types.contains(Event.ALL_EVENTS)) {
-             events = Context.getDataManager().getEventsForMultiple(
-                     ReportUtils.getDeviceList(deviceIds, groupIds),
-                     new ArrayList<String>(), new ArrayList<String>(), fromTo.get("from"), fromTo.get("to"));
-        } else {
-            events = Context.getDataManager().getEventsForMultiple(
-                    ReportUtils.getDeviceList(deviceIds, groupIds), types,
-                    subTypes, fromTo.get("from"), fromTo.get("to"));
-        }
-
-        for (Event event : events) {
+        Consumer<Event> consumer = event -> {
             long geofenceId = event.getGeofenceId();
             long maintenanceId = event.getMaintenanceId();
             if ((geofenceId == 0 || Context.getGeofenceManager().checkItemPermission(userId, geofenceId))
@@ -65,6 +54,15 @@ public final class Events {
                     || Context.getMaintenancesManager().checkItemPermission(userId, maintenanceId))) {
                 checkEventTimeout(result, event);
             }
+        };
+        if (types.isEmpty() || types.contains(Event.ALL_EVENTS)) {
+            Context.getDataManager().getEventsForMultiple(
+                    ReportUtils.getDeviceList(deviceIds, groupIds),
+                    new ArrayList<String>(), new ArrayList<String>(), fromTo.get("from"), fromTo.get("to"), consumer);
+        } else {
+            Context.getDataManager().getEventsForMultiple(
+                    ReportUtils.getDeviceList(deviceIds, groupIds), types,
+                    subTypes, fromTo.get("from"), fromTo.get("to"), consumer);
         }
 //        for (long deviceId: ReportUtils.getDeviceList(deviceIds, groupIds)) {
 //            Context.getPermissionsManager().checkDevice(userId, deviceId);
@@ -96,11 +94,9 @@ public final class Events {
         HashMap<Long, String> maintenanceNames = new HashMap<>();
         for (long deviceId: ReportUtils.getDeviceList(deviceIds, groupIds)) {
             Context.getPermissionsManager().checkDevice(userId, deviceId);
-            Collection<Event> events = Context.getDataManager().getEvents(deviceId,
-                    fromTo.get("from"), fromTo.get("to"));
             boolean all = types.isEmpty() || types.contains(Event.ALL_EVENTS);
-            for (Iterator<Event> iterator = events.iterator(); iterator.hasNext();) {
-                Event event = iterator.next();
+            ArrayList<Event> result = new ArrayList<>();
+            Context.getDataManager().getEvents(deviceId, fromTo.get("from"), fromTo.get("to"), event -> {
                 if (all || types.contains(event.getType())) {
                     long geofenceId = event.getGeofenceId();
                     long maintenanceId = event.getMaintenanceId();
@@ -111,7 +107,7 @@ public final class Events {
                                 geofenceNames.put(geofenceId, geofence.getName());
                             }
                         } else {
-                            iterator.remove();
+                            return;
                         }
                     } else if (maintenanceId != 0) {
                         if (Context.getMaintenancesManager().checkItemPermission(userId, maintenanceId)) {
@@ -120,17 +116,12 @@ public final class Events {
                                 maintenanceNames.put(maintenanceId, maintenance.getName());
                             }
                         } else {
-                            iterator.remove();
+                            return;
                         }
                     }
-                } else {
-                    iterator.remove();
+                    checkEventTimeout(result, event);
                 }
-            }
-            ArrayList<Event> result = new ArrayList<>();
-            for (Event event : events) {
-                checkEventTimeout(result, event);
-            }
+            });
             if (result.size() > 0) {
                 DeviceReport deviceEvents = new DeviceReport();
                 Device device = Context.getIdentityManager().getById(deviceId);
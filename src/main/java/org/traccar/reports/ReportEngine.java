@@ -0,0 +1,245 @@
+/*
+ * Copyright 2019 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.reports;
+
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.traccar.Context;
+import org.traccar.config.Keys;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Runs per-device parts of a report on a shared thread pool. Each request uses a limited number of workers and gets
+ * results in the order of the device list.
+ */
+public final class ReportEngine {
+
+    private static final long CHECK_INTERVAL = 1000;
+
+    private static final ThreadLocal<BooleanSupplier> CANCELLATION = new ThreadLocal<>();
+
+    private static ExecutorService executor;
+
+    private ReportEngine() {
+    }
+
+    public interface DeviceTask<T> {
+        T execute(long deviceId) throws SQLException;
+    }
+
+    public interface ResultHandler<T> {
+        void handle(long deviceId, T result) throws SQLException, IOException;
+    }
+
+    private static final class Result<T> {
+        private final long deviceId;
+        private final T value;
+        private final Throwable error;
+
+        private Result(long deviceId, T value, Throwable error) {
+            this.deviceId = deviceId;
+            this.value = value;
+            this.error = error;
+        }
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(
+                    Context.getConfig().getInteger(Keys.REPORT_THREADS, Runtime.getRuntime().availableProcessors()),
+                    new DefaultThreadFactory("report", true));
+        }
+        return executor;
+    }
+
+    /**
+     * Sets condition for aborting reports executed by the current thread, for example when the client disconnects.
+     * Passing null removes the condition.
+     */
+    public static void setCancellation(BooleanSupplier cancelled) {
+        if (cancelled != null) {
+            CANCELLATION.set(cancelled);
+        } else {
+            CANCELLATION.remove();
+        }
+    }
+
+    private static boolean isCancelled() {
+        BooleanSupplier cancelled = CANCELLATION.get();
+        return Thread.currentThread().isInterrupted() || cancelled != null && cancelled.getAsBoolean();
+    }
+
+    static void checkCancelled() {
+        if (isCancelled()) {
+            throw new CancellationException("Report cancelled");
+        }
+    }
+
+    public static <T> List<T> execute(Collection<Long> deviceIds, DeviceTask<T> task) throws SQLException {
+        return execute(deviceIds, task, Context.getConfig().getInteger(Keys.REPORT_REQUEST_CONCURRENCY, 4));
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> List<T> execute(
+            Collection<Long> deviceIds, DeviceTask<T> task, int concurrency) throws SQLException {
+        final long[] devices = deviceIds.stream().mapToLong(Long::longValue).toArray();
+        int workers = Math.min(concurrency, devices.length);
+
+        if (workers <= 1) {
+            List<T> result = new ArrayList<>(devices.length);
+            for (long deviceId : devices) {
+                checkCancelled();
+                result.add(task.execute(deviceId));
+            }
+            return result;
+        }
+
+        final Object[] results = new Object[devices.length];
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicBoolean stopped = new AtomicBoolean();
+        List<Future<?>> futures = new ArrayList<>(workers);
+        try {
+            for (int i = 0; i < workers; i++) {
+                futures.add(getExecutor().submit(() -> {
+                    while (!stopped.get()) {
+                        int index = next.getAndIncrement();
+                        if (index >= devices.length) {
+                            break;
+                        }
+                        results[index] = task.execute(devices[index]);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                waitFor(future);
+            }
+        } finally {
+            stopped.set(true);
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return (List<T>) Arrays.asList(results);
+    }
+
+    /**
+     * Passes results to the handler on the calling thread in completion order. A device is only submitted when fewer
+     * than the concurrency limit are pending, so pool threads never wait for a slow handler and only a few results are
+     * held in memory at a time.
+     */
+    public static <T> void execute(
+            Collection<Long> deviceIds, DeviceTask<T> task, ResultHandler<T> handler,
+            int concurrency) throws SQLException, IOException {
+        final long[] devices = deviceIds.stream().mapToLong(Long::longValue).toArray();
+        int workers = Math.min(concurrency, devices.length);
+
+        if (workers <= 1) {
+            for (long deviceId : devices) {
+                checkCancelled();
+                handler.handle(deviceId, task.execute(deviceId));
+            }
+            return;
+        }
+
+        final BlockingQueue<Result<T>> queue = new LinkedBlockingQueue<>();
+        List<Future<?>> futures = new ArrayList<>(devices.length);
+        try {
+            int next = 0;
+            int pending = 0;
+            int remaining = devices.length;
+            while (remaining > 0) {
+                while (next < devices.length && pending < workers) {
+                    final long deviceId = devices[next++];
+                    pending += 1;
+                    futures.add(getExecutor().submit(() -> {
+                        try {
+                            queue.add(new Result<>(deviceId, task.execute(deviceId), null));
+                        } catch (Throwable e) {
+                            queue.add(new Result<>(deviceId, null, e));
+                        }
+                    }));
+                }
+                checkCancelled();
+                Result<T> result;
+                try {
+                    result = queue.poll(CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new CancellationException("Report interrupted");
+                }
+                if (result != null) {
+                    pending -= 1;
+                    remaining -= 1;
+                    if (result.error != null) {
+                        throwError(result.error);
+                    }
+                    handler.handle(result.deviceId, result.value);
+                }
+            }
+        } finally {
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private static void waitFor(Future<?> future) throws SQLException {
+        while (true) {
+            checkCancelled();
+            try {
+                future.get(CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+                return;
+            } catch (TimeoutException e) {
+                continue;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Report interrupted");
+            } catch (ExecutionException e) {
+                throwError(e.getCause());
+            }
+        }
+    }
+
+    private static void throwError(Throwable error) throws SQLException {
+        if (error instanceof SQLException) {
+            throw (SQLException) error;
+        } else if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        } else if (error instanceof Error) {
+            throw (Error) error;
+        }
+        throw new RuntimeException(error);
+    }
+
+}
@@ -26,33 +26,54 @@ import org.jxls.transform.Transformer;
 import org.jxls.transform.poi.PoiTransformer;
 import org.jxls.util.TransformerFactory;
 import org.traccar.Context;
+import org.traccar.config.Keys;
 import org.traccar.database.DeviceManager;
 import org.traccar.database.IdentityManager;
 import org.traccar.handler.events.MotionEventHandler;
 import org.traccar.model.DeviceState;
 import org.traccar.model.Driver;
-import org.traccar.model.Event;
 import org.traccar.model.Position;
 import org.traccar.reports.model.BaseReport;
+import org.traccar.reports.model.DeviceActivity;
 import org.traccar.reports.model.StopReport;
+import org.traccar.reports.model.SummaryReport;
 import org.traccar.reports.model.TripReport;
 import org.traccar.reports.model.TripsConfig;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.TimeZone;
+import java.util.function.LongSupplier;
 
 public final class ReportUtils {
 
+    private static final int ACTIVITY_CACHE_SIZE = 1000;
+
+    private static final Map<String, CachedActivity> ACTIVITY_CACHE = new LinkedHashMap<String, CachedActivity>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedActivity> eldest) {
+            return size() > ACTIVITY_CACHE_SIZE;
+        }
+    };
+
+    private static final Map<String, CachedTemplate> TEMPLATE_CACHE = new HashMap<>();
+
     private ReportUtils() {
     }
 
@@ -89,6 +110,48 @@ public final class ReportUtils {
         return result;
     }
 
+    public static ArrayList<Position> getPositions(long deviceId, Date from, Date to) throws SQLException {
+        ArrayList<Position> positions = new ArrayList<>();
+        Context.getDataManager().getPositions(deviceId, from, to, positions::add);
+        return positions;
+    }
+
+    public interface PositionConsumer {
+        void write(Position position) throws IOException;
+    }
+
+    static PositionConsumer limitConsumer(PositionConsumer consumer, long timeout, LongSupplier clock) {
+        long deadline = clock.getAsLong() + timeout;
+        return position -> {
+            if (clock.getAsLong() > deadline) {
+                throw new IOException("Streaming timeout exceeded");
+            }
+            consumer.write(position);
+        };
+    }
+
+    /**
+     * Streams positions to the consumer while holding a database connection. The write is aborted with IOException once
+     * it takes longer than 'report.streamingTimeout', so a slow client cannot keep the connection indefinitely.
+     */
+    public static void writePositions(long deviceId, Date from, Date to, PositionConsumer consumer)
+            throws SQLException, IOException {
+        long timeout = Context.getConfig().getLong(Keys.REPORT_STREAMING_TIMEOUT, 300) * 1000;
+        PositionConsumer limitedConsumer = timeout > 0
+                ? limitConsumer(consumer, timeout, System::currentTimeMillis) : consumer;
+        try {
+            Context.getDataManager().getPositions(deviceId, from, to, position -> {
+                try {
+                    limitedConsumer.write(position);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
     public static double calculateDistance(Position firstPosition, Position lastPosition) {
         return calculateDistance(firstPosition, lastPosition, true);
     }
@@ -195,23 +258,13 @@ public final class ReportUtils {
         trip.setStartLat(startTrip.getLatitude());
         trip.setStartLon(startTrip.getLongitude());
         trip.setStartTime(startTrip.getFixTime());
-        String startAddress = startTrip.getAddress();
-        if (startAddress == null && Context.getGeocoder() != null
-                && Context.getConfig().getBoolean("geocoder.onRequest")) {
-            startAddress = Context.getGeocoder().getAddress(startTrip.getLatitude(), startTrip.getLongitude(), null);
-        }
-        trip.setStartAddress(startAddress);
+        trip.setStartAddress(startTrip.getAddress());
 
         trip.setEndPositionId(endTrip.getId());
         trip.setEndLat(endTrip.getLatitude());
         trip.setEndLon(endTrip.getLongitude());
         trip.setEndTime(endTrip.getFixTime());
-        String endAddress = endTrip.getAddress();
-        if (endAddress == null && Context.getGeocoder() != null
-                && Context.getConfig().getBoolean("geocoder.onRequest")) {
-            endAddress = Context.getGeocoder().getAddress(endTrip.getLatitude(), endTrip.getLongitude(), null);
-        }
-        trip.setEndAddress(endAddress);
+        trip.setEndAddress(endTrip.getAddress());
 
         trip.setDistance(calculateDistance(startTrip, endTrip, !ignoreOdometer));
         trip.setDuration(tripDuration);
@@ -236,7 +289,7 @@ public final class ReportUtils {
     }
 
     private static StopReport calculateStop(
-            ArrayList<Position> positions, int startIndex, int endIndex, boolean ignoreOdometer) {
+            ArrayList<Position> positions, long[] ignitionTime, int startIndex, int endIndex, boolean ignoreOdometer) {
 
         Position startStop = positions.get(startIndex);
         Position endStop = positions.get(endIndex);
@@ -251,12 +304,7 @@ public final class ReportUtils {
         stop.setLatitude(startStop.getLatitude());
         stop.setLongitude(startStop.getLongitude());
         stop.setStartTime(startStop.getFixTime());
-        String address = startStop.getAddress();
-        if (address == null && Context.getGeocoder() != null
-                && Context.getConfig().getBoolean("geocoder.onRequest")) {
-            address = Context.getGeocoder().getAddress(stop.getLatitude(), stop.getLongitude(), null);
-        }
-        stop.setAddress(address);
+        stop.setAddress(startStop.getAddress());
 
         stop.setEndTime(endStop.getFixTime());
 
@@ -268,15 +316,9 @@ public final class ReportUtils {
         if (startStop.getAttributes().containsKey(Position.KEY_HOURS)
                 && endStop.getAttributes().containsKey(Position.KEY_HOURS)) {
             engineHours = endStop.getLong(Position.KEY_HOURS) - startStop.getLong(Position.KEY_HOURS);
-        } else if (Context.getConfig().getBoolean("processing.engineHours.enable")) {
+        } else if (ignitionTime != null) {
             // Temporary fallback for old data, to be removed in May 2019
-            for (int i = startIndex + 1; i <= endIndex; i++) {
-                if (positions.get(i).getBoolean(Position.KEY_IGNITION)
-                        && positions.get(i - 1).getBoolean(Position.KEY_IGNITION)) {
-                    engineHours += positions.get(i).getFixTime().getTime()
-                            - positions.get(i - 1).getFixTime().getTime();
-                }
-            }
+            engineHours = ignitionTime[endIndex] - ignitionTime[startIndex];
         }
         stop.setEngineHours(engineHours);
 
@@ -294,16 +336,6 @@ public final class ReportUtils {
 
     }
 
-    private static <T extends BaseReport> T calculateTripOrStop(
-            ArrayList<Position> positions, int startIndex, int endIndex, boolean ignoreOdometer, Class<T> reportClass) {
-
-        if (reportClass.equals(TripReport.class)) {
-            return (T) calculateTrip(positions, startIndex, endIndex, ignoreOdometer);
-        } else {
-            return (T) calculateStop(positions, startIndex, endIndex, ignoreOdometer);
-        }
-    }
-
     private static boolean isMoving(ArrayList<Position> positions, int index, TripsConfig tripsConfig) {
         if (tripsConfig.getMinimalNoDataDuration() > 0) {
             boolean beforeGap = index < positions.size() - 1
@@ -324,55 +356,271 @@ public final class ReportUtils {
         }
     }
 
-    public static <T extends BaseReport> Collection<T> detectTripsAndStops(
-            IdentityManager identityManager, DeviceManager deviceManager,
-            Collection<Position> positionCollection,
-            TripsConfig tripsConfig, boolean ignoreOdometer, Class<T> reportClass) {
+    /**
+     * Tracks boundaries of either trips or stops while the motion state machine is advanced.
+     */
+    private static final class IntervalDetector {
+
+        private final boolean trips;
+        private int startEventIndex;
+        private int startNoEventIndex = -1;
+
+        private IntervalDetector(boolean trips, boolean initialMotion) {
+            this.trips = trips;
+            startEventIndex = trips == initialMotion ? 0 : -1;
+        }
+
+        /**
+         * Returns start index of a completed interval ending at {@code startNoEventIndex}, or -1.
+         */
+        private int update(int index, DeviceState deviceState, boolean event) {
+            if (startEventIndex == -1
+                    && (trips != deviceState.getMotionState() && deviceState.getMotionPosition() != null
+                    || trips == deviceState.getMotionState() && event)) {
+                startEventIndex = index;
+                startNoEventIndex = -1;
+            } else if (trips != deviceState.getMotionState() && startEventIndex != -1
+                    && deviceState.getMotionPosition() == null && !event) {
+                startEventIndex = -1;
+            }
+            if (startNoEventIndex == -1
+                    && (trips == deviceState.getMotionState() && deviceState.getMotionPosition() != null
+                    || trips != deviceState.getMotionState() && event)) {
+                startNoEventIndex = index;
+            } else if (startNoEventIndex != -1 && deviceState.getMotionPosition() == null && !event) {
+                startNoEventIndex = -1;
+            }
+            if (startEventIndex != -1 && startNoEventIndex != -1 && event
+                    && trips != deviceState.getMotionState()) {
+                int result = startEventIndex;
+                startEventIndex = -1;
+                return result;
+            }
+            return -1;
+        }
+
+        private boolean hasRemaining() {
+            return startEventIndex != -1 && (startNoEventIndex != -1 || !trips);
+        }
+
+        private int getRemainingEnd(int size) {
+            return startNoEventIndex != -1 ? startNoEventIndex : size - 1;
+        }
+
+    }
+
+    private static SummaryReport calculateSummary(
+            long deviceId, ArrayList<Position> positions, boolean engineHoursEnabled, boolean ignoreOdometer) {
+        SummaryAccumulator accumulator = new SummaryAccumulator();
+        for (Position position : positions) {
+            accumulator.add(position);
+        }
+        return accumulator.createReport(deviceId, engineHoursEnabled, ignoreOdometer);
+    }
+
+    /**
+     * Cumulative time with ignition on between consecutive positions, used when engine hours are not reported.
+     */
+    private static long[] calculateIgnitionTime(ArrayList<Position> positions) {
+        long[] result = new long[positions.size()];
+        for (int i = 1; i < positions.size(); i++) {
+            result[i] = result[i - 1];
+            if (positions.get(i).getBoolean(Position.KEY_IGNITION)
+                    && positions.get(i - 1).getBoolean(Position.KEY_IGNITION)) {
+                result[i] += positions.get(i).getFixTime().getTime() - positions.get(i - 1).getFixTime().getTime();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Detects trips and stops and calculates summary in a single pass of the motion state machine.
+     */
+    public static DeviceActivity analyzeActivity(
+            IdentityManager identityManager, DeviceManager deviceManager, long deviceId,
+            Collection<Position> positionCollection, TripsConfig tripsConfig, boolean ignoreOdometer) {
 
-        Collection<T> result = new ArrayList<>();
+        ArrayList<Position> positions;
+        if (positionCollection instanceof ArrayList) {
+            positions = (ArrayList<Position>) positionCollection;
+        } else {
+            positions = new ArrayList<>(positionCollection);
+        }
+
+        long[] ignitionTime = null;
+        if (Context.getConfig().getBoolean("processing.engineHours.enable")) {
+            ignitionTime = calculateIgnitionTime(positions);
+        }
+
+        DeviceActivity activity = new DeviceActivity();
+        activity.setSummary(calculateSummary(deviceId, positions, ignitionTime != null, ignoreOdometer));
 
-        ArrayList<Position> positions = new ArrayList<>(positionCollection);
         if (!positions.isEmpty()) {
-            boolean trips = reportClass.equals(TripReport.class);
-            MotionEventHandler  motionHandler = new MotionEventHandler(identityManager, deviceManager, tripsConfig);
+            MotionEventHandler motionHandler = new MotionEventHandler(identityManager, deviceManager, tripsConfig);
             DeviceState deviceState = new DeviceState();
             deviceState.setMotionState(isMoving(positions, 0, tripsConfig));
-            int startEventIndex = trips == deviceState.getMotionState() ? 0 : -1;
-            int startNoEventIndex = -1;
+            IntervalDetector tripDetector = new IntervalDetector(true, deviceState.getMotionState());
+            IntervalDetector stopDetector = new IntervalDetector(false, deviceState.getMotionState());
             for (int i = 0; i < positions.size(); i++) {
-                Map<Event, Position> event = motionHandler.updateMotionState(deviceState, positions.get(i),
-                        isMoving(positions, i, tripsConfig));
-                if (startEventIndex == -1
-                        && (trips != deviceState.getMotionState() && deviceState.getMotionPosition() != null
-                        || trips == deviceState.getMotionState() && event != null)) {
-                    startEventIndex = i;
-                    startNoEventIndex = -1;
-                } else if (trips != deviceState.getMotionState() && startEventIndex != -1
-                        && deviceState.getMotionPosition() == null && event == null) {
-                    startEventIndex = -1;
-                }
-                if (startNoEventIndex == -1
-                        && (trips == deviceState.getMotionState() && deviceState.getMotionPosition() != null
-                        || trips != deviceState.getMotionState() && event != null)) {
-                    startNoEventIndex = i;
-                } else if (startNoEventIndex != -1 && deviceState.getMotionPosition() == null && event == null) {
-                    startNoEventIndex = -1;
+                boolean event = motionHandler.updateMotionState(deviceState, positions.get(i),
+                        isMoving(positions, i, tripsConfig)) != null;
+                int tripStart = tripDetector.update(i, deviceState, event);
+                if (tripStart != -1) {
+                    activity.getTrips().add(
+                            calculateTrip(positions, tripStart, tripDetector.startNoEventIndex, ignoreOdometer));
                 }
-                if (startEventIndex != -1 && startNoEventIndex != -1 && event != null
-                        && trips != deviceState.getMotionState()) {
-                    result.add(calculateTripOrStop(positions, startEventIndex, startNoEventIndex,
-                            ignoreOdometer, reportClass));
-                    startEventIndex = -1;
+                int stopStart = stopDetector.update(i, deviceState, event);
+                if (stopStart != -1) {
+                    activity.getStops().add(calculateStop(
+                            positions, ignitionTime, stopStart, stopDetector.startNoEventIndex, ignoreOdometer));
                 }
             }
-            if (startEventIndex != -1 && (startNoEventIndex != -1 || !trips)) {
-                result.add(calculateTripOrStop(positions, startEventIndex,
-                            startNoEventIndex != -1 ? startNoEventIndex : positions.size() - 1,
-                            ignoreOdometer, reportClass));
+            if (tripDetector.hasRemaining()) {
+                activity.getTrips().add(calculateTrip(positions, tripDetector.startEventIndex,
+                        tripDetector.getRemainingEnd(positions.size()), ignoreOdometer));
+            }
+            if (stopDetector.hasRemaining()) {
+                activity.getStops().add(calculateStop(positions, ignitionTime, stopDetector.startEventIndex,
+                        stopDetector.getRemainingEnd(positions.size()), ignoreOdometer));
             }
         }
 
+        return activity;
+    }
+
+    /**
+     * Resolves missing trip and stop addresses when geocoding on request is enabled. Only called for results returned
+     * to the client, so analysis used for other purposes does not send geocoder requests.
+     */
+    public static void resolveAddresses(Collection<? extends BaseReport> reports) {
+        if (Context.getGeocoder() == null || !Context.getConfig().getBoolean("geocoder.onRequest")) {
+            return;
+        }
+        for (BaseReport report : reports) {
+            synchronized (report) {
+                if (report instanceof TripReport) {
+                    TripReport trip = (TripReport) report;
+                    if (trip.getStartAddress() == null) {
+                        trip.setStartAddress(Context.getGeocoder().getAddress(
+                                trip.getStartLat(), trip.getStartLon(), null));
+                    }
+                    if (trip.getEndAddress() == null) {
+                        trip.setEndAddress(Context.getGeocoder().getAddress(
+                                trip.getEndLat(), trip.getEndLon(), null));
+                    }
+                } else if (report instanceof StopReport) {
+                    StopReport stop = (StopReport) report;
+                    if (stop.getAddress() == null) {
+                        stop.setAddress(Context.getGeocoder().getAddress(
+                                stop.getLatitude(), stop.getLongitude(), null));
+                    }
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T extends BaseReport> Collection<T> detectTripsAndStops(
+            IdentityManager identityManager, DeviceManager deviceManager,
+            Collection<Position> positionCollection,
+            TripsConfig tripsConfig, boolean ignoreOdometer, Class<T> reportClass) {
+
+        long deviceId = positionCollection.isEmpty() ? 0 : positionCollection.iterator().next().getDeviceId();
+        DeviceActivity activity = analyzeActivity(
+                identityManager, deviceManager, deviceId, positionCollection, tripsConfig, ignoreOdometer);
+        Collection<T> result;
+        if (reportClass.equals(TripReport.class)) {
+            result = (Collection<T>) activity.getTrips();
+        } else {
+            result = (Collection<T>) activity.getStops();
+        }
+        resolveAddresses(result);
         return result;
     }
 
+    private static final class CachedActivity {
+
+        private final DeviceActivity activity;
+        private final long expiration;
+
+        private CachedActivity(DeviceActivity activity, long expiration) {
+            this.activity = activity;
+            this.expiration = expiration;
+        }
+
+    }
+
+    private static String getActivityKey(long deviceId, Date from, Date to) {
+        return deviceId + ":" + from.getTime() + ":" + to.getTime();
+    }
+
+    /**
+     * Returns analysis cached by a recent trips or stops report for the same period, or null.
+     */
+    public static DeviceActivity getCachedDeviceActivity(long deviceId, Date from, Date to) {
+        synchronized (ACTIVITY_CACHE) {
+            CachedActivity cached = ACTIVITY_CACHE.get(getActivityKey(deviceId, from, to));
+            if (cached != null && cached.expiration > System.currentTimeMillis()) {
+                return cached.activity;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Loads positions once and returns trips, stops and summary for the device. Results are cached for a short time,
+     * so reports for the same period do not load data again. Addresses are not resolved.
+     */
+    public static DeviceActivity getDeviceActivity(long deviceId, Date from, Date to) throws SQLException {
+        long timeout = Context.getConfig().getLong(Keys.REPORT_CACHE_TIMEOUT, 60) * 1000;
+        String key = getActivityKey(deviceId, from, to);
+        if (timeout > 0) {
+            DeviceActivity cached = getCachedDeviceActivity(deviceId, from, to);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        boolean ignoreOdometer = Context.getDeviceManager()
+                .lookupAttributeBoolean(deviceId, "report.ignoreOdometer", false, false, true);
+        DeviceActivity activity = analyzeActivity(
+                Context.getIdentityManager(), Context.getDeviceManager(), deviceId,
+                getPositions(deviceId, from, to), Context.getTripsConfig(), ignoreOdometer);
+
+        if (timeout > 0) {
+            synchronized (ACTIVITY_CACHE) {
+                ACTIVITY_CACHE.put(key, new CachedActivity(activity, System.currentTimeMillis() + timeout));
+            }
+        }
+        return activity;
+    }
+
+    private static final class CachedTemplate {
+
+        private final byte[] data;
+        private final long modified;
+
+        private CachedTemplate(byte[] data, long modified) {
+            this.data = data;
+            this.modified = modified;
+        }
+
+    }
+
+    /**
+     * Returns template file content, reading the file again only when it has been modified.
+     */
+    public static InputStream getTemplate(String path) throws IOException {
+        File file = new File(path);
+        long modified = file.lastModified();
+        synchronized (TEMPLATE_CACHE) {
+            CachedTemplate cached = TEMPLATE_CACHE.get(path);
+            if (cached == null || cached.modified != modified) {
+                cached = new CachedTemplate(Files.readAllBytes(file.toPath()), modified);
+                TEMPLATE_CACHE.put(path, cached);
+            }
+            return new ByteArrayInputStream(cached.data);
+        }
+    }
+
 }
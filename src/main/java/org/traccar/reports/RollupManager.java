@@ -0,0 +1,188 @@
+/*
+ * Copyright 2019 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.reports;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.traccar.Context;
+import org.traccar.config.Config;
+import org.traccar.config.Keys;
+import org.traccar.database.DataManager;
+import org.traccar.model.Position;
+import org.traccar.model.Rollup;
+import org.traccar.reports.model.SummaryReport;
+
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Maintains daily per-device rollups in the background and combines them with raw positions for summary reports.
+ */
+public class RollupManager {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RollupManager.class);
+
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    private final DataManager dataManager;
+    private final int days;
+    private final int recalculateDays;
+    private final int backfillLimit;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "rollup");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Set<String> invalidated = ConcurrentHashMap.newKeySet();
+
+    public RollupManager(Config config, DataManager dataManager) {
+        this.dataManager = dataManager;
+        days = config.getInteger(Keys.REPORT_ROLLUP_DAYS, 90);
+        recalculateDays = config.getInteger(Keys.REPORT_ROLLUP_RECALCULATE_DAYS, 2);
+        backfillLimit = config.getInteger(Keys.REPORT_ROLLUP_BACKFILL_LIMIT, 1000);
+        long interval = config.getLong(Keys.REPORT_ROLLUP_INTERVAL, 3600);
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                updateRollups();
+            } catch (RuntimeException error) {
+                LOGGER.warn("Rollup update error", error);
+            }
+        }, interval, interval, TimeUnit.SECONDS);
+    }
+
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    public static long getDayStart(long time) {
+        return time - Math.floorMod(time, DAY);
+    }
+
+    /**
+     * Calculates missing rollups for complete days and recalculates the most recent ones. At most
+     * 'report.rollup.backfillLimit' missing days are calculated per run, so the initial backfill is spread over several
+     * runs.
+     */
+    public void updateRollups() {
+        long today = getDayStart(System.currentTimeMillis());
+        long start = today - days * DAY;
+        long recalculateStart = today - recalculateDays * DAY;
+        int backfillCount = 0;
+        for (long deviceId : Context.getDeviceManager().getAllItems()) {
+            try {
+                Set<Long> existing = new HashSet<>();
+                for (Rollup rollup : dataManager.getRollups(deviceId, new Date(start), new Date(today))) {
+                    existing.add(rollup.getStartTime().getTime());
+                }
+                for (long day = today - DAY; day >= start; day -= DAY) {
+                    if (day >= recalculateStart) {
+                        updateRollup(deviceId, day);
+                    } else if (!existing.contains(day) && backfillCount < backfillLimit) {
+                        updateRollup(deviceId, day);
+                        backfillCount += 1;
+                    }
+                }
+            } catch (SQLException error) {
+                LOGGER.warn("Rollup update error", error);
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Removes the rollup of the day of a stored position that is older than the recalculated days, so summaries read
+     * raw positions for that day until it is calculated again.
+     */
+    public void invalidate(Position position) {
+        long today = getDayStart(System.currentTimeMillis());
+        long day = getDayStart(position.getFixTime().getTime());
+        if (day < today - recalculateDays * DAY && day >= today - days * DAY
+                && invalidated.add(position.getDeviceId() + ":" + day)) {
+            executor.execute(() -> {
+                try {
+                    dataManager.removeRollups(position.getDeviceId(), new Date(day), new Date(day + DAY));
+                } catch (SQLException error) {
+                    LOGGER.warn("Rollup invalidation error", error);
+                }
+            });
+        }
+    }
+
+    private void updateRollup(long deviceId, long day) throws SQLException {
+        SummaryAccumulator accumulator = new SummaryAccumulator();
+        dataManager.getPositions(deviceId, new Date(day), new Date(day + DAY - 1), accumulator::add);
+        invalidated.remove(deviceId + ":" + day);
+        dataManager.removeRollups(deviceId, new Date(day), new Date(day + DAY));
+        dataManager.addObject(accumulator.createRollup(deviceId, new Date(day)));
+    }
+
+    private void addPositions(
+            SummaryAccumulator accumulator, long deviceId, long from, long to) throws SQLException {
+        if (from <= to) {
+            dataManager.getPositions(deviceId, new Date(from), new Date(to), accumulator::add);
+        }
+    }
+
+    /**
+     * Returns summary using rollups for complete days inside the period, or null if the period does not contain any
+     * complete day with calculated rollups.
+     */
+    public SummaryReport getSummary(
+            long deviceId, Date from, Date to, boolean engineHoursEnabled, boolean ignoreOdometer)
+            throws SQLException {
+
+        long firstDay = getDayStart(from.getTime() + DAY - 1);
+        long lastDay = Math.min(getDayStart(to.getTime() + 1), getDayStart(System.currentTimeMillis()));
+        if (firstDay >= lastDay) {
+            return null;
+        }
+
+        Map<Long, Rollup> rollups = new HashMap<>();
+        for (Rollup rollup : dataManager.getRollups(deviceId, new Date(firstDay), new Date(lastDay))) {
+            rollups.put(rollup.getStartTime().getTime(), rollup);
+        }
+        if (rollups.isEmpty()) {
+            return null;
+        }
+
+        SummaryAccumulator accumulator = new SummaryAccumulator();
+        long rawStart = from.getTime();
+        for (long day = firstDay; day < lastDay; day += DAY) {
+            Rollup rollup = rollups.get(day);
+            if (rollup != null) {
+                addPositions(accumulator, deviceId, rawStart, day - 1);
+                accumulator.add(rollup);
+                rawStart = day + DAY;
+            }
+        }
+        addPositions(accumulator, deviceId, rawStart, to.getTime());
+
+        return accumulator.createReport(deviceId, engineHoursEnabled, ignoreOdometer);
+    }
+
+}
@@ -16,6 +16,7 @@
  */
 package org.traccar.reports;
 
+import java.io.Closeable;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
@@ -24,9 +25,23 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
 
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.StreamingOutput;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.util.WorkbookUtil;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.velocity.tools.generic.DateTool;
 import org.traccar.Context;
+import org.traccar.config.Keys;
 import org.traccar.model.Device;
 import org.traccar.model.Group;
 import org.traccar.model.Position;
@@ -37,49 +52,283 @@ public final class Route {
     private Route() {
     }
 
-    public static Collection<Position> getObjects(long userId, Collection<Long> deviceIds, Collection<Long> groupIds,
+    /**
+     * Validates period and permissions and returns the list of devices. Streamed reports call it before writing
+     * anything, so errors are returned as regular responses.
+     */
+    public static Collection<Long> checkDevices(long userId, Collection<Long> deviceIds, Collection<Long> groupIds,
             Date from, Date to) throws SQLException {
         ReportUtils.checkPeriodLimit(from, to);
-        ArrayList<Position> result = new ArrayList<>();
-        for (long deviceId: ReportUtils.getDeviceList(deviceIds, groupIds)) {
+        Collection<Long> devices = ReportUtils.getDeviceList(deviceIds, groupIds);
+        for (long deviceId: devices) {
             Context.getPermissionsManager().checkDevice(userId, deviceId);
-            result.addAll(Context.getDataManager().getPositions(deviceId, from, to));
+        }
+        return devices;
+    }
+
+    public static Collection<Position> getObjects(long userId, Collection<Long> deviceIds, Collection<Long> groupIds,
+            Date from, Date to) throws SQLException {
+        Collection<Long> devices = checkDevices(userId, deviceIds, groupIds, from, to);
+        ArrayList<Position> result = new ArrayList<>();
+        for (Collection<Position> positions
+                : ReportEngine.execute(devices, deviceId -> ReportUtils.getPositions(deviceId, from, to))) {
+            result.addAll(positions);
         }
         return result;
     }
 
+    public static StreamingOutput getJson(long userId, Collection<Long> deviceIds, Collection<Long> groupIds,
+            Date from, Date to) throws SQLException {
+        Collection<Long> devices = checkDevices(userId, deviceIds, groupIds, from, to);
+        return output -> {
+            try (JsonGenerator generator = Context.getObjectMapper().getFactory().createGenerator(output)) {
+                generator.writeStartArray();
+                for (long deviceId: devices) {
+                    ReportUtils.writePositions(deviceId, from, to, generator::writeObject);
+                }
+                generator.writeEndArray();
+            } catch (SQLException e) {
+                throw new WebApplicationException(e);
+            }
+        };
+    }
+
+    private static DeviceReport createDeviceReport(long deviceId) {
+        DeviceReport deviceRoutes = new DeviceReport();
+        Device device = Context.getIdentityManager().getById(deviceId);
+        deviceRoutes.setDeviceName(device.getName());
+        if (device.getGroupId() != 0) {
+            Group group = Context.getGroupsManager().getById(device.getGroupId());
+            if (group != null) {
+                deviceRoutes.setGroupName(group.getName());
+            }
+        }
+        return deviceRoutes;
+    }
+
     public static void getExcel(OutputStream outputStream,
             long userId, Collection<Long> deviceIds, Collection<Long> groupIds,
             Date from, Date to) throws SQLException, IOException {
-        ReportUtils.checkPeriodLimit(from, to);
-        ArrayList<DeviceReport> devicesRoutes = new ArrayList<>();
-        ArrayList<String> sheetNames = new ArrayList<>();
-        for (long deviceId: ReportUtils.getDeviceList(deviceIds, groupIds)) {
-            Context.getPermissionsManager().checkDevice(userId, deviceId);
-            Collection<Position> positions = Context.getDataManager()
-                    .getPositions(deviceId, from, to);
-            DeviceReport deviceRoutes = new DeviceReport();
-            Device device = Context.getIdentityManager().getById(deviceId);
-            deviceRoutes.setDeviceName(device.getName());
-            sheetNames.add(WorkbookUtil.createSafeSheetName(deviceRoutes.getDeviceName()));
-            if (device.getGroupId() != 0) {
-                Group group = Context.getGroupsManager().getById(device.getGroupId());
-                if (group != null) {
-                    deviceRoutes.setGroupName(group.getName());
+        Collection<Long> devices = checkDevices(userId, deviceIds, groupIds, from, to);
+        String templatePath = Context.getConfig().getString("report.templatesPath",
+                "templates/export/");
+        try (ExcelWriter writer = new ExcelWriter(userId, from, to,
+                Context.getConfig().getInteger(Keys.REPORT_STREAMING_THRESHOLD, 20000))) {
+            try (InputStream inputStream = new FileInputStream(templatePath + "/route.xlsx")) {
+                writer.loadLayout(inputStream);
+            }
+            for (long deviceId: devices) {
+                ReportEngine.checkCancelled();
+                writer.startDevice(createDeviceReport(deviceId));
+                ReportUtils.writePositions(deviceId, from, to, writer);
+            }
+            if (writer.isStreaming()) {
+                writer.write(outputStream);
+            } else {
+                ArrayList<String> sheetNames = new ArrayList<>();
+                for (DeviceReport deviceRoutes : writer.getDevices()) {
+                    sheetNames.add(WorkbookUtil.createSafeSheetName(deviceRoutes.getDeviceName()));
+                }
+                try (InputStream inputStream = new FileInputStream(templatePath + "/route.xlsx")) {
+                    org.jxls.common.Context jxlsContext = ReportUtils.initializeContext(userId);
+                    jxlsContext.putVar("devices", writer.getDevices());
+                    jxlsContext.putVar("sheetNames", sheetNames);
+                    jxlsContext.putVar("from", from);
+                    jxlsContext.putVar("to", to);
+                    ReportUtils.processTemplateWithSheets(inputStream, outputStream, jxlsContext);
                 }
             }
-            deviceRoutes.setObjects(positions);
-            devicesRoutes.add(deviceRoutes);
         }
-        String templatePath = Context.getConfig().getString("report.templatesPath",
-                "templates/export/");
-        try (InputStream inputStream = new FileInputStream(templatePath + "/route.xlsx")) {
-            org.jxls.common.Context jxlsContext = ReportUtils.initializeContext(userId);
-            jxlsContext.putVar("devices", devicesRoutes);
-            jxlsContext.putVar("sheetNames", sheetNames);
-            jxlsContext.putVar("from", from);
-            jxlsContext.putVar("to", to);
-            ReportUtils.processTemplateWithSheets(inputStream, outputStream, jxlsContext);
+    }
+
+    /**
+     * Collects positions for the template while the report is small and switches to a streaming spreadsheet with the
+     * same layout once the threshold is exceeded. Labels of the streamed sheets are taken from the template, but the
+     * column order is fixed.
+     */
+    static final class ExcelWriter implements ReportUtils.PositionConsumer, Closeable {
+
+        private static final String DATE_FORMAT = "YYYY-MM-dd HH:mm:ss";
+        private static final String LINK_FORMAT =
+                "https://www.openstreetmap.org/?mlat=%1$f&mlon=%2$f#map=16/%1$f/%2$f";
+
+        private final Date from;
+        private final Date to;
+        private final int threshold;
+        private final String speedUnit;
+        private final TimeZone timezone;
+        private final DateTool dateTool = new DateTool();
+
+        private final List<DeviceReport> devices = new ArrayList<>();
+        private int count;
+
+        private String[][] details = {
+                {},
+                {"Report type:", "Route"},
+                {},
+                {"Device:", "${device.deviceName}"},
+                {"Group:", "${device.groupName}"},
+                {"Period:", "${from - to}"},
+                {},
+        };
+        private String[] columns = {
+                "Valid", "Time", "Latitude", "Longitude", "Altitude", "Speed", "Address", "Attributes"};
+
+        private StreamingSpreadsheet spreadsheet;
+        private CellStyle coordinateStyle;
+        private CellStyle altitudeStyle;
+
+        ExcelWriter(long userId, Date from, Date to, int threshold) {
+            this(from, to, threshold, ReportUtils.getSpeedUnit(userId), ReportUtils.getTimezone(userId));
+        }
+
+        ExcelWriter(Date from, Date to, int threshold, String speedUnit, TimeZone timezone) {
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+            this.speedUnit = speedUnit;
+            this.timezone = timezone;
+        }
+
+        /**
+         * Reads detail rows and column headers from the template. Column headers are the row above the first row with
+         * position expressions, and all rows before it are detail rows.
+         */
+        public void loadLayout(InputStream inputStream) throws IOException {
+            DataFormatter formatter = new DataFormatter();
+            try (XSSFWorkbook workbook = new XSSFWorkbook(inputStream)) {
+                Sheet sheet = workbook.getSheetAt(0);
+                List<String[]> rows = new ArrayList<>();
+                for (int i = 0; i <= sheet.getLastRowNum(); i++) {
+                    Row row = sheet.getRow(i);
+                    String[] values = new String[row != null ? Math.max(row.getLastCellNum(), 0) : 0];
+                    for (int j = 0; j < values.length; j++) {
+                        values[j] = formatter.formatCellValue(row.getCell(j));
+                    }
+                    for (String value : values) {
+                        if (value.startsWith("${position") && rows.size() > 0) {
+                            columns = rows.remove(rows.size() - 1);
+                            details = rows.toArray(new String[0][]);
+                            return;
+                        }
+                    }
+                    rows.add(values);
+                }
+            }
+        }
+
+        public boolean isStreaming() {
+            return spreadsheet != null;
+        }
+
+        public List<DeviceReport> getDevices() {
+            return devices;
+        }
+
+        public void startDevice(DeviceReport deviceRoutes) {
+            if (isStreaming()) {
+                startSheet(deviceRoutes);
+            } else {
+                deviceRoutes.setObjects(new ArrayList<>());
+                devices.add(deviceRoutes);
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void write(Position position) {
+            if (isStreaming()) {
+                writeRow(position);
+            } else {
+                ((List<Position>) devices.get(devices.size() - 1).getObjects()).add(position);
+                if (++count > threshold) {
+                    startStreaming();
+                }
+            }
+        }
+
+        private void startStreaming() {
+            spreadsheet = new StreamingSpreadsheet();
+            coordinateStyle = spreadsheet.createStyle("0.000000");
+            altitudeStyle = spreadsheet.createStyle("0\" m\"");
+            for (DeviceReport deviceRoutes : devices) {
+                startSheet(deviceRoutes);
+                for (Object position : deviceRoutes.getObjects()) {
+                    writeRow((Position) position);
+                }
+            }
+            devices.clear();
         }
+
+        private String formatDate(Date date) {
+            return dateTool.format(DATE_FORMAT, date, Locale.getDefault(), timezone);
+        }
+
+        private String resolve(String value, DeviceReport deviceRoutes) {
+            if (!value.startsWith("${")) {
+                return value;
+            } else if (value.contains("deviceName")) {
+                return deviceRoutes.getDeviceName();
+            } else if (value.contains("groupName")) {
+                return deviceRoutes.getGroupName();
+            } else if (value.contains("from") && value.contains("to")) {
+                return formatDate(from) + " - " + formatDate(to);
+            }
+            return "";
+        }
+
+        private void startSheet(DeviceReport deviceRoutes) {
+            String[][] values = new String[details.length][];
+            for (int i = 0; i < details.length; i++) {
+                values[i] = new String[details[i].length];
+                for (int j = 0; j < details[i].length; j++) {
+                    values[i][j] = resolve(details[i][j], deviceRoutes);
+                }
+            }
+            spreadsheet.startSheet(deviceRoutes.getDeviceName(), values, columns);
+        }
+
+        private String formatSpeed(double speed) {
+            switch (speedUnit) {
+                case "kmh":
+                    return String.format("%.1f km/h", speed * 1.852);
+                case "mph":
+                    return String.format("%.1f mph", speed * 1.15078);
+                default:
+                    return String.format("%.1f kn", speed);
+            }
+        }
+
+        private void writeRow(Position position) {
+            Row row = spreadsheet.addRow();
+            spreadsheet.setBoolean(row, 0, position.getValid());
+            spreadsheet.setString(row, 1, formatDate(position.getFixTime()));
+            spreadsheet.setNumber(row, 2, position.getLatitude(), coordinateStyle);
+            spreadsheet.setNumber(row, 3, position.getLongitude(), coordinateStyle);
+            spreadsheet.setNumber(row, 4, position.getAltitude(), altitudeStyle);
+            spreadsheet.setString(row, 5, formatSpeed(position.getSpeed()));
+            String address = position.getAddress();
+            if (address == null) {
+                address = String.format(
+                        Locale.US, "%1$f\u00b0, %2$f\u00b0", position.getLatitude(), position.getLongitude());
+            }
+            spreadsheet.setLink(row, 6,
+                    String.format(Locale.US, LINK_FORMAT, position.getLatitude(), position.getLongitude()), address);
+            spreadsheet.setString(row, 7,
+                    position.getAttributes().toString().replaceAll(",", " ").replaceAll("[\\{\\}\"]", ""));
+        }
+
+        public void write(OutputStream outputStream) throws IOException {
+            spreadsheet.write(outputStream);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (spreadsheet != null) {
+                spreadsheet.close();
+            }
+        }
+
     }
+
 }
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2019 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.reports;
+
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Font;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.util.WorkbookUtil;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Spreadsheet writer that keeps only a small window of rows in memory and flushes the rest to temporary files.
+ */
+public class StreamingSpreadsheet implements Closeable {
+
+    private static final int WINDOW_SIZE = 100;
+    private static final int MAX_ROWS = SpreadsheetVersion.EXCEL2007.getMaxRows();
+    private static final int MAX_SHEET_NAME = 31;
+    private static final int COLUMN_WIDTH = 20 * 256;
+
+    private final SXSSFWorkbook workbook;
+    private final CellStyle headerStyle;
+    private final Set<String> sheetNames = new HashSet<>();
+
+    private SXSSFSheet sheet;
+    private String sheetName;
+    private String[] columns;
+    private int rowIndex;
+
+    public StreamingSpreadsheet() {
+        workbook = new SXSSFWorkbook(WINDOW_SIZE);
+        workbook.setCompressTempFiles(true);
+        headerStyle = workbook.createCellStyle();
+        Font font = workbook.createFont();
+        font.setBold(true);
+        headerStyle.setFont(font);
+    }
+
+    public CellStyle createStyle(String format) {
+        CellStyle style = workbook.createCellStyle();
+        style.setDataFormat(workbook.createDataFormat().getFormat(format));
+        return style;
+    }
+
+    private String getUniqueSheetName(String name) {
+        String baseName = WorkbookUtil.createSafeSheetName(name != null && !name.isEmpty() ? name : "Sheet");
+        String result = baseName;
+        int index = 2;
+        while (!sheetNames.add(result.toLowerCase())) {
+            String suffix = " (" + index++ + ")";
+            result = baseName.substring(0, Math.min(baseName.length(), MAX_SHEET_NAME - suffix.length())) + suffix;
+        }
+        return result;
+    }
+
+    private void createSheet(String name) {
+        sheet = workbook.createSheet(getUniqueSheetName(name));
+        for (int i = 0; i < columns.length; i++) {
+            sheet.setColumnWidth(i, COLUMN_WIDTH);
+        }
+        rowIndex = 0;
+    }
+
+    private void addColumnHeaders() {
+        Row row = sheet.createRow(rowIndex++);
+        for (int i = 0; i < columns.length; i++) {
+            Cell cell = row.createCell(i);
+            cell.setCellValue(columns[i]);
+            cell.setCellStyle(headerStyle);
+        }
+    }
+
+    /**
+     * Starts new sheet with label and value rows followed by column headers. Empty detail rows are kept as spacing.
+     */
+    public void startSheet(String name, String[][] details, String... columns) {
+        this.sheetName = name;
+        this.columns = columns;
+        createSheet(name);
+        for (String[] detail : details) {
+            Row row = sheet.createRow(rowIndex++);
+            for (int i = 0; i < detail.length; i++) {
+                if (detail[i] != null && !detail[i].isEmpty()) {
+                    row.createCell(i).setCellValue(detail[i]);
+                }
+            }
+        }
+        addColumnHeaders();
+    }
+
+    /**
+     * Returns new data row, continuing on an additional sheet when the current one is full.
+     */
+    public Row addRow() {
+        if (rowIndex >= MAX_ROWS) {
+            createSheet(sheetName);
+            addColumnHeaders();
+        }
+        return sheet.createRow(rowIndex++);
+    }
+
+    public void setString(Row row, int column, String value) {
+        if (value != null) {
+            row.createCell(column).setCellValue(value);
+        }
+    }
+
+    public void setBoolean(Row row, int column, boolean value) {
+        row.createCell(column).setCellValue(value);
+    }
+
+    public void setNumber(Row row, int column, double value, CellStyle style) {
+        Cell cell = row.createCell(column);
+        cell.setCellValue(value);
+        cell.setCellStyle(style);
+    }
+
+    /**
+     * Adds link as a formula, because number of hyperlink objects in a sheet is limited.
+     */
+    public void setLink(Row row, int column, String url, String text) {
+        row.createCell(column).setCellFormula(
+                "HYPERLINK(\"" + url.replace("\"", "\"\"") + "\",\"" + text.replace("\"", "\"\"") + "\")");
+    }
+
+    public void write(OutputStream outputStream) throws IOException {
+        workbook.write(outputStream);
+    }
+
+    @Override
+    public void close() throws IOException {
+        workbook.dispose();
+        workbook.close();
+    }
+
+}
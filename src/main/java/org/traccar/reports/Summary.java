@@ -21,13 +21,12 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.sql.SQLException;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 
 import org.jxls.util.JxlsHelper;
 import org.traccar.Context;
-import org.traccar.model.Position;
+import org.traccar.reports.model.DeviceActivity;
 import org.traccar.reports.model.SummaryReport;
 
 public final class Summary {
@@ -36,66 +35,33 @@ public final class Summary {
     }
 
     private static SummaryReport calculateSummaryResult(long deviceId, Date from, Date to) throws SQLException {
-        SummaryReport result = new SummaryReport();
-        result.setDeviceId(deviceId);
-        result.setDeviceName(Context.getIdentityManager().getById(deviceId).getName());
-        Collection<Position> positions = Context.getDataManager().getPositions(deviceId, from, to);
-        if (positions != null && !positions.isEmpty()) {
-            Position firstPosition = null;
-            Position previousPosition = null;
-            double speedSum = 0;
-            boolean engineHoursEnabled = Context.getConfig().getBoolean("processing.engineHours.enable");
-            for (Position position : positions) {
-                if (firstPosition == null) {
-                    firstPosition = position;
-                }
-                if (engineHoursEnabled && previousPosition != null
-                        && position.getBoolean(Position.KEY_IGNITION)
-                        && previousPosition.getBoolean(Position.KEY_IGNITION)) {
-                    // Temporary fallback for old data, to be removed in May 2019
-                    result.addEngineHours(position.getFixTime().getTime()
-                            - previousPosition.getFixTime().getTime());
-                }
-                previousPosition = position;
-                speedSum += position.getSpeed();
-                result.setMaxSpeed(position.getSpeed());
+        boolean engineHoursEnabled = Context.getConfig().getBoolean("processing.engineHours.enable");
+        boolean ignoreOdometer = Context.getDeviceManager()
+                .lookupAttributeBoolean(deviceId, "report.ignoreOdometer", false, false, true);
+        if (Context.getRollupManager() != null) {
+            SummaryReport result = Context.getRollupManager().getSummary(
+                    deviceId, from, to, engineHoursEnabled, ignoreOdometer);
+            if (result != null) {
+                return result;
             }
-            boolean ignoreOdometer = Context.getDeviceManager()
-                    .lookupAttributeBoolean(deviceId, "report.ignoreOdometer", false, false, true);
-            result.setDistance(ReportUtils.calculateDistance(firstPosition, previousPosition, !ignoreOdometer));
-            result.setAverageSpeed(speedSum / positions.size());
-            result.setSpentFuel(ReportUtils.calculateFuel(firstPosition, previousPosition));
-
-            if (engineHoursEnabled
-                    && firstPosition.getAttributes().containsKey(Position.KEY_HOURS)
-                    && previousPosition.getAttributes().containsKey(Position.KEY_HOURS)) {
-                result.setEngineHours(
-                        previousPosition.getLong(Position.KEY_HOURS) - firstPosition.getLong(Position.KEY_HOURS));
-            }
-
-            if (!ignoreOdometer
-                    && firstPosition.getDouble(Position.KEY_ODOMETER) != 0
-                    && previousPosition.getDouble(Position.KEY_ODOMETER) != 0) {
-                result.setStartOdometer(firstPosition.getDouble(Position.KEY_ODOMETER));
-                result.setEndOdometer(previousPosition.getDouble(Position.KEY_ODOMETER));
-            } else {
-                result.setStartOdometer(firstPosition.getDouble(Position.KEY_TOTAL_DISTANCE));
-                result.setEndOdometer(previousPosition.getDouble(Position.KEY_TOTAL_DISTANCE));
-            }
-
         }
-        return result;
+        DeviceActivity activity = ReportUtils.getCachedDeviceActivity(deviceId, from, to);
+        if (activity != null) {
+            return activity.getSummary();
+        }
+        SummaryAccumulator accumulator = new SummaryAccumulator();
+        Context.getDataManager().getPositions(deviceId, from, to, accumulator::add);
+        return accumulator.createReport(deviceId, engineHoursEnabled, ignoreOdometer);
     }
 
     public static Collection<SummaryReport> getObjects(long userId, Collection<Long> deviceIds,
             Collection<Long> groupIds, Date from, Date to) throws SQLException {
         ReportUtils.checkPeriodLimit(from, to);
-        ArrayList<SummaryReport> result = new ArrayList<>();
-        for (long deviceId: ReportUtils.getDeviceList(deviceIds, groupIds)) {
+        Collection<Long> devices = ReportUtils.getDeviceList(deviceIds, groupIds);
+        for (long deviceId: devices) {
             Context.getPermissionsManager().checkDevice(userId, deviceId);
-            result.add(calculateSummaryResult(deviceId, from, to));
         }
-        return result;
+        return ReportEngine.execute(devices, deviceId -> calculateSummaryResult(deviceId, from, to));
     }
 
     public static void getExcel(OutputStream outputStream,
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2019 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.reports;
+
+import org.traccar.Context;
+import org.traccar.model.Position;
+import org.traccar.model.Rollup;
+import org.traccar.reports.model.SummaryReport;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Collects summary values from consecutive positions and daily rollups in chronological order.
+ */
+public class SummaryAccumulator {
+
+    private static final String[] ENDPOINT_KEYS = {
+            Position.KEY_ODOMETER, Position.KEY_TOTAL_DISTANCE, Position.KEY_FUEL_LEVEL, Position.KEY_HOURS};
+
+    private Position firstPosition;
+    private Position lastPosition;
+    private long count;
+    private double speedSum;
+    private double maxSpeed;
+    private long ignitionTime;
+
+    public long getCount() {
+        return count;
+    }
+
+    private void addIgnitionTime(Position position) {
+        if (lastPosition != null
+                && lastPosition.getBoolean(Position.KEY_IGNITION) && position.getBoolean(Position.KEY_IGNITION)) {
+            ignitionTime += position.getFixTime().getTime() - lastPosition.getFixTime().getTime();
+        }
+    }
+
+    public void add(Position position) {
+        if (firstPosition == null) {
+            firstPosition = position;
+        }
+        addIgnitionTime(position);
+        lastPosition = position;
+        speedSum += position.getSpeed();
+        maxSpeed = Math.max(maxSpeed, position.getSpeed());
+        count += 1;
+    }
+
+    public void add(Rollup rollup) {
+        if (rollup.getPositionCount() == 0) {
+            return;
+        }
+        Position first = createPosition(rollup, Rollup.KEY_FIRST, rollup.getFirstTime(), rollup.getFirstIgnition());
+        if (firstPosition == null) {
+            firstPosition = first;
+        }
+        addIgnitionTime(first);
+        lastPosition = createPosition(rollup, Rollup.KEY_LAST, rollup.getLastTime(), rollup.getLastIgnition());
+        speedSum += rollup.getSpeedSum();
+        maxSpeed = Math.max(maxSpeed, rollup.getMaxSpeed());
+        ignitionTime += rollup.getIgnitionTime();
+        count += rollup.getPositionCount();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Position createPosition(Rollup rollup, String key, Date time, boolean ignition) {
+        Position position = new Position();
+        position.setDeviceId(rollup.getDeviceId());
+        position.setTime(time);
+        Object attributes = rollup.getAttributes().get(key);
+        if (attributes instanceof Map) {
+            position.getAttributes().putAll((Map<String, Object>) attributes);
+        }
+        position.set(Position.KEY_IGNITION, ignition);
+        return position;
+    }
+
+    private static Map<String, Object> getEndpointAttributes(Position position) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (String key : ENDPOINT_KEYS) {
+            Object value = position.getAttributes().get(key);
+            if (value != null) {
+                result.put(key, value);
+            }
+        }
+        return result;
+    }
+
+    public Rollup createRollup(long deviceId, Date startTime) {
+        Rollup rollup = new Rollup();
+        rollup.setDeviceId(deviceId);
+        rollup.setStartTime(startTime);
+        rollup.setPositionCount(count);
+        if (count > 0) {
+            rollup.setSpeedSum(speedSum);
+            rollup.setMaxSpeed(maxSpeed);
+            rollup.setIgnitionTime(ignitionTime);
+            rollup.setFirstTime(firstPosition.getFixTime());
+            rollup.setLastTime(lastPosition.getFixTime());
+            rollup.setFirstIgnition(firstPosition.getBoolean(Position.KEY_IGNITION));
+            rollup.setLastIgnition(lastPosition.getBoolean(Position.KEY_IGNITION));
+            rollup.getAttributes().put(Rollup.KEY_FIRST, getEndpointAttributes(firstPosition));
+            rollup.getAttributes().put(Rollup.KEY_LAST, getEndpointAttributes(lastPosition));
+        }
+        return rollup;
+    }
+
+    public SummaryReport createReport(long deviceId, boolean engineHoursEnabled, boolean ignoreOdometer) {
+        SummaryReport result = new SummaryReport();
+        result.setDeviceId(deviceId);
+        result.setDeviceName(Context.getIdentityManager().getById(deviceId).getName());
+        if (count == 0) {
+            return result;
+        }
+
+        result.setMaxSpeed(maxSpeed);
+        if (engineHoursEnabled) {
+            // Temporary fallback for old data, to be removed in May 2019
+            result.addEngineHours(ignitionTime);
+        }
+
+        result.setDistance(ReportUtils.calculateDistance(firstPosition, lastPosition, !ignoreOdometer));
+        result.setAverageSpeed(speedSum / count);
+        result.setSpentFuel(ReportUtils.calculateFuel(firstPosition, lastPosition));
+
+        if (engineHoursEnabled
+                && firstPosition.getAttributes().containsKey(Position.KEY_HOURS)
+                && lastPosition.getAttributes().containsKey(Position.KEY_HOURS)) {
+            result.setEngineHours(lastPosition.getLong(Position.KEY_HOURS) - firstPosition.getLong(Position.KEY_HOURS));
+        }
+
+        if (!ignoreOdometer
+                && firstPosition.getDouble(Position.KEY_ODOMETER) != 0
+                && lastPosition.getDouble(Position.KEY_ODOMETER) != 0) {
+            result.setStartOdometer(firstPosition.getDouble(Position.KEY_ODOMETER));
+            result.setEndOdometer(lastPosition.getDouble(Position.KEY_ODOMETER));
+        } else {
+            result.setStartOdometer(firstPosition.getDouble(Position.KEY_TOTAL_DISTANCE));
+            result.setEndOdometer(lastPosition.getDouble(Position.KEY_TOTAL_DISTANCE));
+        }
+
+        return result;
+    }
+
+}
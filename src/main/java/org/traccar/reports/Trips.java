@@ -24,12 +24,10 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.List;
 
 import org.apache.poi.ss.util.WorkbookUtil;
 import org.traccar.Context;
-import org.traccar.Main;
-import org.traccar.database.DeviceManager;
-import org.traccar.database.IdentityManager;
 import org.traccar.model.Device;
 import org.traccar.model.Group;
 import org.traccar.reports.model.DeviceReport;
@@ -41,24 +39,22 @@ public final class Trips {
     }
 
     private static Collection<TripReport> detectTrips(long deviceId, Date from, Date to) throws SQLException {
-        boolean ignoreOdometer = Context.getDeviceManager()
-                .lookupAttributeBoolean(deviceId, "report.ignoreOdometer", false, false, true);
-
-        IdentityManager identityManager = Main.getInjector().getInstance(IdentityManager.class);
-        DeviceManager deviceManager = Main.getInjector().getInstance(DeviceManager.class);
-
-        return ReportUtils.detectTripsAndStops(
-                identityManager, deviceManager, Context.getDataManager().getPositions(deviceId, from, to),
-                Context.getTripsConfig(), ignoreOdometer, TripReport.class);
+        Collection<TripReport> result = ReportUtils.getDeviceActivity(deviceId, from, to).getTrips();
+        ReportUtils.resolveAddresses(result);
+        return result;
     }
 
     public static Collection<TripReport> getObjects(long userId, Collection<Long> deviceIds, Collection<Long> groupIds,
             Date from, Date to) throws SQLException {
         ReportUtils.checkPeriodLimit(from, to);
-        ArrayList<TripReport> result = new ArrayList<>();
-        for (long deviceId: ReportUtils.getDeviceList(deviceIds, groupIds)) {
+        Collection<Long> devices = ReportUtils.getDeviceList(deviceIds, groupIds);
+        for (long deviceId: devices) {
             Context.getPermissionsManager().checkDevice(userId, deviceId);
-            result.addAll(detectTrips(deviceId, from, to));
+        }
+        ArrayList<TripReport> result = new ArrayList<>();
+        for (Collection<TripReport> deviceResult
+                : ReportEngine.execute(devices, deviceId -> detectTrips(deviceId, from, to))) {
+            result.addAll(deviceResult);
         }
         return result;
     }
@@ -69,9 +65,15 @@ public final class Trips {
         ReportUtils.checkPeriodLimit(from, to);
         ArrayList<DeviceReport> devicesTrips = new ArrayList<>();
         ArrayList<String> sheetNames = new ArrayList<>();
-        for (long deviceId: ReportUtils.getDeviceList(deviceIds, groupIds)) {
+        Collection<Long> devices = ReportUtils.getDeviceList(deviceIds, groupIds);
+        for (long deviceId: devices) {
             Context.getPermissionsManager().checkDevice(userId, deviceId);
-            Collection<TripReport> trips = detectTrips(deviceId, from, to);
+        }
+        List<Collection<TripReport>> results = ReportEngine.execute(
+                devices, deviceId -> detectTrips(deviceId, from, to));
+        int index = 0;
+        for (long deviceId: devices) {
+            Collection<TripReport> trips = results.get(index++);
             DeviceReport deviceTrips = new DeviceReport();
             Device device = Context.getIdentityManager().getById(deviceId);
             deviceTrips.setDeviceName(device.getName());
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2019 Anton Tananaev (anton@traccar.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.traccar.reports.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+public class DeviceActivity {
+
+    private Collection<TripReport> trips = new ArrayList<>();
+
+    public Collection<TripReport> getTrips() {
+        return trips;
+    }
+
+    public void setTrips(Collection<TripReport> trips) {
+        this.trips = trips;
+    }
+
+    private Collection<StopReport> stops = new ArrayList<>();
+
+    public Collection<StopReport> getStops() {
+        return stops;
+    }
+
+    public void setStops(Collection<StopReport> stops) {
+        this.stops = stops;
+    }
+
+    private SummaryReport summary;
+
+    public SummaryReport getSummary() {
+        return summary;
+    }
+
+    public void setSummary(SummaryReport summary) {
+        this.summary = summary;
+    }
+
+}
@@ -29,6 +29,11 @@ public final class TestIdentityManager implements IdentityManager {
         return createDevice();
     }
 
+    @Override
+    public Device getCachedByUniqueId(String uniqueId) {
+        return createDevice();
+    }
+
     @Override
     public String getDevicePassword(long id, String protocol, String defaultPassword) {
         return defaultPassword;
@@ -0,0 +1,199 @@
+package org.traccar.api;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.junit.Test;
+import org.traccar.BaseTest;
+import org.traccar.Context;
+import org.traccar.database.ConnectionManager;
+import org.traccar.model.Device;
+import org.traccar.model.Event;
+import org.traccar.model.Position;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AsyncSocketTest extends BaseTest {
+
+    private static final long TIMEOUT = 10;
+
+    private static class TestSocket extends AsyncSocket {
+
+        private final List<String> messages = new CopyOnWriteArrayList<>();
+        private final CountDownLatch sent = new CountDownLatch(1);
+
+        TestSocket() {
+            this(null, 0);
+        }
+
+        TestSocket(ScheduledExecutorService executor, long updateInterval) {
+            super(1, executor, updateInterval);
+        }
+
+        @Override
+        protected boolean sendData(String message, WriteCallback callback) {
+            messages.add(message);
+            sent.countDown();
+            return true;
+        }
+
+        JsonNode getMessage(int index) throws IOException {
+            return Context.getObjectMapper().readTree(messages.get(index));
+        }
+
+    }
+
+    private static Position createPosition(long id, long deviceId) {
+        Position position = new Position();
+        position.setId(id);
+        position.setDeviceId(deviceId);
+        return position;
+    }
+
+    private static Device createDevice(long id) {
+        Device device = new Device();
+        device.setId(id);
+        return device;
+    }
+
+    private static Event createEvent(long id) {
+        Event event = new Event();
+        event.setId(id);
+        return event;
+    }
+
+    private static ConnectionManager.JsonPayload createPayload(long id) {
+        return new ConnectionManager.JsonPayload(Collections.singletonMap("id", id));
+    }
+
+    private static void updatePosition(AsyncSocket socket, Position position) {
+        socket.onUpdatePosition(position, createPayload(position.getId()));
+    }
+
+    private static void updateDevice(AsyncSocket socket, Device device) {
+        socket.onUpdateDevice(device, createPayload(device.getId()));
+    }
+
+    private static void updateEvent(AsyncSocket socket, Event event) {
+        socket.onUpdateEvent(event, createPayload(event.getId()));
+    }
+
+    private static List<Long> getIds(JsonNode array) {
+        List<Long> result = new ArrayList<>();
+        for (JsonNode node : array) {
+            result.add(node.get("id").asLong());
+        }
+        return result;
+    }
+
+    private static List<Long> ids(long first, long last) {
+        List<Long> result = new ArrayList<>();
+        for (long id = first; id <= last; id++) {
+            result.add(id);
+        }
+        return result;
+    }
+
+    @Test
+    public void testCoalescing() throws Exception {
+        TestSocket socket = new TestSocket();
+        long dropped = AsyncSocket.getDroppedUpdates();
+
+        updatePosition(socket, createPosition(1, 1));
+        assertEquals(1, socket.messages.size());
+        assertEquals(ids(1, 1), getIds(socket.getMessage(0).get("positions")));
+
+        updatePosition(socket, createPosition(2, 1));
+        updatePosition(socket, createPosition(3, 1));
+        updatePosition(socket, createPosition(4, 2));
+        assertEquals(1, socket.messages.size());
+        assertEquals(dropped + 1, AsyncSocket.getDroppedUpdates());
+
+        socket.writeSuccess();
+        assertEquals(2, socket.messages.size());
+        assertEquals(ids(3, 4), getIds(socket.getMessage(1).get("positions")));
+
+        socket.writeSuccess();
+        assertEquals(2, socket.messages.size());
+    }
+
+    @Test
+    public void testUpdateInterval() throws Exception {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            CountDownLatch release = new CountDownLatch(1);
+            executor.execute(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+
+            TestSocket socket = new TestSocket(executor, 1);
+            for (int i = 1; i <= 10; i++) {
+                updatePosition(socket, createPosition(i, i % 2));
+            }
+            assertEquals(0, socket.messages.size());
+
+            release.countDown();
+            assertTrue(socket.sent.await(TIMEOUT, TimeUnit.SECONDS));
+            assertEquals(1, socket.messages.size());
+            assertEquals(Arrays.asList(9L, 10L), getIds(socket.getMessage(0).get("positions")));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testOrdering() throws Exception {
+        TestSocket socket = new TestSocket();
+
+        updateDevice(socket, createDevice(1));
+        assertEquals(1, socket.messages.size());
+
+        for (int i = 1; i <= 5; i++) {
+            updateEvent(socket, createEvent(i));
+        }
+        updatePosition(socket, createPosition(1, 1));
+        updateDevice(socket, createDevice(2));
+        updateDevice(socket, createDevice(1));
+        socket.writeFailed(new IOException());
+
+        assertEquals(2, socket.messages.size());
+        JsonNode message = socket.getMessage(1);
+        Iterator<String> keys = message.fieldNames();
+        assertEquals("devices", keys.next());
+        assertEquals("positions", keys.next());
+        assertEquals("events", keys.next());
+        assertEquals(Arrays.asList(2L, 1L), getIds(message.get("devices")));
+        assertEquals(ids(1, 5), getIds(message.get("events")));
+    }
+
+    @Test
+    public void testEventsLimit() throws Exception {
+        TestSocket socket = new TestSocket();
+
+        updateDevice(socket, createDevice(1));
+        for (int i = 1; i <= 105; i++) {
+            updateEvent(socket, createEvent(i));
+        }
+        socket.writeSuccess();
+
+        assertEquals(2, socket.messages.size());
+        assertEquals(ids(6, 105), getIds(socket.getMessage(1).get("events")));
+    }
+
+}
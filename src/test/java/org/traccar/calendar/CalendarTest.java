@@ -55,5 +55,15 @@ public class CalendarTest {
         assertTrue(calendar.checkMoment(date));
         date = format.parse("2016-12-13 07:00:01+05");
         assertTrue(!calendar.checkMoment(date));
+
+        calendar.updateOccurrences(format.parse("2016-12-10 12:00:00+05"));
+        date = format.parse("2016-12-13 22:59:59+05");
+        assertTrue(!calendar.checkMoment(date));
+        date = format.parse("2016-12-13 23:00:01+05");
+        assertTrue(calendar.checkMoment(date));
+        date = format.parse("2016-12-13 06:59:59+05");
+        assertTrue(calendar.checkMoment(date));
+        date = format.parse("2016-12-13 07:00:01+05");
+        assertTrue(!calendar.checkMoment(date));
     }
 }
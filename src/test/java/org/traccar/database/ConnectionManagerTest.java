@@ -0,0 +1,164 @@
+package org.traccar.database;
+
+import org.junit.Test;
+import org.traccar.BaseTest;
+import org.traccar.Context;
+import org.traccar.config.Keys;
+import org.traccar.model.Device;
+import org.traccar.model.Event;
+import org.traccar.model.Position;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ConnectionManagerTest extends BaseTest {
+
+    private static final long TIMEOUT = 10;
+
+    private static class EventListener implements ConnectionManager.UpdateListener {
+
+        private final List<Long> events = new CopyOnWriteArrayList<>();
+        private final CountDownLatch received;
+
+        EventListener(int count) {
+            received = new CountDownLatch(count);
+        }
+
+        @Override
+        public void onUpdateDevice(Device device, ConnectionManager.JsonPayload payload) {
+        }
+
+        @Override
+        public void onUpdatePosition(Position position, ConnectionManager.JsonPayload payload) {
+        }
+
+        @Override
+        public void onUpdateEvent(Event event, ConnectionManager.JsonPayload payload) {
+            events.add(event.getId());
+            received.countDown();
+        }
+
+    }
+
+    private static Event createEvent(long id) {
+        Event event = new Event();
+        event.setId(id);
+        return event;
+    }
+
+    private static ConnectionManager createConnectionManager() {
+        Context.getConfig().setString(Keys.SERVER_LISTENER_THREADS, "2");
+        return new ConnectionManager();
+    }
+
+    @Test
+    public void testOrder() throws Exception {
+        ConnectionManager connectionManager = createConnectionManager();
+        int count = 1000;
+        EventListener listener = new EventListener(count);
+        connectionManager.addListener(1, listener);
+
+        for (int i = 0; i < count; i++) {
+            connectionManager.updateEvent(1, createEvent(i));
+        }
+
+        assertTrue(listener.received.await(TIMEOUT, TimeUnit.SECONDS));
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, (long) listener.events.get(i));
+        }
+    }
+
+    @Test
+    public void testSlowListener() throws Exception {
+        ConnectionManager connectionManager = createConnectionManager();
+        CountDownLatch release = new CountDownLatch(1);
+        EventListener slow = new EventListener(2) {
+            @Override
+            public void onUpdateEvent(Event event, ConnectionManager.JsonPayload payload) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.onUpdateEvent(event, payload);
+            }
+        };
+        EventListener fast = new EventListener(2);
+        connectionManager.addListener(1, slow);
+        connectionManager.addListener(1, fast);
+
+        connectionManager.updateEvent(1, createEvent(1));
+        connectionManager.updateEvent(1, createEvent(2));
+
+        assertTrue(fast.received.await(TIMEOUT, TimeUnit.SECONDS));
+        assertEquals(0, slow.events.size());
+
+        release.countDown();
+        assertTrue(slow.received.await(TIMEOUT, TimeUnit.SECONDS));
+        assertEquals(1, (long) slow.events.get(0));
+        assertEquals(2, (long) slow.events.get(1));
+    }
+
+    @Test
+    public void testRemoveListener() throws Exception {
+        ConnectionManager connectionManager = createConnectionManager();
+        EventListener removed = new EventListener(1);
+        EventListener remaining = new EventListener(1);
+        connectionManager.addListener(1, removed);
+        connectionManager.addListener(1, remaining);
+        connectionManager.removeListener(1, removed);
+
+        connectionManager.updateEvent(1, createEvent(1));
+
+        assertTrue(remaining.received.await(TIMEOUT, TimeUnit.SECONDS));
+        assertEquals(0, removed.events.size());
+    }
+
+    public static class CountingObject {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        public int getValue() {
+            return count.incrementAndGet();
+        }
+
+    }
+
+    @Test
+    public void testJsonPayload() throws Exception {
+        CountingObject object = new CountingObject();
+        ConnectionManager.JsonPayload payload = new ConnectionManager.JsonPayload(object);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return payload.getJson();
+                }));
+            }
+            start.countDown();
+            String json = payload.getJson();
+            for (Future<String> result : results) {
+                assertSame(json, result.get(TIMEOUT, TimeUnit.SECONDS));
+            }
+            assertEquals("{\"value\":1}", json);
+            assertEquals(1, object.count.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
@@ -0,0 +1,151 @@
+package org.traccar.database;
+
+import org.junit.Test;
+import org.traccar.model.Device;
+import org.traccar.model.Group;
+import org.traccar.model.Permission;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PermissionsManagerTest {
+
+    private static final long TIMEOUT = 10;
+
+    private static Group createGroup(long id, long parent) {
+        Group group = new Group();
+        group.setId(id);
+        group.setGroupId(parent);
+        return group;
+    }
+
+    private static Device createDevice(long id, long parent) {
+        Device device = new Device();
+        device.setId(id);
+        device.setGroupId(parent);
+        return device;
+    }
+
+    private static Permission createPermission(String owner, long ownerId, String property, long propertyId)
+            throws ClassNotFoundException {
+        LinkedHashMap<String, Long> map = new LinkedHashMap<>();
+        map.put(owner, ownerId);
+        map.put(property, propertyId);
+        return new Permission(map);
+    }
+
+    private static Set<Long> setOf(Long... values) {
+        return new HashSet<>(Arrays.asList(values));
+    }
+
+    private static void update(PermissionsManager permissionsManager, long userId, long firstDevice, int count)
+            throws ClassNotFoundException {
+        Collection<Permission> devicePermissions = new ArrayList<>();
+        for (long deviceId = firstDevice; deviceId < firstDevice + count; deviceId++) {
+            devicePermissions.add(createPermission("userId", userId, "deviceId", deviceId));
+        }
+        permissionsManager.updateDeviceAndGroupPermissions(
+                new GroupTree(Collections.emptyList(), Collections.emptyList()), Collections.emptyList(),
+                Collections.emptyList(), devicePermissions);
+    }
+
+    @Test
+    public void testUpdate() throws Exception {
+        PermissionsManager permissionsManager = new PermissionsManager(null, null, false);
+
+        List<Group> groups = Arrays.asList(createGroup(1, 0), createGroup(2, 1), createGroup(3, 0));
+        List<Device> devices = Arrays.asList(createDevice(10, 2), createDevice(11, 0), createDevice(12, 3));
+        permissionsManager.updateDeviceAndGroupPermissions(
+                new GroupTree(groups, devices), Arrays.asList(1L, 2L, 3L),
+                Collections.singletonList(createPermission("userId", 1, "groupId", 1)),
+                Collections.singletonList(createPermission("userId", 2, "deviceId", 11)));
+
+        assertEquals(setOf(1L, 2L), permissionsManager.getGroupPermissions(1));
+        assertEquals(setOf(10L), permissionsManager.getDevicePermissions(1));
+        assertEquals(setOf(11L), permissionsManager.getDevicePermissions(2));
+        assertTrue(permissionsManager.getGroupPermissions(2).isEmpty());
+        assertEquals(setOf(10L), permissionsManager.getGroupDevices(1));
+        assertEquals(setOf(12L), permissionsManager.getGroupDevices(3));
+    }
+
+    @Test
+    public void testSnapshotImmutable() throws Exception {
+        PermissionsManager permissionsManager = new PermissionsManager(null, null, false);
+
+        update(permissionsManager, 1, 1, 3);
+        Set<Long> before = permissionsManager.getDevicePermissions(1);
+        update(permissionsManager, 1, 10, 2);
+
+        assertEquals(setOf(1L, 2L, 3L), before);
+        assertEquals(setOf(10L, 11L), permissionsManager.getDevicePermissions(1));
+        try {
+            before.add(4L);
+            fail();
+        } catch (UnsupportedOperationException e) {
+            assertFalse(before.contains(4L));
+        }
+    }
+
+    @Test
+    public void testConcurrentReaders() throws Exception {
+        int count = 100;
+        PermissionsManager permissionsManager = new PermissionsManager(null, null, false);
+        update(permissionsManager, 1, 0, count);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch started = new CountDownLatch(3);
+        try {
+            List<Future<?>> readers = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                readers.add(executor.submit(() -> {
+                    started.countDown();
+                    while (running.get()) {
+                        Set<Long> devices = permissionsManager.getDevicePermissions(1);
+                        assertEquals(count, devices.size());
+                        long first = devices.iterator().next();
+                        assertTrue(first == 0 || first == count);
+                        for (long deviceId = first; deviceId < first + count; deviceId++) {
+                            assertTrue(devices.contains(deviceId));
+                        }
+                    }
+                }));
+            }
+
+            Future<?> writer = executor.submit(() -> {
+                started.await();
+                for (int i = 1; i <= 1000; i++) {
+                    update(permissionsManager, 1, i % 2 * count, count);
+                }
+                return null;
+            });
+
+            writer.get(TIMEOUT, TimeUnit.SECONDS);
+            running.set(false);
+            for (Future<?> reader : readers) {
+                reader.get(TIMEOUT, TimeUnit.SECONDS);
+            }
+        } finally {
+            running.set(false);
+            executor.shutdownNow();
+        }
+    }
+
+}
@@ -0,0 +1,150 @@
+package org.traccar.database;
+
+import org.junit.Test;
+import org.traccar.model.Position;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PositionWriterTest {
+
+    private static final long TIMEOUT = 10;
+
+    private static Position position(long deviceId) {
+        Position position = new Position();
+        position.setDeviceId(deviceId);
+        return position;
+    }
+
+    @Test
+    public void testFlushBySize() throws Exception {
+        List<Integer> batches = new CopyOnWriteArrayList<>();
+        CountDownLatch latch = new CountDownLatch(3);
+        PositionWriter writer = new PositionWriter(
+                positions -> batches.add(positions.size()), 1, 3, TimeUnit.HOURS.toMillis(1), 10);
+        try {
+            for (int i = 0; i < 3; i++) {
+                assertTrue(writer.write(position(1), (position, stored) -> latch.countDown()));
+            }
+            assertTrue(latch.await(TIMEOUT, TimeUnit.SECONDS));
+            assertEquals(3, batches.stream().mapToInt(Integer::intValue).sum());
+            assertTrue(batches.stream().allMatch(size -> size <= 3));
+        } finally {
+            writer.stop();
+        }
+    }
+
+    @Test
+    public void testFlushByAge() throws Exception {
+        List<Integer> batches = new CopyOnWriteArrayList<>();
+        CountDownLatch latch = new CountDownLatch(1);
+        PositionWriter writer = new PositionWriter(
+                positions -> batches.add(positions.size()), 1, 100, 1, 10);
+        try {
+            assertTrue(writer.write(position(1), (position, stored) -> latch.countDown()));
+            assertTrue(latch.await(TIMEOUT, TimeUnit.SECONDS));
+            assertEquals(1, batches.size());
+            assertEquals(1, (int) batches.get(0));
+        } finally {
+            writer.stop();
+        }
+    }
+
+    @Test
+    public void testGeneratedIds() throws Exception {
+        AtomicLong sequence = new AtomicLong();
+        Map<Position, Long> results = new ConcurrentHashMap<>();
+        CountDownLatch latch = new CountDownLatch(10);
+        PositionWriter writer = new PositionWriter(positions -> {
+            for (Position position : positions) {
+                position.setId(sequence.incrementAndGet());
+            }
+        }, 2, 4, 1, 100);
+        try {
+            List<Position> positions = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                Position position = position(i);
+                positions.add(position);
+                assertTrue(writer.write(position, (written, stored) -> {
+                    assertTrue(stored);
+                    results.put(written, written.getId());
+                    latch.countDown();
+                }));
+            }
+            assertTrue(latch.await(TIMEOUT, TimeUnit.SECONDS));
+            for (Position position : positions) {
+                assertTrue(results.get(position) > 0);
+            }
+            assertEquals(10, results.values().stream().distinct().count());
+        } finally {
+            writer.stop();
+        }
+    }
+
+    @Test
+    public void testStoreFailure() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        List<Boolean> results = new CopyOnWriteArrayList<>();
+        PositionWriter writer = new PositionWriter(positions -> {
+            throw new SQLException("failure");
+        }, 1, 10, 1, 10);
+        try {
+            assertTrue(writer.write(position(1), (position, stored) -> {
+                results.add(stored);
+                latch.countDown();
+            }));
+            assertTrue(latch.await(TIMEOUT, TimeUnit.SECONDS));
+            assertFalse(results.get(0));
+        } finally {
+            writer.stop();
+        }
+    }
+
+    @Test
+    public void testQueueFull() throws Exception {
+        CountDownLatch storing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch written = new CountDownLatch(2);
+        List<Position> callbacks = new CopyOnWriteArrayList<>();
+        PositionWriter writer = new PositionWriter(positions -> {
+            storing.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, 1, 1, 0, 1);
+        try {
+            PositionWriter.Callback callback = (position, stored) -> {
+                callbacks.add(position);
+                written.countDown();
+            };
+            Position first = position(1);
+            Position second = position(1);
+            assertTrue(writer.write(first, callback));
+            assertTrue(storing.await(TIMEOUT, TimeUnit.SECONDS));
+            assertTrue(writer.write(second, callback));
+            assertFalse(writer.write(position(1), callback));
+
+            release.countDown();
+            assertTrue(written.await(TIMEOUT, TimeUnit.SECONDS));
+            assertEquals(first, callbacks.get(0));
+            assertEquals(second, callbacks.get(1));
+        } finally {
+            writer.stop();
+        }
+        assertEquals(2, callbacks.size());
+    }
+
+}
@@ -0,0 +1,52 @@
+package org.traccar.database;
+
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class UnknownDeviceFilterTest {
+
+    @Test
+    public void testFilter() {
+
+        UnknownDeviceFilter filter = new UnknownDeviceFilter(60000, 100, 2);
+        InetSocketAddress first = new InetSocketAddress("10.0.0.1", 5000);
+        InetSocketAddress second = new InetSocketAddress("10.0.0.2", 5000);
+
+        assertTrue(filter.accept(first, "123"));
+        filter.register(first, "123");
+        assertFalse(filter.accept(first, "123"));
+        assertTrue(filter.accept(second, "123"));
+        assertTrue(filter.accept(first, "456"));
+
+        filter.register(first, "456");
+        assertFalse(filter.accept(first, "789"));
+        assertTrue(filter.accept(second, "789"));
+
+        assertEquals(2, filter.getUnknownCount());
+        assertEquals(1, filter.getCachedCount());
+        assertEquals(1, filter.getThrottledCount());
+
+    }
+
+    @Test
+    public void testRemove() {
+
+        UnknownDeviceFilter filter = new UnknownDeviceFilter(60000, 100, 0);
+        InetSocketAddress address = new InetSocketAddress("10.0.0.1", 5000);
+
+        filter.register(address, "123", "456");
+        assertFalse(filter.accept(address, "123", "456"));
+        assertTrue(filter.accept(address, "123", "789"));
+
+        filter.remove("456");
+        assertTrue(filter.accept(address, "123", "456"));
+        assertFalse(filter.accept(address, "123"));
+
+    }
+
+}
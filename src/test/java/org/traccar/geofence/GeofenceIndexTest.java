@@ -0,0 +1,50 @@
+package org.traccar.geofence;
+
+import java.text.ParseException;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GeofenceIndexTest {
+
+    @Test
+    public void testCandidates() throws ParseException {
+        GeofenceIndex index = new GeofenceIndex();
+        index.put(1, new GeofenceCircle("CIRCLE (55.75414 37.6204, 100)"));
+        index.put(2, new GeofencePolygon("POLYGON ((55.75 37.61, 55.76 37.61, 55.76 37.63, 55.75 37.63))"));
+        index.put(3, new GeofencePolygon("POLYGON ((40 10, 60 10, 60 50, 40 50))"));
+        assertEquals(3, index.size());
+
+        assertEquals(3, index.getCandidates(55.75477, 37.62025).size());
+        assertEquals(1, index.getCandidates(45, 20).size());
+        assertEquals(0, index.getCandidates(10, 20).size());
+
+        index.put(2, new GeofencePolygon("POLYGON ((10 20, 11 20, 11 21, 10 21))"));
+        assertEquals(2, index.getCandidates(55.75477, 37.62025).size());
+        assertEquals(1, index.getCandidates(10.5, 20.5).size());
+
+        index.remove(3);
+        assertEquals(1, index.getCandidates(55.75477, 37.62025).size());
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    public void testBounds() throws ParseException {
+        GeofenceGeometry circle = new GeofenceCircle("CIRCLE (55.75414 37.6204, 100)");
+        assertTrue(circle.boundsContain(55.75477, 37.62025));
+        assertFalse(circle.boundsContain(55.75545, 37.61921));
+
+        GeofenceGeometry polygon = new GeofencePolygon("POLYGON ((-16 179, -16 -178, -19 -178, -19 179))");
+        assertTrue(polygon.boundsContain(-17, 179.5));
+        assertTrue(polygon.boundsContain(-17, -179.5));
+        assertFalse(polygon.boundsContain(-20, 179.5));
+
+        GeofenceGeometry polyline = new GeofencePolyline("LINESTRING (55.75 37.61, 55.76 37.63)", 100);
+        assertTrue(polyline.boundsContain(55.7605, 37.63));
+        assertFalse(polyline.boundsContain(55.77, 37.63));
+    }
+
+}
@@ -49,4 +49,27 @@ public class GeofencePolygonTest {
 
     }
 
+    @Test
+    public void testContainsLargePolygon() throws ParseException {
+        StringBuilder test = new StringBuilder("POLYGON ((");
+        int count = 1000;
+        for (int i = 0; i < count; i++) {
+            double radius = i % 2 == 0 ? 1 : 2;
+            double angle = 2 * Math.PI * i / count;
+            if (i > 0) {
+                test.append(", ");
+            }
+            test.append(50 + radius * Math.sin(angle)).append(' ').append(10 + radius * Math.cos(angle));
+        }
+        test.append("))");
+        GeofenceGeometry geofenceGeometry = new GeofencePolygon(test.toString());
+        for (int i = 0; i < 360; i++) {
+            double angle = Math.toRadians(i + 0.5);
+            assertTrue(geofenceGeometry.containsPoint(50 + 0.9 * Math.sin(angle), 10 + 0.9 * Math.cos(angle)));
+            assertTrue(!geofenceGeometry.containsPoint(50 + 2.1 * Math.sin(angle), 10 + 2.1 * Math.cos(angle)));
+        }
+        assertTrue(!geofenceGeometry.containsPoint(50, 5));
+        assertTrue(!geofenceGeometry.containsPoint(50, 15));
+    }
+
 }
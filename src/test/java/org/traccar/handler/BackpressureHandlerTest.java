@@ -0,0 +1,58 @@
+package org.traccar.handler;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.concurrent.DefaultEventExecutorGroup;
+import io.netty.util.concurrent.EventExecutorGroup;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BackpressureHandlerTest {
+
+    private static final long TIMEOUT = 10;
+
+    @Test
+    public void testPauseAndResume() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        EventExecutorGroup group = new DefaultEventExecutorGroup(1);
+        try {
+            EmbeddedChannel channel = new EmbeddedChannel(new BackpressureHandler(4, 0, 0));
+            channel.pipeline().addLast(group, new ChannelInboundHandlerAdapter() {
+                @Override
+                public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+                    started.countDown();
+                    release.await();
+                }
+            });
+
+            channel.writeInbound("first");
+            assertTrue(started.await(TIMEOUT, TimeUnit.SECONDS));
+            assertTrue(channel.config().isAutoRead());
+            for (int i = 0; i < 10 && channel.config().isAutoRead(); i++) {
+                channel.writeInbound("next");
+            }
+            assertFalse(channel.config().isAutoRead());
+
+            channel.runScheduledPendingTasks();
+            assertFalse(channel.config().isAutoRead());
+
+            release.countDown();
+            CountDownLatch drained = new CountDownLatch(1);
+            group.next().execute(drained::countDown);
+            assertTrue(drained.await(TIMEOUT, TimeUnit.SECONDS));
+
+            channel.runScheduledPendingTasks();
+            assertTrue(channel.config().isAutoRead());
+        } finally {
+            group.shutdownGracefully();
+        }
+    }
+
+}
@@ -1,9 +1,14 @@
 package org.traccar.handler;
 
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
 
 import org.junit.Test;
 import org.traccar.config.Config;
+import org.traccar.database.AttributesManager;
+import org.traccar.helper.LongSet;
 import org.traccar.model.Attribute;
 import org.traccar.model.Position;
 
@@ -66,6 +71,60 @@ public class ComputedAttributesTest {
         handler.computeAttribute(attribute, position);
         assertEquals(date, position.getFixTime());
 
+        // cached expression tests
+        attribute.setId(1);
+        attribute.setExpression("adc1 + 1");
+        assertEquals(129, handler.computeAttribute(attribute, position));
+        attribute.setExpression("adc1 + 2");
+        assertEquals(130, handler.computeAttribute(attribute, position));
+
+    }
+
+    private static Attribute createAttribute(long id, String name, String expression) {
+        Attribute attribute = new Attribute();
+        attribute.setId(id);
+        attribute.setAttribute(name);
+        attribute.setExpression(expression);
+        attribute.setType("number");
+        return attribute;
+    }
+
+    @Test
+    public void testAttributeDependencies() {
+
+        Map<Long, Attribute> attributes = new HashMap<>();
+        attributes.put(1L, createAttribute(1, "fuelPercent", "fuelLiters / 2"));
+        attributes.put(2L, createAttribute(2, "fuelLiters", "adc1 * 10"));
+        attributes.put(3L, createAttribute(3, "fuelLow", "fuelPercent < 50 ? 1 : 0"));
+
+        AttributesManager attributesManager = new AttributesManager(null) {
+            @Override
+            public Attribute getById(long itemId) {
+                return attributes.get(itemId);
+            }
+
+            @Override
+            public Set<Long> getAllDeviceItems(long deviceId) {
+                return LongSet.of(1, 2, 3);
+            }
+        };
+
+        ComputedAttributesHandler handler = new ComputedAttributesHandler(new Config(), null, attributesManager);
+
+        Position position = new Position();
+        position.set("adc1", 8);
+        handler.handlePosition(position);
+        assertEquals(80, position.getInteger("fuelLiters"));
+        assertEquals(40, position.getInteger("fuelPercent"));
+        assertEquals(1, position.getInteger("fuelLow"));
+
+        attributes.put(2L, createAttribute(2, "fuelLiters", "adc1 * 20"));
+        position = new Position();
+        position.set("adc1", 8);
+        handler.handlePosition(position);
+        assertEquals(80, position.getInteger("fuelPercent"));
+        assertEquals(0, position.getInteger("fuelLow"));
+
     }
 
 }
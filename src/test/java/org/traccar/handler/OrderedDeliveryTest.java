@@ -0,0 +1,143 @@
+package org.traccar.handler;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.Test;
+import org.traccar.model.Position;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class OrderedDeliveryTest {
+
+    @Test
+    public void testOrder() {
+        OrderedDelivery delivery = new OrderedDelivery(OrderedDeliveryTest.class, 100, 0);
+        List<OrderedDelivery.Slot> slots = new ArrayList<>();
+        EmbeddedChannel channel = new EmbeddedChannel(new ChannelInboundHandlerAdapter() {
+            @Override
+            public void channelRead(ChannelHandlerContext ctx, Object message) {
+                if (((String) message).startsWith("async")) {
+                    slots.add(delivery.reserve(ctx, message));
+                } else {
+                    delivery.fire(ctx, message);
+                }
+            }
+        });
+
+        channel.writeInbound("first");
+        assertEquals("first", channel.readInbound());
+
+        channel.writeInbound("async1");
+        channel.writeInbound("async2");
+        channel.writeInbound("second");
+        assertNull(channel.readInbound());
+
+        slots.get(1).complete();
+        assertNull(channel.readInbound());
+
+        slots.get(0).complete();
+        assertEquals("async1", channel.readInbound());
+        assertEquals("async2", channel.readInbound());
+        assertEquals("second", channel.readInbound());
+
+        channel.writeInbound("third");
+        assertEquals("third", channel.readInbound());
+    }
+
+    private static Position position(long deviceId) {
+        Position position = new Position();
+        position.setDeviceId(deviceId);
+        return position;
+    }
+
+    private static EmbeddedChannel createChannel(OrderedDelivery delivery, List<OrderedDelivery.Slot> slots) {
+        return new EmbeddedChannel(new ChannelInboundHandlerAdapter() {
+            @Override
+            public void channelRead(ChannelHandlerContext ctx, Object message) {
+                if (((Position) message).getValid()) {
+                    delivery.fire(ctx, message);
+                } else {
+                    OrderedDelivery.Slot slot = delivery.reserve(ctx, message);
+                    if (slot != null) {
+                        slots.add(slot);
+                    } else {
+                        delivery.fire(ctx, message);
+                    }
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testDevices() {
+        OrderedDelivery delivery = new OrderedDelivery(OrderedDeliveryTest.class, 100, 0);
+        List<OrderedDelivery.Slot> slots = new ArrayList<>();
+        EmbeddedChannel channel = createChannel(delivery, slots);
+
+        Position slow = position(1);
+        Position blocked = position(1);
+        blocked.setValid(true);
+        Position other = position(2);
+        other.setValid(true);
+
+        channel.writeInbound(slow, blocked, other);
+        assertSame(other, channel.readInbound());
+        assertNull(channel.readInbound());
+
+        slots.get(0).complete();
+        assertSame(slow, channel.readInbound());
+        assertSame(blocked, channel.readInbound());
+    }
+
+    @Test
+    public void testLimit() {
+        OrderedDelivery delivery = new OrderedDelivery(OrderedDeliveryTest.class, 2, 0);
+        List<OrderedDelivery.Slot> slots = new ArrayList<>();
+        EmbeddedChannel channel = createChannel(delivery, slots);
+
+        channel.writeInbound(position(1), position(2), position(3));
+        assertEquals(2, slots.size());
+        assertEquals(3, ((Position) channel.readInbound()).getDeviceId());
+
+        slots.get(0).complete();
+        assertEquals(1, ((Position) channel.readInbound()).getDeviceId());
+
+        channel.writeInbound(position(4));
+        assertEquals(3, slots.size());
+        assertNull(channel.readInbound());
+    }
+
+    @Test
+    public void testTimeout() {
+        OrderedDelivery delivery = new OrderedDelivery(OrderedDeliveryTest.class, 100, 1);
+        List<OrderedDelivery.Slot> slots = new ArrayList<>();
+        EmbeddedChannel channel = createChannel(delivery, slots);
+
+        Position position = position(1);
+        channel.writeInbound(position);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        Object result = null;
+        while (result == null && System.nanoTime() < deadline) {
+            channel.runScheduledPendingTasks();
+            result = channel.readInbound();
+        }
+        assertNotNull(result);
+        assertEquals(0, delivery.getPendingCount(channel.pipeline().firstContext()));
+
+        slots.get(0).complete(() -> position.setAddress("late"));
+        channel.runPendingTasks();
+        assertNull(position.getAddress());
+        assertNull(channel.readInbound());
+        assertEquals(1, slots.size());
+    }
+
+}
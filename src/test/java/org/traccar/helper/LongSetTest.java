@@ -0,0 +1,38 @@
+package org.traccar.helper;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class LongSetTest {
+
+    @Test
+    public void testBuild() {
+        LongSet set = new LongSet.Builder().add(5).add(1).add(5).add(3).build();
+        assertEquals(3, set.size());
+        assertTrue(set.contains(1L));
+        assertTrue(set.contains(5));
+        assertFalse(set.contains(2));
+        assertFalse(set.contains("1"));
+        assertEquals(new HashSet<>(Arrays.asList(1L, 3L, 5L)), set);
+        assertEquals(set, new HashSet<>(Arrays.asList(1L, 3L, 5L)));
+        assertSame(LongSet.EMPTY, new LongSet.Builder().build());
+    }
+
+    @Test
+    public void testUnion() {
+        LongSet first = LongSet.of(1, 3, 5);
+        LongSet second = LongSet.of(2, 3, 6);
+        assertEquals(LongSet.of(1, 2, 3, 5, 6), LongSet.union(first, second));
+        assertSame(first, LongSet.union(first, LongSet.EMPTY));
+        assertSame(second, LongSet.union(LongSet.EMPTY, second));
+        assertSame(first, LongSet.union(first, LongSet.of(3)));
+    }
+
+}
@@ -0,0 +1,68 @@
+package org.traccar.notification;
+
+import org.junit.Test;
+
+import java.net.ConnectException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NotificationQueueTest {
+
+    @Test
+    public void testRetry() throws Exception {
+        NotificationQueue queue = new NotificationQueue("test", 1, 10, 2, 1);
+        AtomicInteger attempts = new AtomicInteger();
+        CountDownLatch latch = new CountDownLatch(1);
+        assertTrue(queue.submit(() -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new MessageException(new ConnectException("refused"));
+            }
+            latch.countDown();
+        }));
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(3, attempts.get());
+        assertEquals(2, queue.getRetriedCount());
+        assertEquals(0, queue.getFailedCount());
+        queue.shutdown();
+    }
+
+    @Test
+    public void testNoRetry() throws Exception {
+        NotificationQueue queue = new NotificationQueue("test", 1, 10, 2, 1);
+        AtomicInteger attempts = new AtomicInteger();
+        CountDownLatch latch = new CountDownLatch(1);
+        assertTrue(queue.submit(() -> {
+            attempts.incrementAndGet();
+            throw new MessageException("rejected");
+        }));
+        assertTrue(queue.submit(latch::countDown));
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(1, attempts.get());
+        assertEquals(0, queue.getRetriedCount());
+        assertEquals(1, queue.getFailedCount());
+        queue.shutdown();
+    }
+
+    @Test
+    public void testLimit() throws Exception {
+        NotificationQueue queue = new NotificationQueue("test", 1, 1, 0, 0);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        assertTrue(queue.submit(() -> {
+            started.countDown();
+            release.await();
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertTrue(queue.submit(() -> { }));
+        assertFalse(queue.submit(() -> { }));
+        assertEquals(1, queue.getDroppedCount());
+        release.countDown();
+        queue.shutdown();
+    }
+
+}
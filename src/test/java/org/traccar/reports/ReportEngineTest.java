@@ -0,0 +1,129 @@
+package org.traccar.reports;
+
+import org.junit.Test;
+import org.traccar.BaseTest;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ReportEngineTest extends BaseTest {
+
+    @Test
+    public void testOrder() throws Exception {
+        List<Long> deviceIds = new ArrayList<>();
+        for (long i = 1; i <= 50; i++) {
+            deviceIds.add(i);
+        }
+        List<Long> result = ReportEngine.execute(deviceIds, deviceId -> {
+            try {
+                Thread.sleep(deviceId % 3);
+            } catch (InterruptedException e) {
+                throw new SQLException(e);
+            }
+            return deviceId * 10;
+        }, 4);
+        assertEquals(50, result.size());
+        for (int i = 0; i < result.size(); i++) {
+            assertEquals(deviceIds.get(i) * 10, (long) result.get(i));
+        }
+    }
+
+    @Test
+    public void testCompletionOrder() throws Exception {
+        List<Long> deviceIds = new ArrayList<>();
+        for (long i = 1; i <= 50; i++) {
+            deviceIds.add(i);
+        }
+        Set<Long> handled = new HashSet<>();
+        ReportEngine.execute(deviceIds, deviceId -> {
+            try {
+                Thread.sleep(deviceId % 3);
+            } catch (InterruptedException e) {
+                throw new SQLException(e);
+            }
+            return deviceId * 10;
+        }, (deviceId, result) -> {
+            assertEquals(deviceId * 10, (long) result);
+            assertTrue(handled.add(deviceId));
+        }, 4);
+        assertEquals(50, handled.size());
+    }
+
+    @Test
+    public void testCompletionLimit() throws Exception {
+        List<Long> deviceIds = new ArrayList<>();
+        for (long i = 1; i <= 20; i++) {
+            deviceIds.add(i);
+        }
+        AtomicInteger started = new AtomicInteger();
+        AtomicInteger handled = new AtomicInteger();
+        ReportEngine.execute(deviceIds, deviceId -> {
+            started.incrementAndGet();
+            return deviceId;
+        }, (deviceId, result) -> {
+            assertTrue(started.get() - handled.incrementAndGet() < 4);
+            try {
+                Thread.sleep(2);
+            } catch (InterruptedException e) {
+                throw new SQLException(e);
+            }
+        }, 4);
+        assertEquals(20, handled.get());
+    }
+
+    @Test(expected = SQLException.class)
+    public void testCompletionError() throws Exception {
+        List<Long> deviceIds = new ArrayList<>();
+        for (long i = 1; i <= 10; i++) {
+            deviceIds.add(i);
+        }
+        ReportEngine.execute(deviceIds, deviceId -> {
+            if (deviceId == 5) {
+                throw new SQLException("error");
+            }
+            return deviceId;
+        }, (deviceId, result) -> {
+        }, 4);
+    }
+
+    @Test(expected = SQLException.class)
+    public void testError() throws Exception {
+        List<Long> deviceIds = new ArrayList<>();
+        for (long i = 1; i <= 10; i++) {
+            deviceIds.add(i);
+        }
+        ReportEngine.execute(deviceIds, deviceId -> {
+            if (deviceId == 5) {
+                throw new SQLException("error");
+            }
+            return deviceId;
+        }, 4);
+    }
+
+    @Test
+    public void testCancellation() throws Exception {
+        List<Long> deviceIds = new ArrayList<>();
+        for (long i = 1; i <= 10; i++) {
+            deviceIds.add(i);
+        }
+        ReportEngine.setCancellation(() -> true);
+        try {
+            ReportEngine.execute(deviceIds, deviceId -> deviceId, 4);
+            fail();
+        } catch (CancellationException e) {
+            // expected
+        } finally {
+            ReportEngine.setCancellation(null);
+        }
+    }
+
+}
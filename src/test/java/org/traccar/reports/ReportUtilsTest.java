@@ -4,22 +4,28 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.io.IOException;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
 import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.junit.Test;
 import org.traccar.BaseTest;
 import org.traccar.TestIdentityManager;
 import org.traccar.model.Position;
+import org.traccar.reports.model.DeviceActivity;
 import org.traccar.reports.model.StopReport;
+import org.traccar.reports.model.SummaryReport;
 import org.traccar.reports.model.TripReport;
 import org.traccar.reports.model.TripsConfig;
 
@@ -117,6 +123,36 @@ public class ReportUtilsTest extends BaseTest {
 
     }
 
+    @Test
+    public void testAnalyzeActivity() throws ParseException {
+
+        List<Position> data = Arrays.asList(
+                position("2016-01-01 00:00:00.000", 0, 0),
+                position("2016-01-01 00:01:00.000", 0, 0),
+                position("2016-01-01 00:02:00.000", 10, 0),
+                position("2016-01-01 00:03:00.000", 10, 1000),
+                position("2016-01-01 00:04:00.000", 20, 2000),
+                position("2016-01-01 00:05:00.000", 0, 3000),
+                position("2016-01-01 00:06:00.000", 0, 3000),
+                position("2016-01-01 00:07:00.000", 0, 3000));
+
+        TripsConfig tripsConfig = new TripsConfig(500, 300000, 180000, 900000, false, false, 0.01);
+
+        DeviceActivity activity = ReportUtils.analyzeActivity(
+                new TestIdentityManager(), null, 1, data, tripsConfig, false);
+
+        assertEquals(1, activity.getTrips().size());
+        assertEquals(2, activity.getStops().size());
+
+        SummaryReport summary = activity.getSummary();
+
+        assertEquals(3000, summary.getDistance(), 0.01);
+        assertEquals(20, summary.getMaxSpeed(), 0.01);
+        assertEquals(5, summary.getAverageSpeed(), 0.01);
+        assertEquals(3000, summary.getEndOdometer(), 0.01);
+
+    }
+
     @Test
     public void testDetectTripsSimpleWithIgnition() throws ParseException {
 
@@ -387,4 +423,27 @@ public class ReportUtilsTest extends BaseTest {
         assertEquals(1200000, itemStop.getDuration());
     }
 
+    @Test
+    public void testLimitConsumer() throws Exception {
+
+        AtomicLong time = new AtomicLong(1000);
+        List<Position> written = new ArrayList<>();
+        ReportUtils.PositionConsumer consumer = ReportUtils.limitConsumer(written::add, 200, time::get);
+
+        consumer.write(new Position());
+        time.set(1200);
+        consumer.write(new Position());
+        assertEquals(2, written.size());
+
+        time.set(1201);
+
+        try {
+            consumer.write(new Position());
+            fail();
+        } catch (IOException e) {
+            assertEquals(2, written.size());
+        }
+
+    }
+
 }
@@ -0,0 +1,157 @@
+package org.traccar.reports;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Test;
+import org.traccar.model.Position;
+import org.traccar.reports.model.DeviceReport;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RouteTest {
+
+    private Position createPosition(double speed) {
+        Position position = new Position();
+        position.setValid(true);
+        position.setFixTime(new Date());
+        position.setLatitude(10);
+        position.setLongitude(20);
+        position.setSpeed(speed);
+        return position;
+    }
+
+    private DeviceReport createDevice(String name) {
+        DeviceReport device = new DeviceReport();
+        device.setDeviceName(name);
+        return device;
+    }
+
+    @Test
+    public void testExcelWriter() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (Route.ExcelWriter writer = new Route.ExcelWriter(
+                new Date(), new Date(), 2, "kn", TimeZone.getTimeZone("UTC"))) {
+
+            writer.startDevice(createDevice("test"));
+            writer.write(createPosition(1));
+            writer.write(createPosition(2));
+            assertFalse(writer.isStreaming());
+            assertEquals(1, writer.getDevices().size());
+
+            writer.startDevice(createDevice("test"));
+            writer.write(createPosition(3));
+            assertTrue(writer.isStreaming());
+            writer.write(createPosition(4));
+
+            writer.write(output);
+        }
+
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(output.toByteArray()))) {
+            assertEquals(2, workbook.getNumberOfSheets());
+
+            Sheet sheet = workbook.getSheetAt(0);
+            assertEquals("test", sheet.getSheetName());
+            assertEquals("Route", sheet.getRow(1).getCell(1).getStringCellValue());
+            assertEquals("Valid", sheet.getRow(7).getCell(0).getStringCellValue());
+            assertEquals(9, sheet.getLastRowNum());
+            assertEquals("2.0 kn", sheet.getRow(9).getCell(5).getStringCellValue());
+
+            sheet = workbook.getSheetAt(1);
+            assertEquals("test (2)", sheet.getSheetName());
+            assertEquals(9, sheet.getLastRowNum());
+            assertEquals(10, sheet.getRow(8).getCell(2).getNumericCellValue(), 0.000001);
+        }
+    }
+
+    @Test
+    public void testExcelWriterTemplate() throws IOException {
+        ByteArrayOutputStream template = new ByteArrayOutputStream();
+        try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+            Sheet sheet = workbook.createSheet();
+            sheet.createRow(0).createCell(0).setCellValue("Berichtstyp: Route");
+            Row row = sheet.createRow(1);
+            row.createCell(0).setCellValue("Ger\u00e4t:");
+            row.createCell(1).setCellValue("${device.deviceName}");
+            row = sheet.createRow(3);
+            row.createCell(0).setCellValue("G\u00fcltig");
+            row.createCell(1).setCellValue("Zeit");
+            sheet.createRow(4).createCell(0).setCellValue("${position.valid}");
+            workbook.write(template);
+        }
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (Route.ExcelWriter writer = new Route.ExcelWriter(
+                new Date(), new Date(), 0, "kn", TimeZone.getTimeZone("UTC"))) {
+            writer.loadLayout(new ByteArrayInputStream(template.toByteArray()));
+            writer.startDevice(createDevice("test"));
+            writer.write(createPosition(1));
+            writer.write(output);
+        }
+
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(output.toByteArray()))) {
+            Sheet sheet = workbook.getSheetAt(0);
+            assertEquals("Berichtstyp: Route", sheet.getRow(0).getCell(0).getStringCellValue());
+            assertEquals("Ger\u00e4t:", sheet.getRow(1).getCell(0).getStringCellValue());
+            assertEquals("test", sheet.getRow(1).getCell(1).getStringCellValue());
+            assertEquals("G\u00fcltig", sheet.getRow(3).getCell(0).getStringCellValue());
+            assertEquals("Zeit", sheet.getRow(3).getCell(1).getStringCellValue());
+            assertEquals(4, sheet.getLastRowNum());
+        }
+    }
+
+    @Test
+    public void testExcelWriterDefaultTemplate() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (Route.ExcelWriter writer = new Route.ExcelWriter(
+                new Date(), new Date(), 0, "kn", TimeZone.getTimeZone("UTC"));
+                InputStream template = new FileInputStream("templates/export/route.xlsx")) {
+            writer.loadLayout(template);
+            writer.startDevice(createDevice("test"));
+            writer.write(createPosition(1));
+            writer.write(output);
+        }
+
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(output.toByteArray()))) {
+            Sheet sheet = workbook.getSheetAt(0);
+            assertEquals("Route", sheet.getRow(1).getCell(1).getStringCellValue());
+            assertEquals("test", sheet.getRow(3).getCell(1).getStringCellValue());
+            assertEquals("Valid", sheet.getRow(7).getCell(0).getStringCellValue());
+            assertEquals("Attributes", sheet.getRow(7).getCell(7).getStringCellValue());
+            assertEquals(8, sheet.getLastRowNum());
+        }
+    }
+
+    @Test
+    public void testExcelWriterLocale() throws IOException {
+        Locale defaultLocale = Locale.getDefault();
+        Locale.setDefault(Locale.GERMANY);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (Route.ExcelWriter writer = new Route.ExcelWriter(
+                new Date(), new Date(), 0, "kn", TimeZone.getTimeZone("UTC"))) {
+            writer.startDevice(createDevice("test"));
+            writer.write(createPosition(1));
+            writer.write(output);
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(output.toByteArray()))) {
+            String formula = workbook.getSheetAt(0).getRow(8).getCell(6).getCellFormula();
+            assertTrue(formula.contains("mlat=10.000000&mlon=20.000000"));
+            assertTrue(formula.contains("10.000000\u00b0, 20.000000\u00b0"));
+        }
+    }
+
+}
@@ -0,0 +1,54 @@
+package org.traccar.reports;
+
+import org.junit.Test;
+import org.traccar.BaseTest;
+import org.traccar.model.Position;
+import org.traccar.reports.model.SummaryReport;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class SummaryAccumulatorTest extends BaseTest {
+
+    private Position position(long time, double speed, double totalDistance, boolean ignition) {
+        Position position = new Position();
+        position.setDeviceId(1);
+        position.setTime(new Date(time));
+        position.setSpeed(speed);
+        position.set(Position.KEY_TOTAL_DISTANCE, totalDistance);
+        position.set(Position.KEY_IGNITION, ignition);
+        return position;
+    }
+
+    @Test
+    public void testRollup() {
+        List<Position> positions = new ArrayList<>();
+        for (int i = 0; i < 48; i++) {
+            positions.add(position(i * 3600000L, i % 5 * 10, i * 1000, i % 3 != 0));
+        }
+
+        SummaryAccumulator raw = new SummaryAccumulator();
+        positions.forEach(raw::add);
+
+        SummaryAccumulator day = new SummaryAccumulator();
+        positions.subList(0, 24).forEach(day::add);
+        SummaryAccumulator combined = new SummaryAccumulator();
+        combined.add(day.createRollup(1, new Date(0)));
+        positions.subList(24, 48).forEach(combined::add);
+
+        SummaryReport expected = raw.createReport(1, true, false);
+        SummaryReport actual = combined.createReport(1, true, false);
+
+        assertEquals(48, combined.getCount());
+        assertEquals(expected.getDistance(), actual.getDistance(), 0.01);
+        assertEquals(expected.getAverageSpeed(), actual.getAverageSpeed(), 0.01);
+        assertEquals(expected.getMaxSpeed(), actual.getMaxSpeed(), 0.01);
+        assertEquals(expected.getEngineHours(), actual.getEngineHours());
+        assertEquals(expected.getStartOdometer(), actual.getStartOdometer(), 0.01);
+        assertEquals(expected.getEndOdometer(), actual.getEndOdometer(), 0.01);
+    }
+
+}